@@ -31,7 +31,11 @@ package com.android.codebreaker.activities;
  *          framework help. Turns out, it's not that tough! :)</p>
  *
  * <p>Storing the user's score is trivial so the bulk of this next section will relate only to User
- * Authentication.</p>
+ * Authentication. (Without an internet connection the score is written to a queue on the device,
+ * see data/ScoreQueue, marked "queued" and sent later. A user without an account on the device is
+ * still asked to log in so the queued score says whose it is. With "Remember me" the account is
+ * added to the device right away, and checked when the score is sent. Without it the score isn't
+ * queued: The password would have to be kept somewhere.)</p>
  *
  * <p>User Authentication: There are two places the user's account information is stored:</p>
  *
@@ -60,6 +64,11 @@ package com.android.codebreaker.activities;
  * incorrectly entered username. This is expected behavior and the responsibility for entering
  * correct information is on the user.</p>
  *
+ * <p>Verifying the account and storing the score take a single query ("verify and submit", see
+ * data/ScoreQueue.verifyAndSubmit). Its answer also carries the part of the leaderboard around
+ * the user's score, which is handed to GetHighScoresActivity. The "Verifying account", "Storing
+ * account" and "Storing score" rows are all filled in from that one answer.</p>
+ *
  * <p>Database Interaction: All of the database queries are handled in separate (specific)
  * Data Request classes (see /data). These classes build the URL's and query strings that
  * communicate with specific .php files on the server. Each of the Data Request classes extend
@@ -84,18 +93,20 @@ import android.widget.Toast;
 import com.android.codebreaker.R;
 import com.android.codebreaker.auth.Authenticator;
 import com.android.codebreaker.auth.AuthenticatorLoginDialogFragment;
+import com.android.codebreaker.data.AuthResultData;
+import com.android.codebreaker.data.HighScoresData;
 import com.android.codebreaker.data.IDataRequestCallback;
-import com.android.codebreaker.data.SaveScoreDataRequest;
+import com.android.codebreaker.data.ScoreQueue;
 import com.android.codebreaker.data.UserData;
-import com.android.codebreaker.data.VerifyCredentialsDataRequest;
+import com.android.codebreaker.data.VerifyAndSubmitData;
+import com.android.codebreaker.lists.GetScoresListRowData;
 import com.android.codebreaker.misc.Utilities;
 
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.util.ArrayList;
 
 public class AuthenticatorActivity extends FragmentActivity
         implements AuthenticatorLoginDialogFragment.AuthenticatorLoginDialogListener,
-        IDataRequestCallback
+        IDataRequestCallback<VerifyAndSubmitData>
 {
     // Used in Logs
     private final String TAG = this.getClass().getSimpleName();
@@ -118,6 +129,10 @@ public class AuthenticatorActivity extends FragmentActivity
     // to login.)
     private boolean mShouldSkipDataStorage = false;
 
+    // No internet connection when we started? Then the score is queued (see ScoreQueue) instead
+    // of sent, as long as we know who the user is.
+    private boolean mIsOffline = false;
+
     // A place to store each "AuthListRow" LinearLayout references:
     private LinearLayout[] mAuthListRows = new LinearLayout[5];
 
@@ -125,6 +140,14 @@ public class AuthenticatorActivity extends FragmentActivity
     // "Authenticator.java" for details.
     private Authenticator mAuthenticator;
 
+    // The game's idempotency key (see UserData.getScoreKey): Every send of this score, including
+    // after a failed login or after this activity is recreated, uses it so the score is only
+    // ever stored once.
+    private String mScoreKey;
+
+    // The "verify and submit" answer (see ScoreQueue.verifyAndSubmit). Null until it's back.
+    private VerifyAndSubmitData mVerifyAndSubmitData;
+
     // Where all of the user's data is stored like "score"...
     private UserData mUserData;
 
@@ -139,6 +162,14 @@ public class AuthenticatorActivity extends FragmentActivity
 
         // Comes from "MainActivity" and is a "one-stop shop" for all user data.
         mUserData = (UserData) getIntent().getSerializableExtra(getString(R.string.KEY_USER_DATA));
+        mScoreKey = mUserData.getScoreKey();
+
+        // Not from a finished game? Then at least this screen's sends agree.
+        if (mScoreKey == null)
+        {
+            mScoreKey = ScoreQueue.Entry.newKey();
+            mUserData.setScoreKey(mScoreKey);
+        }
 
         // This view includes the Logo, "Congratulations" text, and the Authentication state's
         // visual feedback to the user (steps).
@@ -150,8 +181,8 @@ public class AuthenticatorActivity extends FragmentActivity
             // Log the disconnected state:
             Log.d(TAG, "onCreate(): " + getString(R.string.no_internet_connection_error));
 
-            // Cancel all queries:
-            mShouldSkipDataStorage = true;
+            // No queries: The score is queued instead.
+            mIsOffline = true;
         }
 
         // Everything is now setup so let's begin the Authentication process:
@@ -199,14 +230,8 @@ public class AuthenticatorActivity extends FragmentActivity
                             true);
                 }
 
-                // Internet disconnected state: d'oh!
-                else if (mShouldSkipDataStorage)
-                {
-                    changeState(STATE_VERIFY_CREDENTIALS);
-                    break;
-                }
-
-                // If an account doesn't exist, then the user will have to create one:
+                // If an account doesn't exist, then the user will have to create one. (Even
+                // without a connection: The queued score needs to know whose it is.)
                 else
                 {
                     Log.d(TAG, ".changeState().STATE_GET_ACCOUNT_INFO: ACCOUNT DOES NOT EXIST");
@@ -224,20 +249,22 @@ public class AuthenticatorActivity extends FragmentActivity
                 mAuthListRows[mCurrentState] = createAuthenticationStepRow(
                         getString(R.string.state_verifying_account));
 
-                // User wants to skip this. So, skip everything else and move to next state:
-                // STATE_STORE_CREDENTIALS
-                if (mShouldSkipDataStorage)
+                // User wants to skip this (or there's no connection). So, skip everything else and
+                // move to next state: STATE_STORE_CREDENTIALS
+                if (mShouldSkipDataStorage || mIsOffline)
                 {
                     Log.i(TAG,"Skipping...");
 
+                    setRowImage(mCurrentState, IMAGE_X);
+                    setSkippingVisibility(mCurrentState, View.VISIBLE);
                     changeState(STATE_STORE_CREDENTIALS);
                     break;
                 }
 
-                // The username/password check against what we have in the server database:
-                VerifyCredentialsDataRequest verifyCredentialsDataRequest =
-                        new VerifyCredentialsDataRequest(this, getApplicationContext());
-                verifyCredentialsDataRequest.execute(mUserData);
+                // The username/password check against what we have in the server database.
+                // The score and the leaderboard go along in the same query (the "Storing" rows
+                // are filled in from its answer):
+                ScoreQueue.getInstance(this).verifyAndSubmit(mUserData, mScoreKey, this);
 
                 break;
 
@@ -254,7 +281,7 @@ public class AuthenticatorActivity extends FragmentActivity
 
                 // Change the list row image to a checkmark or "X" for "Storing account"
                 // and set the "Skipping" text visibility.
-                if (mShouldSkipDataStorage)
+                if (mShouldSkipDataStorage || mIsOffline)
                 {
                     Log.i(TAG,"Skipping...");
 
@@ -281,9 +308,25 @@ public class AuthenticatorActivity extends FragmentActivity
                 mAuthListRows[mCurrentState] = createAuthenticationStepRow(
                         getString(R.string.state_storing_score));
 
+                // Everything needed to store the score (null if we don't know who the user is, ie;
+                // they chose "Not now"):
+                ScoreQueue.Entry scoreEntry = ScoreQueue.Entry.from(mUserData, mScoreKey);
+
+                // No connection but we know who the user is (their account id, or the username
+                // and password they just typed in): Keep the score on the device. It's sent when
+                // the network comes back.
+                if (mIsOffline && scoreEntry != null)
+                {
+                    Log.i(TAG,"Offline. Queueing the score...");
+
+                    ScoreQueue.getInstance(this).add(scoreEntry, null);
+                    onSaveScoreQueued();
+                    break;
+                }
+
                 // Does the user want to skip this step? If so, show that this is happening
                 // visually in the list and eventually transition to the "GetHighScores" activity.
-                if (mShouldSkipDataStorage)
+                if (mShouldSkipDataStorage || mVerifyAndSubmitData == null)
                 {
                     Log.i(TAG,"Skipping...");
 
@@ -293,10 +336,27 @@ public class AuthenticatorActivity extends FragmentActivity
                     break;
                 }
 
-                // Query that inserts the new score:
-                SaveScoreDataRequest saveScoreDataRequest =
-                        new SaveScoreDataRequest(this, getApplicationContext());
-                saveScoreDataRequest.execute(mUserData);
+                // The score went along with the credentials. Show how that went:
+                //     Stored = checkmark;
+                //     Not stored yet (it's queued, see ScoreQueue) = "queued";
+                //     Refused by the server (eg; invalid fields) = "X".
+                if (mVerifyAndSubmitData.isScoreSettled() &&
+                        mVerifyAndSubmitData.getScoreResult() > 0)
+                {
+                    onSaveScoreTaskCompleted(mVerifyAndSubmitData);
+                }
+                else if ( ! mVerifyAndSubmitData.isScoreSettled())
+                {
+                    onSaveScoreQueued();
+                }
+                else
+                {
+                    Log.e(TAG, "changeState().STATE_STORE_SCORE: " +
+                            mVerifyAndSubmitData.getScoreResult());
+
+                    setRowImage(mCurrentState, IMAGE_X);
+                    startTimerBeforeGoingToHighScoresActivity();
+                }
 
                 break;
         }
@@ -467,6 +527,15 @@ public class AuthenticatorActivity extends FragmentActivity
     {
         Log.d(TAG, "onLoginDialogPositiveClick()");
 
+        // "Remember me": The account goes on the device now, before it's verified. A score that
+        // has to wait (eg; no connection) is queued under the username and gets the password
+        // from here when it's sent (see ScoreQueue). A wrong password takes it off again (see
+        // onTaskErrorDuringVerifyCredentials).
+        if (rememberMe && mAuthenticator.findAccount() == null)
+        {
+            mAuthenticator.addAccountExplicitly(username.trim(), password.trim(), 0);
+        }
+
         // Store the account info in the UserData object:
         storeAccountInUserData(username, password, -1 /* A temporary AuthToken */, rememberMe);
     }
@@ -544,6 +613,18 @@ public class AuthenticatorActivity extends FragmentActivity
         Intent getHighScoresIntent = new Intent(this, GetHighScoresActivity.class);
         getHighScoresIntent.putExtra(getString(R.string.KEY_USER_DATA), mUserData);
 
+        // The leaderboard came back with the score: Hand it over so it isn't asked for again.
+        if (mVerifyAndSubmitData != null && mVerifyAndSubmitData.getHighScores() != null)
+        {
+            HighScoresData highScores = mVerifyAndSubmitData.getHighScores();
+
+            getHighScoresIntent.putParcelableArrayListExtra(
+                    getString(R.string.KEY_HIGH_SCORE_ROWS),
+                    new ArrayList<GetScoresListRowData>(highScores.getRows()));
+            getHighScoresIntent.putExtra(
+                    getString(R.string.KEY_HIGH_SCORE_USER_INDEX), highScores.getUserIndex());
+        }
+
         // On to showing High Scores...
         startActivity(getHighScoresIntent);
     }
@@ -577,25 +658,22 @@ public class AuthenticatorActivity extends FragmentActivity
      *
      * <p>Note: The current state in the state machine will direct flow.</p>
      *
-     * @param result The database (JSon) response:
+     * @param result The database response (see VerifyAndSubmitData):
      */
-    public void onQueryTaskCompleted(String result)
+    public void onQueryTaskCompleted(VerifyAndSubmitData result)
     {
         // Log the result
-        Log.d(TAG, "onQueryTaskCompleted().result: " + result);
+        Log.d(TAG, "onQueryTaskCompleted().result: " + result.getResult() + ", score_result: " +
+                result.getScoreResult());
 
-        // These are the only states that query for data:
+        // This is the only state that queries for data. (The later states use its answer.)
         switch (mCurrentState)
         {
             case STATE_VERIFY_CREDENTIALS:
 
+                mVerifyAndSubmitData = result;
                 onVerifyCredentialsTaskCompleted(result);
                 break;
-
-            case STATE_STORE_SCORE:
-
-                onSaveScoreTaskCompleted(result);
-                break;
         }
     }
 
@@ -673,32 +751,17 @@ public class AuthenticatorActivity extends FragmentActivity
      *
      * @param result
      */
-    public void onVerifyCredentialsTaskCompleted(String result)
+    public void onVerifyCredentialsTaskCompleted(AuthResultData result)
     {
-        int intResult = 0;
-
-        // Parse the JSon result.
-        try
-        {
-            JSONObject jsonResponse = new JSONObject(result);
-            intResult = jsonResponse.optInt("result");
-        }
-
-        // What happened here? This is bad. Something went wrong with the data. This is
-        // probably not a JSon exception but rather a malformed response coming back from
-        // the server. Either way, we need to log the problem.
-        catch(JSONException e)
-        {
-            Log.e(TAG, "onVerifyCredentialsTaskCompleted().JSONException: " + e.getMessage());
-            return;
-        }
+        // Already decoded (a malformed response never gets here, it's an error instead):
+        int intResult = result.getResult();
 
         // Something went wrong. This should either be a negative number (-1 to -3 = errors) or a
         // positive number representing success and the user's userId.
         if (intResult == 0)
         {
             Log.e(TAG, "onVerifyCredentialsTaskCompleted(): Invalid return of '0'");
-            onTaskErrorDuringVerifyCredentials(result);
+            onTaskErrorDuringVerifyCredentials("Invalid return of '0'");
             return;
         }
 
@@ -737,7 +800,9 @@ public class AuthenticatorActivity extends FragmentActivity
 
         // We only want to store the user's account info if the "Remember me" checkbox is checked
         // and an account DOES NOT already exist:
-        if (mUserData.getRememberMe() && mAuthenticator.findAccount() == null)
+        Account account = mAuthenticator.findAccount();
+
+        if (mUserData.getRememberMe() && account == null)
         {
             // Store account info in AccountManager on the user's device:
             Log.d(TAG, "Adding Account to AccountManager");
@@ -748,6 +813,12 @@ public class AuthenticatorActivity extends FragmentActivity
                     mUserData.getAuthToken());
         }
 
+        // Added before it was verified (see onLoginDialogPositiveClick)? Now it has its id.
+        else if (mUserData.getRememberMe() && account.name.equals(mUserData.getUsername()))
+        {
+            mAuthenticator.setAuthToken(account, mUserData.getAuthToken());
+        }
+
         // Change the list row image to a checkmark for "Verifying account" and don't show
         // the "skipping" textfield:
         setRowImage(mCurrentState, IMAGE_CHECKMARK);
@@ -769,10 +840,13 @@ public class AuthenticatorActivity extends FragmentActivity
      *
      * @param result
      */
-    public void onSaveScoreTaskCompleted(String result)
+    public void onSaveScoreTaskCompleted(AuthResultData result)
     {
         Log.d(TAG, "onSaveScoreTaskCompleted()");
 
+        // A checkmark for "Storing score":
+        setRowImage(mCurrentState, IMAGE_CHECKMARK);
+
         // Don't display the 'skipping' textfield:
         setSkippingVisibility(mCurrentState, View.INVISIBLE);
 
@@ -780,6 +854,25 @@ public class AuthenticatorActivity extends FragmentActivity
         startTimerBeforeGoingToHighScoresActivity();
     }
 
+    /**
+     * <p>The score is waiting on the device (see ScoreQueue) and goes to the server later. The
+     * row shows it's pending with "queued" instead of "skipped".</p>
+     */
+    private void onSaveScoreQueued()
+    {
+        Log.d(TAG, "onSaveScoreQueued()");
+
+        setRowImage(mCurrentState, IMAGE_PLEASE_WAIT);
+
+        TextView queued = (TextView) mAuthListRows[mCurrentState].findViewById(
+                R.id.authentication_row_skipping_id);
+        queued.setText(R.string.authentication_queued);
+        queued.setVisibility(View.VISIBLE);
+
+        // Delay going to High Scores activity so user can read Authentication steps:
+        startTimerBeforeGoingToHighScoresActivity();
+    }
+
     private void startTimerBeforeGoingToHighScoresActivity()
     {
         Log.d(TAG, "startTimerBeforeGoingToHighScoresActivity()");
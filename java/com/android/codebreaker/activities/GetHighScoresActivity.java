@@ -5,6 +5,10 @@ package com.android.codebreaker.activities;
  * are sorted by score in descending order with the current user's score highlighted and at
  * the top of the visual list. There is also a "PLAY AGAIN" button which takes the user back to
  * the main UI screen where the game resides.</p>
+ *
+ * <p>When the user's score was just stored the part of the leaderboard around it came back in
+ * the same answer (see AuthenticatorActivity). Those rows are shown straight away and nothing
+ * is queried.</p>
  */
 
 import android.content.Intent;
@@ -13,9 +17,9 @@ import android.app.Activity;
 import android.util.Log;
 import android.view.View;
 import android.widget.ListView;
-import android.widget.Toast;
 
 import com.android.codebreaker.data.GetHighScoresDataRequest;
+import com.android.codebreaker.data.HighScoresData;
 import com.android.codebreaker.data.IDataRequestCallback;
 import com.android.codebreaker.data.UserData;
 import com.android.codebreaker.lists.GetScoresListAdapter;
@@ -23,15 +27,10 @@ import com.android.codebreaker.lists.GetScoresListRowData;
 import com.android.codebreaker.R;
 import com.android.codebreaker.misc.Utilities;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.Locale;
 
-public class GetHighScoresActivity extends Activity implements IDataRequestCallback
+public class GetHighScoresActivity extends Activity
+        implements IDataRequestCallback<HighScoresData>
 {
     // Used in Logs
     private final String TAG = this.getClass().getSimpleName();
@@ -53,6 +52,9 @@ public class GetHighScoresActivity extends Activity implements IDataRequestCallb
     // Where all of the user's data is stored like "score"...
     private UserData mUserData;
 
+    // The "High Scores" query while it's running (so it can be cancelled if the user moves on):
+    private GetHighScoresDataRequest mGetHighScoresDataRequest;
+
     /**
      * <p>Initializes the screen with the visual components.</p>
      *
@@ -80,6 +82,22 @@ public class GetHighScoresActivity extends Activity implements IDataRequestCallb
                     (UserData) getIntent().getSerializableExtra(getString(R.string.KEY_USER_DATA));
         }
 
+        // The leaderboard came along with the user's score: Nothing to ask the server for.
+        ArrayList<GetScoresListRowData> rows =
+                getIntent().getParcelableArrayListExtra(getString(R.string.KEY_HIGH_SCORE_ROWS));
+
+        if (rows != null && ! rows.isEmpty())
+        {
+            Log.d(TAG, "onCreate(): " + rows.size() + " scores from the intent");
+
+            mData = rows;
+            mUserIndexInScoresList =
+                    getIntent().getIntExtra(getString(R.string.KEY_HIGH_SCORE_USER_INDEX), -1);
+
+            showTheScores();
+            return;
+        }
+
         // We need an internet connection to show the high scores list:
         if ( ! Utilities.isUserConnectedToInternet(getApplicationContext()))
         {
@@ -93,6 +111,21 @@ public class GetHighScoresActivity extends Activity implements IDataRequestCallb
         queryForHighScoresData();
     }
 
+    /**
+     * <p>Nobody is left to show the scores to, so call the query off.</p>
+     */
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+
+        if (mGetHighScoresDataRequest != null)
+        {
+            mGetHighScoresDataRequest.cancel();
+            mGetHighScoresDataRequest = null;
+        }
+    }
+
     /**
      * <p>The user has returned to the game.</p>
      *
@@ -113,9 +146,9 @@ public class GetHighScoresActivity extends Activity implements IDataRequestCallb
         // problem (probably in "GetHighScoresDataRequest").
         try
         {
-            GetHighScoresDataRequest getHighScoresDataRequest =
+            mGetHighScoresDataRequest =
                     new GetHighScoresDataRequest(this, getApplicationContext());
-            getHighScoresDataRequest.execute();
+            mGetHighScoresDataRequest.execute(mUserData);
         }
 
         // We should never get here.
@@ -176,66 +209,26 @@ public class GetHighScoresActivity extends Activity implements IDataRequestCallb
      *
      * <ul>
      *     <li>First a sanity check for a non-empty result;</li>
-     *     <li>Attempt to parse the result in JSon format;</li>
-     *     <li>Populate the High Scores list if above tests pass.</li>
+     *     <li>Populate the High Scores list. (The rows were already built in the background, see
+     *         HighScoresData.)</li>
      * </ul>
      *
      * @param result
      */
-    public void onQueryTaskCompleted(String result)
+    public void onQueryTaskCompleted(HighScoresData result)
     {
         // Oops, no data! This is bad.
-        if (result.isEmpty() || result == null)
+        if (result.getRows().isEmpty())
         {
             Log.d(TAG, "onQueryTaskCompleted(): " + getString(R.string.result_empty));
             return;
         }
 
-        Log.d(TAG, "onQueryTaskCompleted().result: " + result);
+        Log.d(TAG, "onQueryTaskCompleted(): " + result.getRows().size() + " scores");
 
-        // Parse the JSon "result" using the parent node "scores":
-        try
-        {
-            JSONObject jsonResponse = new JSONObject(result);
-            JSONArray jsonMainNode = jsonResponse.optJSONArray("scores");
-
-            // Walk the array of scores and add the following to the list's data object:
-            //     1) The current count (combines the iterator "i" and the length of the array);
-            //     2) The "username";
-            //     3) The formatted score.
-            for(int i = 0; i < jsonMainNode.length(); i++)
-            {
-                JSONObject jsonChildNode = jsonMainNode.getJSONObject(i);
-
-                // The "username":
-                String outputUsername = jsonChildNode.optString("username");
-
-                // The formatted score:
-                String score = jsonChildNode.optString("score");
-                String formattedScore = NumberFormat.getNumberInstance(Locale.US).format(
-                        Integer.parseInt(score));
-
-                // Add it to the list's data object. Note: The number counts back from
-                // array.length to "1" combining the JSon child nodes and the iterator. Thus, the
-                // list is essentially in descending order:
-                mData.add(0, new GetScoresListRowData((jsonMainNode.length() - i) /* 1 */,
-                        outputUsername /* 2 */, formattedScore /* 3 */));
-
-                // Find the user in the list
-                if (outputUsername.equals(mUserData.getUsername()) &&
-                        score.equals(Integer.toString(mUserData.getScore())))
-                {
-                    mUserIndexInScoresList = jsonMainNode.length() - i - 1;
-                }
-            }
-        }
-        catch(JSONException e)
-        {
-            Toast.makeText(
-                    getApplicationContext(),
-                    "Error" + e.toString(),
-                    Toast.LENGTH_SHORT).show();
-        }
+        // A copy: The rows may be shared with the cache (see HighScoresData).
+        mData = new ArrayList<>(result.getRows());
+        mUserIndexInScoresList = result.getUserIndex();
 
         // Everything's ready, so show the list:
         showTheScores();
@@ -20,42 +20,89 @@ package com.android.codebreaker.activities;
  *     <li>An "OK" button       (each click is a turn);</li>
  *     <li>An unselectable list (reveals the outcome of each turn).</li>
  * </ul>
+ *
+ * <p>Game modes: The mode is passed in the Intent (see KEY_GAME_MODE). In the "classic" mode the
+ * user breaks the app's Secret Number. In the "computer guesses" mode the roles are reversed:
+ * The user dials a Secret Number into the Number Pickers, presses "OK" and the app cracks it
+ * (see engine/MinimaxSolver). The app's turns are scored automatically.</p>
  */
 
 import android.app.Activity;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.util.Log;
 import android.view.View;
 import android.view.Window;
+import android.widget.Button;
 import android.widget.ListView;
 import android.widget.NumberPicker;
+import android.widget.TextView;
+import android.widget.Toast;
 
+import com.android.codebreaker.data.ScoreQueue;
 import com.android.codebreaker.data.UserData;
+import com.android.codebreaker.engine.AdversaryEngine;
+import com.android.codebreaker.engine.BatchScorer;
+import com.android.codebreaker.engine.CandidateSet;
+import com.android.codebreaker.engine.DifficultyTable;
+import com.android.codebreaker.engine.FeedbackTable;
+import com.android.codebreaker.engine.GameJournal;
+import com.android.codebreaker.engine.GuessScorer;
+import com.android.codebreaker.engine.HintEngine;
+import com.android.codebreaker.engine.MinimaxSolver;
+import com.android.codebreaker.engine.OpeningBook;
+import com.android.codebreaker.engine.ScoreCalculator;
+import com.android.codebreaker.engine.TranscriptCodec;
 import com.android.codebreaker.lists.InputResponseListAdapter;
-import com.android.codebreaker.lists.InputResponseListRowData;
+import com.android.codebreaker.lists.TurnHistory;
 import com.android.codebreaker.R;
 import com.android.codebreaker.misc.Utilities;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.io.File;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
 
 public class MainActivity extends Activity implements NumberPicker.OnValueChangeListener
 {
+    // Game modes (passed in the Intent, see KEY_GAME_MODE):
+    public static final int MODE_CLASSIC = 0;           // The user breaks the app's code
+    public static final int MODE_COMPUTER_GUESSES = 1;  // The app breaks the user's code
+    public static final int MODE_EVIL = 2;              // Classic, but the code keeps dodging
+    public static final int MODE_MULTI = 3;             // Several Secret Numbers at once
+
+    // Multi-secret mode: How many Secret Numbers unless the Intent says otherwise (see
+    // KEY_SECRET_COUNT).
+    public static final int DEFAULT_SECRET_COUNT = 4;
+
+    // Multi-secret mode: Fewer than two is just the classic game.
+    public static final int MIN_SECRET_COUNT = 2;
+
     // Used in Logs
     private final String TAG = this.getClass().getSimpleName();
 
+    // "Computer guesses" mode: The pause between the app's turns so the user can follow along.
+    private final long COMPUTER_TURN_DELAY_MILLIS = 1000;
+
     // The maximum number of turns. We don't want to embarrass anyone:
     private final int MAX_NUMBER_OF_TURNS = 100;
 
+    // How long the "Hint" search may take before it settles for the best guess found so far:
+    private final long HINT_TIME_BUDGET_MILLIS = HintEngine.DEFAULT_TIME_BUDGET_MILLIS;
+
+    // The four Number Pickers, left to right:
+    private final int[] NUMBER_PICKER_IDS = {
+            R.id.numberPicker1, R.id.numberPicker2, R.id.numberPicker3, R.id.numberPicker4 };
+
     // The bridge between the Response list view and the data:
     InputResponseListAdapter mInputResponseListAdapter;
 
     // The data tied to the List Adapter by row:
-    ArrayList<InputResponseListRowData> mData;
+    TurnHistory mData;
 
     // Store the Number Picker current values:
     Map<Integer, Integer> mNumberPickerValues = new TreeMap<Integer, Integer>();
@@ -73,6 +120,79 @@ public class MainActivity extends Activity implements NumberPicker.OnValueChange
     // We need to preserve the start time since "duration" is a factor in calculating the score.
     long mStartTime;
 
+    // Every Secret Number that is still possible given the turns so far. Pruned once per turn.
+    CandidateSet mCandidates;
+
+    // Shows the user how many codes remain (ie; the size of mCandidates).
+    TextView mTxtCodesRemaining;
+
+    // Finds the "best next guess" for the "Hint" button. Created on the first hint.
+    HintEngine mHintEngine;
+
+    // The hint search in progress (if any):
+    HintTask mHintTask;
+
+    // The first guess and its feedback. The opening book (see engine/OpeningBook) answers the
+    // second turn from these. -1 = no turns yet.
+    int mFirstGuess = -1;
+    int mFirstFeedback = -1;
+
+    // Every turn of the game, recorded for the score submission (see engine/TranscriptCodec).
+    // Created once the Secret Number is known.
+    TranscriptCodec.Writer mTranscript;
+
+    // One of the MODE_ constants above:
+    int mGameMode = MODE_CLASSIC;
+
+    // Every turn of the game, on disk, so the game survives the process being killed (see
+    // engine/GameJournal). Null in "computer guesses" mode and until the old journal (if any)
+    // has been checked.
+    GameJournal mJournal;
+
+    // The journal check in progress (if any). Until it's done there's no mJournal and the "OK"
+    // button is disabled.
+    ResumeTask mResumeTask;
+
+    // "Evil" mode: Answers the user's guesses (see engine/AdversaryEngine) and the buffer the
+    // candidates are copied into each turn. Both are reused so a turn allocates nothing.
+    AdversaryEngine mAdversary;
+    int[] mCandidateBuffer;
+
+    // Multi-secret mode: The Secret Numbers (packed codes, see engine/GuessScorer), a bit per
+    // Secret Number that has been found, and the buffer each turn's feedback is scored into.
+    int[] mSecrets;
+    int mSolvedSecrets = 0;
+    int[] mFeedbacks;
+
+    // "Computer guesses" mode: Has the user locked in his/her Secret Number yet?
+    boolean mIsSecretNumberChosen = false;
+
+    // "Computer guesses" mode: Has the app cracked it? (ie; The game is over.)
+    boolean mIsSecretNumberCracked = false;
+
+    // "Computer guesses" mode: Every digit the app has guessed so far (see
+    // MinimaxSolver.digitMask). The solver uses it to skip equivalent guesses.
+    int mUsedDigits = 0;
+
+    // "Computer guesses" mode: The app's brain. Created when the first turn is played.
+    MinimaxSolver mSolver;
+
+    // "Computer guesses" mode: The solver search in progress (if any):
+    SolverTask mSolverTask;
+
+    // "Computer guesses" mode: Paces the app's turns.
+    Handler mComputerTurnHandler = new Handler();
+
+    // "Computer guesses" mode: Plays the app's next turn.
+    Runnable mComputerTurnRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            playComputerTurn();
+        }
+    };
+
     /**
      * <p>Initializes the screen with the visual components.</p>
      *
@@ -101,27 +221,82 @@ public class MainActivity extends Activity implements NumberPicker.OnValueChange
         setNumberPickerProperties(
                 (NumberPicker) findViewById(R.id.numberPicker4), savedInstanceState);
 
+        // Let the feedback table, the opening book and the difficulty table know where their
+        // assets are. (They're only loaded on first use.)
+        Utilities.installFeedbackTable(this);
+        Utilities.installOpeningBook(this);
+        Utilities.installDifficultyTable(this);
+
         // The reference to the /res/layout/list_view_all_lists.list:
         mListView = (ListView) findViewById(R.id.list);
 
+        // The "N codes remain" text under the "OK" button:
+        mTxtCodesRemaining = (TextView) findViewById(R.id.txtCodesRemaining);
+
+        // Which game are we playing?
+        mGameMode = getIntent().getIntExtra(getString(R.string.KEY_GAME_MODE), MODE_CLASSIC);
+
         // This is the first time the user came to this activity:
         if(savedInstanceState == null)
         {
-            // Set the secret number
-            Random randomGenerator = new Random();
-            mSecretNumber[0] = randomGenerator.nextInt(10);
-            mSecretNumber[1] = randomGenerator.nextInt(10);
-            mSecretNumber[2] = randomGenerator.nextInt(10);
-            mSecretNumber[3] = randomGenerator.nextInt(10);
+            // Set the secret number. (In "computer guesses" mode the user picks it.)
+            if (mGameMode == MODE_CLASSIC)
+            {
+                Random randomGenerator = new Random();
+                mSecretNumber[0] = randomGenerator.nextInt(10);
+                mSecretNumber[1] = randomGenerator.nextInt(10);
+                mSecretNumber[2] = randomGenerator.nextInt(10);
+                mSecretNumber[3] = randomGenerator.nextInt(10);
+
+                Log.i(TAG, "****** SECRET NUMBER ******: " +
+                        Utilities.convertIntArrayToString(mSecretNumber));
+
+                mTranscript = new TranscriptCodec.Writer(
+                        GuessScorer.toIndex(GuessScorer.pack(mSecretNumber)));
+            }
 
-            Log.i(TAG, "****** SECRET NUMBER ******: " +
-                    Utilities.convertIntArrayToString(mSecretNumber));
+            // "Evil" mode: There is no Secret Number until the user corners it. (See
+            // okButtonClick.)
+            if (mGameMode == MODE_EVIL)
+            {
+                mTranscript = new TranscriptCodec.Writer(0);
+            }
+
+            // Multi-secret mode: Several Secret Numbers instead of one.
+            if (mGameMode == MODE_MULTI)
+            {
+                Random randomGenerator = new Random();
+                int secretCount = getIntent().getIntExtra(
+                        getString(R.string.KEY_SECRET_COUNT), DEFAULT_SECRET_COUNT);
+
+                mSecrets = new int[Math.max(MIN_SECRET_COUNT,
+                        Math.min(TurnHistory.MAX_SECRET_COUNT, secretCount))];
+
+                for (int iter = 0; iter < mSecrets.length; iter++)
+                {
+                    mSecrets[iter] = GuessScorer.fromIndex(
+                            randomGenerator.nextInt(GuessScorer.CODE_COUNT));
+
+                    Log.i(TAG, "****** SECRET NUMBER " + (iter + 1) + " ******: " +
+                            String.format(Locale.US, "%04d", GuessScorer.toIndex(mSecrets[iter])));
+                }
+            }
 
             // Set the start time
             mStartTime = System.currentTimeMillis();
 
-            // Initialize mData (Holds
-            mData = new ArrayList<>();
+            // Initialize mData (Holds every row of the list)
+            mData = new TurnHistory();
+
+            // Nothing has been guessed yet so every code is possible:
+            mCandidates = new CandidateSet();
+
+            // Was a game like this one cut short? Check the journal (in the background) before
+            // the user can play.
+            if (mGameMode != MODE_COMPUTER_GUESSES)
+            {
+                startResumeTask();
+            }
         }
 
         // User has returned to this activity so set the class variables to what they were
@@ -131,8 +306,75 @@ public class MainActivity extends Activity implements NumberPicker.OnValueChange
             mTurns = savedInstanceState.getInt("mTurns");
             mSecretNumber = savedInstanceState.getIntArray("mSecretNumber");
             mListView.onRestoreInstanceState(savedInstanceState.getParcelable("mListView"));
-            mData = savedInstanceState.getParcelableArrayList("mData");
+            mData = new TurnHistory(savedInstanceState.getIntArray("mData"));
             mStartTime = savedInstanceState.getLong("mStartTime");
+            mCandidates = new CandidateSet(savedInstanceState.getLongArray("mCandidates"));
+            mIsSecretNumberChosen = savedInstanceState.getBoolean("mIsSecretNumberChosen");
+            mIsSecretNumberCracked = savedInstanceState.getBoolean("mIsSecretNumberCracked");
+            mUsedDigits = savedInstanceState.getInt("mUsedDigits");
+            mFirstGuess = savedInstanceState.getInt("mFirstGuess");
+            mFirstFeedback = savedInstanceState.getInt("mFirstFeedback");
+            mTranscript = TranscriptCodec.Writer.fromByteArray(
+                    savedInstanceState.getByteArray("mTranscript"));
+            mSecrets = savedInstanceState.getIntArray("mSecrets");
+            mSolvedSecrets = savedInstanceState.getInt("mSolvedSecrets");
+
+            // The old instance went away before the journal was checked (ie; Nothing has been
+            // played yet and the file may still hold a game that was cut short.) Check it again.
+            if (savedInstanceState.getBoolean("mIsResumePending"))
+            {
+                startResumeTask();
+            }
+
+            // Keep writing to the same journal:
+            else if (mGameMode != MODE_COMPUTER_GUESSES)
+            {
+                mJournal = GameJournal.open(getJournalFile());
+            }
+        }
+
+        // Show the user how many codes are possible:
+        showCodesRemaining();
+
+        if (mGameMode == MODE_EVIL)
+        {
+            mAdversary = new AdversaryEngine();
+            mCandidateBuffer = new int[GuessScorer.CODE_COUNT];
+        }
+
+        // Multi-secret mode: No hints (which Secret Number would they be for?) and the text under
+        // the "OK" button shows how many Secret Numbers have been found.
+        if (mGameMode == MODE_MULTI)
+        {
+            mFeedbacks = new int[mSecrets.length];
+
+            findViewById(R.id.button_hint).setVisibility(View.GONE);
+            showSecretsSolved();
+        }
+
+        // "Computer guesses" mode: No hints for the app and the "OK" button locks in the user's
+        // Secret Number.
+        if (mGameMode == MODE_COMPUTER_GUESSES)
+        {
+            findViewById(R.id.button_hint).setVisibility(View.GONE);
+            ((Button) findViewById(R.id.button_ok)).setText(R.string.activity_main_button_set_code);
+
+            // Pick up where the app left off. (Unless it's over: Another turn would be one too
+            // many.)
+            if (mIsSecretNumberCracked)
+            {
+                findViewById(R.id.button_ok).setEnabled(false);
+                mTxtCodesRemaining.setText(getString(R.string.computer_guesses_cracked, mTurns));
+            }
+            else if (mIsSecretNumberChosen)
+            {
+                findViewById(R.id.button_ok).setEnabled(false);
+                mComputerTurnHandler.postDelayed(mComputerTurnRunnable, COMPUTER_TURN_DELAY_MILLIS);
+            }
+            else
+            {
+                mTxtCodesRemaining.setText(R.string.computer_guesses_pick_code);
+            }
         }
 
         // Create the new list adapter
@@ -146,6 +388,84 @@ public class MainActivity extends Activity implements NumberPicker.OnValueChange
         mInputResponseListAdapter.notifyDataSetChanged();
     }
 
+    /**
+     * <p>Makes sure every turn so far is on disk.</p>
+     */
+    @Override
+    protected void onPause()
+    {
+        super.onPause();
+
+        // The process may be killed any time from now on:
+        if (mJournal != null)
+        {
+            mJournal.sync();
+        }
+    }
+
+    /**
+     * <p>Stops the hint and solver workers and the journal check (if there are any) and closes
+     * the journal. If the user is leaving the game for good the journal is deleted; otherwise
+     * (eg; a rotation) the next activity instance carries on with it.</p>
+     */
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+
+        // The next activity instance (if any) checks the journal again. (See
+        // onSaveInstanceState.)
+        if (mResumeTask != null)
+        {
+            mResumeTask.cancel(false);
+            mResumeTask = null;
+        }
+
+        if (mJournal != null)
+        {
+            if (isFinishing())
+            {
+                mJournal.discard();
+            }
+            else
+            {
+                mJournal.close();
+            }
+
+            mJournal = null;
+        }
+
+        mComputerTurnHandler.removeCallbacks(mComputerTurnRunnable);
+
+        // A hint search that's still running would dial its hint into this instance's Number
+        // Pickers (eg; after a rotation). Drop it; the user can ask the next instance.
+        if (mHintTask != null)
+        {
+            mHintTask.cancel(false);
+            mHintTask = null;
+        }
+
+        if (mHintEngine != null)
+        {
+            mHintEngine.shutdown();
+            mHintEngine = null;
+        }
+
+        // A rotation doesn't stop a search that's already running: Drop its guess so this
+        // instance doesn't play on. (The next instance picks the game up.)
+        if (mSolverTask != null)
+        {
+            mSolverTask.cancel(false);
+            mSolverTask = null;
+        }
+
+        if (mSolver != null)
+        {
+            mSolver.shutdown();
+            mSolver = null;
+        }
+    }
+
     /**
      * <p>The user has returned to the game. So make it look like it did before.</p>
      *
@@ -182,7 +502,33 @@ public class MainActivity extends Activity implements NumberPicker.OnValueChange
         outState.putParcelable("mListView", mListView.onSaveInstanceState());
 
         // Save the list view's data
-        outState.putParcelableArrayList("mData", mData);
+        outState.putIntArray("mData", mData.toIntArray());
+
+        // Save the remaining candidates and the first turn (for the opening book)
+        outState.putLongArray("mCandidates", mCandidates.toLongArray());
+        outState.putInt("mFirstGuess", mFirstGuess);
+        outState.putInt("mFirstFeedback", mFirstFeedback);
+
+        // Multi-secret mode state
+        if (mSecrets != null)
+        {
+            outState.putIntArray("mSecrets", mSecrets);
+            outState.putInt("mSolvedSecrets", mSolvedSecrets);
+        }
+
+        // Save the game transcript (if there is one yet)
+        if (mTranscript != null)
+        {
+            outState.putByteArray("mTranscript", mTranscript.toByteArray());
+        }
+
+        // "Computer guesses" mode state
+        outState.putBoolean("mIsSecretNumberChosen", mIsSecretNumberChosen);
+        outState.putBoolean("mIsSecretNumberCracked", mIsSecretNumberCracked);
+        outState.putInt("mUsedDigits", mUsedDigits);
+
+        // Is the journal still being checked?
+        outState.putBoolean("mIsResumePending", mResumeTask != null);
     }
 
     /**
@@ -233,108 +579,653 @@ public class MainActivity extends Activity implements NumberPicker.OnValueChange
      * <p>The "OK" button callback. This is the button the user selects when he/she thinks
      * they have the correct Secret Number.</p>
      *
+     * <p>In "computer guesses" mode this button locks in the user's Secret Number instead.</p>
+     *
      * @param v The View.
      */
     public void okButtonClick(View v)
     {
         Log.d(TAG, "'OK' button clicked");
 
-        // Add another turn to the user's game:
+        if (mGameMode == MODE_COMPUTER_GUESSES)
+        {
+            chooseSecretNumber();
+            return;
+        }
+
+        // Turn the Number Picker values into a code index (ie; the guess read as a decimal
+        // number 0-9999).
+        int guessIndex = getNumberPickerCodeIndex();
+
+        if (mGameMode == MODE_MULTI)
+        {
+            playMultiTurn(guessIndex);
+            return;
+        }
+
+        // Look up the feedback for the Secret Number/guess pair. See engine/FeedbackTable for the
+        // details. The result holds both the "Green" and "Gray" counts.
+        int feedback;
+
+        if (mGameMode == MODE_EVIL)
+        {
+            // No Secret Number: The adversary answers with whatever keeps the most codes alive.
+            int candidateCount = mCandidates.copyTo(mCandidateBuffer);
+            feedback = mAdversary.respond(guessIndex, mCandidateBuffer, candidateCount);
+
+            // Cornered! The guess is the only code left, so that's the Secret Number.
+            if (GuessScorer.isWin(feedback))
+            {
+                GuessScorer.unpack(GuessScorer.fromIndex(guessIndex), mSecretNumber);
+                mTranscript.setSecret(guessIndex);
+            }
+        }
+        else
+        {
+            feedback = FeedbackTable.getInstance().score(
+                    GuessScorer.toIndex(GuessScorer.pack(mSecretNumber)), guessIndex);
+        }
+
+        // Show it:
+        recordTurn(guessIndex, feedback);
+
+        // Do we have all Green balls? If yes then the user has selected the Secret Number and
+        // we need to move on to the Authenticator activity.
+        //
+        // Note: The below conditional could've come right after scoring. But, I think it's best
+        // to show the user the four green balls visually before navigating away. It's a "woohoo"
+        // thing.
+        if (GuessScorer.isWin(feedback))
+        {
+            Log.i(TAG, "User has Correctly guessed the Secret Number.");
+
+            gotoEndGame();
+        }
+    }
+
+    /**
+     * <p>Adds a turn to the game: Counts it, adds a row to the results list and prunes the
+     * candidates. Used by both the user's and the app's turns.</p>
+     *
+     * @param guessIndex The guess (0-9999)
+     * @param feedback   The encoded feedback the guess received (see engine/GuessScorer)
+     */
+    private void recordTurn(int guessIndex, int feedback)
+    {
+        // Add another turn to the game:
+        mTurns++;
+
+        // Remember how the game opened:
+        if (mTurns == 1)
+        {
+            mFirstGuess = guessIndex;
+            mFirstFeedback = feedback;
+        }
+
+        // Record it for the score submission:
+        if (mTranscript != null)
+        {
+            mTranscript.append(guessIndex, feedback);
+        }
+
+        // And in case the process is killed:
+        if (mJournal != null)
+        {
+            mJournal.append(guessIndex, feedback);
+        }
+
+        // Throw away every code that couldn't have given this feedback and show what's left:
+        mCandidates.prune(guessIndex, feedback);
+        showCodesRemaining();
+
+        // Add all of the data to the history. A new row is added to the list, at least it's
+        // data.
+        mData.add(mTurns, guessIndex, feedback, TurnHistory.SINGLE_SECRET);
+
+        // The List adapter will take the above "new" data and create a new visual row with it.
+        mInputResponseListAdapter.notifyDataSetChanged();
+    }
+
+    /**
+     * <p>Multi-secret mode: Scores the guess against every Secret Number at once and adds a row
+     * for each one that hasn't been found yet (first Secret Number on top). The game is over
+     * when all of them have been found.</p>
+     *
+     * @param guessIndex The guess (0-9999)
+     */
+    private void playMultiTurn(int guessIndex)
+    {
         mTurns++;
 
-        // First we need to convert the mNumberPickerValues hashmap values into an Array so
-        // we can iterate over both the Secret Number and Number Picker values using one for loop:
-        Collection<Integer> values = mNumberPickerValues.values();
-        Integer[] numberPickerValues = values.toArray(new Integer[values.size()]);
-
-        // We need to clone the Secret Number array so we can change the values when we're
-        // comparing between the Secret Number array and the user's selected numbers in the
-        // Number Pickers. We change the number to a -1 when we've located a "hit". Thus we won't
-        // have any further "hits" on that same number in later iterations. For instance, if the
-        // Secret Number is [1,2,3,4] and the user selected [1,1,1,1] we only want one hit.
-        // After recording the one hit, we change the Secret Number's "1" to a -1. So, the final
-        // Secret Number array looks like this: [-1,2,3,4].
-        int[] tempSecretNumber = mSecretNumber.clone();
-
-        // This is where we store the "hits":
-        ArrayList<Integer> coloredBalls = new ArrayList<Integer>();
-
-        // We need to keep track of this. If the number of "Green" balls is four, the user has
-        // found the secret number and the UI needs to navigate to the Authenticator activity.
-        int totalGreenBalls = 0;
-
-        // How many numbers entered are in the right spots (ie; "Green" balls)?
-        // This is fairly straight forward. We compare the Secret Number array index value to the
-        // same index value in the Number Picker values array: There's a 1:1 relationship
-        // concerning array indices.
-        for (int iter = 0; iter < tempSecretNumber.length; iter++)
-        {
-            if (numberPickerValues[iter] == mSecretNumber[iter])
+        BatchScorer.scoreSecrets(
+                GuessScorer.fromIndex(guessIndex), mSecrets, mSecrets.length, mFeedbacks);
+
+        // (The journal only needs the guess: The feedback is scored again on replay.)
+        if (mJournal != null)
+        {
+            mJournal.append(guessIndex, mFeedbacks[0]);
+        }
+
+        for (int secret = mSecrets.length - 1; secret >= 0; secret--)
+        {
+            if ((mSolvedSecrets & (1 << secret)) != 0)
             {
-                // Add a green to Colored Balls array:
-                coloredBalls.add(R.drawable.green);
+                continue;
+            }
 
-                // Make the Secret Number value a -1 so we won't have any more hits on that one:
-                tempSecretNumber[iter] = -1;
+            mData.add(mTurns, guessIndex, mFeedbacks[secret], secret);
 
-                // Increment the Total Green Balls value. We use this later to see if we have
-                // all Green balls which means the user has selected the Secret Number.
-                totalGreenBalls++;
+            if (GuessScorer.isWin(mFeedbacks[secret]))
+            {
+                mSolvedSecrets |= 1 << secret;
             }
         }
 
-        // How many numbers entered are in the secret number but are NOT in the right spot?
-        // This is a little more complicated. We are trying to find if any of the user's selected
-        // numbers are in the Secret Number array. If we find one, we record it as a "Grey" ball.
-        for (Integer value : mNumberPickerValues.values())
+        mInputResponseListAdapter.notifyDataSetChanged();
+        showSecretsSolved();
+    }
+
+    /**
+     * <p>Multi-secret mode: Shows how many Secret Numbers have been found, or the final result.
+     * (These games don't go to the leaderboard: scores and transcripts are for one Secret
+     * Number.)</p>
+     */
+    private void showSecretsSolved()
+    {
+        int solved = Integer.bitCount(mSolvedSecrets);
+
+        if (solved == mSecrets.length)
+        {
+            Log.i(TAG, "User has found every Secret Number.");
+
+            discardJournal();
+
+            findViewById(R.id.button_ok).setEnabled(false);
+            mTxtCodesRemaining.setText(getString(R.string.multi_all_solved, solved, mTurns));
+            return;
+        }
+
+        mTxtCodesRemaining.setText(getString(R.string.multi_solved, solved, mSecrets.length));
+    }
+
+    /**
+     * <p>The Number Picker values as a code index (0-9999). The values are kept in a TreeMap
+     * keyed by the Number Picker's id so they come out left to right.</p>
+     *
+     * @return 0-9999
+     */
+    private int getNumberPickerCodeIndex()
+    {
+        int codeIndex = 0;
+
+        for (int value : mNumberPickerValues.values())
         {
-            for (int iter = 0; iter < tempSecretNumber.length; iter++)
+            codeIndex = codeIndex * 10 + value;
+        }
+
+        return codeIndex;
+    }
+
+    /**
+     * <p>"Computer guesses" mode: The user has dialed in his/her Secret Number. Lock it in and
+     * let the app start guessing.</p>
+     */
+    private void chooseSecretNumber()
+    {
+        if (mIsSecretNumberChosen)
+        {
+            return;
+        }
+
+        GuessScorer.unpack(GuessScorer.fromIndex(getNumberPickerCodeIndex()), mSecretNumber);
+        mIsSecretNumberChosen = true;
+        mStartTime = System.currentTimeMillis();
+        mTranscript = new TranscriptCodec.Writer(
+                GuessScorer.toIndex(GuessScorer.pack(mSecretNumber)));
+
+        Log.i(TAG, "****** USER'S SECRET NUMBER ******: " +
+                Utilities.convertIntArrayToString(mSecretNumber));
+
+        // No changing your mind now:
+        findViewById(R.id.button_ok).setEnabled(false);
+
+        showCodesRemaining();
+        playComputerTurn();
+    }
+
+    /**
+     * <p>"Computer guesses" mode: Asks the solver for the app's next guess. The search runs in
+     * the background (see SolverTask).</p>
+     */
+    private void playComputerTurn()
+    {
+        // Already thinking?
+        if (mSolverTask != null)
+        {
+            return;
+        }
+
+        // The first two turns come straight out of the opening book:
+        int bookGuess = OpeningBook.getInstance().lookup(mTurns, mFirstGuess, mFirstFeedback);
+
+        if (bookGuess != OpeningBook.NO_ANSWER)
+        {
+            onComputerGuess(bookGuess);
+            return;
+        }
+
+        if (mSolver == null)
+        {
+            mSolver = new MinimaxSolver();
+        }
+
+        // Hand the solver a snapshot of the candidates:
+        int[] candidates = new int[mCandidates.size()];
+        int candidateCount = mCandidates.copyTo(candidates);
+
+        mSolverTask = new SolverTask(mSolver, candidates, candidateCount, mUsedDigits);
+        mSolverTask.execute();
+    }
+
+    /**
+     * <p>"Computer guesses" mode: The solver came up with a guess. Score it against the user's
+     * Secret Number, show it and either celebrate or queue up the next turn.</p>
+     *
+     * @param guessIndex 0-9999
+     */
+    private void onComputerGuess(int guessIndex)
+    {
+        int feedback = FeedbackTable.getInstance().score(
+                GuessScorer.toIndex(GuessScorer.pack(mSecretNumber)), guessIndex);
+
+        mUsedDigits |= MinimaxSolver.digitMask(guessIndex);
+        recordTurn(guessIndex, feedback);
+
+        if (GuessScorer.isWin(feedback))
+        {
+            Log.i(TAG, "The app has cracked the user's Secret Number.");
+
+            mIsSecretNumberCracked = true;
+            mTxtCodesRemaining.setText(getString(R.string.computer_guesses_cracked, mTurns));
+            return;
+        }
+
+        mComputerTurnHandler.postDelayed(mComputerTurnRunnable, COMPUTER_TURN_DELAY_MILLIS);
+    }
+
+    /**
+     * <p>Runs the solver off the UI thread and plays its guess.</p>
+     */
+    private class SolverTask extends AsyncTask<Void, Void, Integer>
+    {
+        // The solver doing the search. (mSolver goes away in onDestroy.)
+        private final MinimaxSolver mTaskSolver;
+
+        // Snapshot of the game:
+        private final int[] mSolverCandidates;
+        private final int mSolverCandidateCount;
+        private final int mSolverUsedDigits;
+
+        SolverTask(MinimaxSolver solver, int[] candidates, int candidateCount, int usedDigits)
+        {
+            mTaskSolver = solver;
+            mSolverCandidates = candidates;
+            mSolverCandidateCount = candidateCount;
+            mSolverUsedDigits = usedDigits;
+        }
+
+        @Override
+        protected Integer doInBackground(Void... params)
+        {
+            // The solver was shut down (ie; the activity is going away). No guess.
+            try
             {
-                if (value == tempSecretNumber[iter])
-                {
-                    // Add a grey to Colored Balls array:
-                    coloredBalls.add(R.drawable.grey);
+                return mTaskSolver.nextGuess(
+                        mSolverCandidates, mSolverCandidateCount, mSolverUsedDigits);
+            }
+            catch (RejectedExecutionException e)
+            {
+                return -1;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Integer guessIndex)
+        {
+            mSolverTask = null;
+
+            // Nothing found or the user has moved on (or this instance is gone, eg; a
+            // rotation):
+            if (guessIndex < 0 || isCancelled() || isFinishing() || isDestroyed())
+            {
+                return;
+            }
+
+            onComputerGuess(guessIndex);
+        }
+    }
+
+    /**
+     * <p>The "Hint" button callback. Searches for the guess that tells the user the most about
+     * the Secret Number and dials it into the Number Pickers. The search runs in the background
+     * and is cut short after HINT_TIME_BUDGET_MILLIS.</p>
+     *
+     * @param v The View.
+     */
+    public void hintButtonClick(View v)
+    {
+        Log.d(TAG, "'Hint' button clicked");
+
+        // Already looking for one? Be patient.
+        if (mHintTask != null)
+        {
+            return;
+        }
+
+        // Early in the game the opening book knows the answer:
+        int bookGuess = OpeningBook.getInstance().lookup(mTurns, mFirstGuess, mFirstFeedback);
+
+        if (bookGuess != OpeningBook.NO_ANSWER)
+        {
+            showHint(bookGuess);
+            return;
+        }
+
+        if (mHintEngine == null)
+        {
+            mHintEngine = new HintEngine();
+        }
+
+        // Hand the search a snapshot of the candidates:
+        int[] candidates = new int[mCandidates.size()];
+        int candidateCount = mCandidates.copyTo(candidates);
+
+        mHintTask = new HintTask(mHintEngine, candidates, candidateCount);
+        mHintTask.execute();
+    }
+
+    /**
+     * <p>Dials the hinted guess into the Number Pickers and tells the user about it.</p>
+     *
+     * @param guessIndex 0-9999
+     */
+    private void showHint(int guessIndex)
+    {
+        setNumberPickerValues(guessIndex);
+
+        String guess = String.format(Locale.US, "%04d", guessIndex);
+
+        Toast.makeText(
+                getApplicationContext(),
+                getString(R.string.hint_try, guess),
+                Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * <p>Sets the four Number Pickers to a code.</p>
+     *
+     * @param codeIndex 0-9999
+     */
+    private void setNumberPickerValues(int codeIndex)
+    {
+        int code = GuessScorer.fromIndex(codeIndex);
+
+        for (int iter = 0; iter < NUMBER_PICKER_IDS.length; iter++)
+        {
+            NumberPicker numberPicker = (NumberPicker) findViewById(NUMBER_PICKER_IDS[iter]);
+            int value = GuessScorer.digitAt(code, iter);
+
+            // Note: "setValue" doesn't call onValueChange so store the value ourselves:
+            numberPicker.setValue(value);
+            mNumberPickerValues.put(numberPicker.getId(), value);
+        }
+    }
+
+    /**
+     * <p>Runs the hint search off the UI thread and shows the result.</p>
+     */
+    private class HintTask extends AsyncTask<Void, Void, HintEngine.Hint>
+    {
+        // The engine doing the search. (mHintEngine goes away in onDestroy.)
+        private final HintEngine mEngine;
+
+        // Snapshot of the remaining candidates:
+        private final int[] mHintCandidates;
+        private final int mHintCandidateCount;
+
+        HintTask(HintEngine engine, int[] candidates, int candidateCount)
+        {
+            mEngine = engine;
+            mHintCandidates = candidates;
+            mHintCandidateCount = candidateCount;
+        }
+
+        @Override
+        protected HintEngine.Hint doInBackground(Void... params)
+        {
+            // The engine was shut down (ie; the activity is going away). No hint.
+            try
+            {
+                return mEngine.findBestGuess(
+                        mHintCandidates, mHintCandidateCount, HINT_TIME_BUDGET_MILLIS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(HintEngine.Hint hint)
+        {
+            mHintTask = null;
+
+            // Nothing found or the user has moved on (or this instance is gone, eg; a
+            // rotation):
+            if (hint == null || isCancelled() || isFinishing() || isDestroyed())
+            {
+                return;
+            }
+
+            Log.d(TAG, "HintTask: " + hint.guessIndex + " (" + hint.guessesEvaluated +
+                    " guesses evaluated, complete: " + hint.isComplete + ")");
 
-                    // Make the Secret Number value a -1 so we won't have any more hits on that one:
-                    tempSecretNumber[iter] = -1;
+            showHint(hint.guessIndex);
+        }
+    }
+
+    /**
+     * @return Where the game journal lives (the app's private files folder)
+     */
+    private File getJournalFile()
+    {
+        return new File(getFilesDir(), GameJournal.FILE_NAME);
+    }
+
+    /**
+     * <p>Disables the "OK" button and checks the journal (in the background) for a game that
+     * was cut short.</p>
+     */
+    private void startResumeTask()
+    {
+        findViewById(R.id.button_ok).setEnabled(false);
+
+        mResumeTask = new ResumeTask(getJournalFile());
+        mResumeTask.execute();
+    }
+
+    /**
+     * <p>Deletes the journal once the game is over.</p>
+     */
+    private void discardJournal()
+    {
+        if (mJournal != null)
+        {
+            mJournal.discard();
+            mJournal = null;
+        }
+    }
+
+    /**
+     * <p>Can this journal pick up the game? Only if it's the same kind of game and it isn't
+     * over yet (the process can die between the winning guess and the journal being
+     * deleted).</p>
+     *
+     * @param snapshot
+     * @return
+     */
+    private boolean isResumable(GameJournal.Snapshot snapshot)
+    {
+        if (snapshot == null || snapshot.mode != mGameMode || snapshot.turnCount == 0)
+        {
+            return false;
+        }
 
-                    break;
+        if (mGameMode == MODE_MULTI)
+        {
+            if (snapshot.secrets.length < MIN_SECRET_COUNT ||
+                    snapshot.secrets.length > TurnHistory.MAX_SECRET_COUNT)
+            {
+                return false;
+            }
+
+            // Has every Secret Number been guessed?
+            for (int secret : snapshot.secrets)
+            {
+                boolean isFound = false;
+
+                for (int iter = 0; iter < snapshot.turnCount && ! isFound; iter++)
+                {
+                    isFound = snapshot.guesses[iter] == GuessScorer.toIndex(secret);
+                }
+
+                if ( ! isFound)
+                {
+                    return true;
                 }
             }
+
+            return false;
         }
 
-        // Fill the remaining slots in coloredBalls with black (ie; no hits):
-        for (int iter = coloredBalls.size(); iter < 4; iter++)
+        if (snapshot.secrets.length != (mGameMode == MODE_CLASSIC ? 1 : 0))
         {
-            coloredBalls.add(R.drawable.black);
+            return false;
         }
 
-        // Add all of the data to the ArrayList. A new row is added to the list, at least it's
-        // data.
-        mData.add(0, new InputResponseListRowData(Integer.toString(mTurns),
-                mNumberPickerValues.values().toString(),
-                coloredBalls.get(0),
-                coloredBalls.get(1),
-                coloredBalls.get(2),
-                coloredBalls.get(3)));
+        for (int iter = 0; iter < snapshot.turnCount; iter++)
+        {
+            if (GuessScorer.isWin(snapshot.feedbacks[iter]))
+            {
+                return false;
+            }
+        }
 
-        // The List adapter will take the above "new" data and create a new visual row with it.
-        mInputResponseListAdapter.notifyDataSetChanged();
+        return true;
+    }
 
-        // Do we have all Green balls? If yes then the user has selected the Secret Number and
-        // we need to move on to the Authenticator activity.
-        //
-        // Note: The below conditional could've followed the first loop above (the Green balls
-        // loop). But, I think it's best to show the user the four green balls visually before
-        // navigating away. It's a "woohoo" thing.
-        if (totalGreenBalls == 4)
+    /**
+     * <p>Rebuilds a game from its journal: The Secret Number(s), the start time and every turn
+     * (played again through the same code as the user's turns, so the candidates, transcript
+     * and list all come out the same). Called on a freshly set up game.</p>
+     *
+     * @param snapshot
+     */
+    private void replayJournal(GameJournal.Snapshot snapshot)
+    {
+        Log.i(TAG, "Resuming a game of " + snapshot.turnCount + " turns from the journal.");
+
+        mStartTime = snapshot.startTime;
+
+        if (mGameMode == MODE_CLASSIC)
         {
-            Log.i(TAG, "User has Correctly guessed the Secret Number.");
+            GuessScorer.unpack(snapshot.secrets[0], mSecretNumber);
+            mTranscript = new TranscriptCodec.Writer(GuessScorer.toIndex(snapshot.secrets[0]));
+        }
 
-            gotoEndGame();
+        if (mGameMode == MODE_MULTI)
+        {
+            mSecrets = snapshot.secrets;
+            mFeedbacks = new int[mSecrets.length];
+        }
+
+        for (int iter = 0; iter < snapshot.turnCount; iter++)
+        {
+            if (mGameMode == MODE_MULTI)
+            {
+                playMultiTurn(snapshot.guesses[iter]);
+            }
+            else
+            {
+                recordTurn(snapshot.guesses[iter], snapshot.feedbacks[iter]);
+            }
+        }
+    }
+
+    /**
+     * <p>Reads the journal off the UI thread, then either resumes the game it holds or starts
+     * a new journal for this game. Cancelled in onDestroy so only one activity instance ever
+     * writes the journal.</p>
+     */
+    private class ResumeTask extends AsyncTask<Void, Void, GameJournal.Snapshot>
+    {
+        private final File mJournalFile;
+
+        ResumeTask(File journalFile)
+        {
+            mJournalFile = journalFile;
+        }
+
+        @Override
+        protected GameJournal.Snapshot doInBackground(Void... params)
+        {
+            return GameJournal.read(mJournalFile);
+        }
+
+        @Override
+        protected void onPostExecute(GameJournal.Snapshot snapshot)
+        {
+            mResumeTask = null;
+
+            // The user has moved on:
+            if (isFinishing())
+            {
+                return;
+            }
+
+            findViewById(R.id.button_ok).setEnabled(true);
+
+            if (isResumable(snapshot))
+            {
+                replayJournal(snapshot);
+                mJournal = GameJournal.open(mJournalFile);
+                return;
+            }
+
+            int[] secrets = null;
+
+            if (mGameMode == MODE_CLASSIC)
+            {
+                secrets = new int[] { GuessScorer.pack(mSecretNumber) };
+            }
+
+            if (mGameMode == MODE_MULTI)
+            {
+                secrets = mSecrets;
+            }
+
+            mJournal = GameJournal.start(mJournalFile, mGameMode, mStartTime, secrets);
         }
     }
 
+    /**
+     * <p>Updates the "N codes remain" text with the current size of the candidate set.</p>
+     */
+    private void showCodesRemaining()
+    {
+        mTxtCodesRemaining.setText(getString(R.string.codes_remaining, mCandidates.size()));
+    }
+
     /**
      * <p>The user has won! Yay! Let's store some of the data and move on to the Authenticator
      * activity.</p>
@@ -344,6 +1235,9 @@ public class MainActivity extends Activity implements NumberPicker.OnValueChange
         Log.d(TAG, "gotoEndGame()");
         Log.d(TAG, "gotoEndGame(): Calculating score, storing stuff...");
 
+        // The game is over: Nothing to resume.
+        discardJournal();
+
         // Create the "serializable" UserData object that will be passed to the Authentication
         // activity.
         UserData userData = new UserData();
@@ -358,8 +1252,30 @@ public class MainActivity extends Activity implements NumberPicker.OnValueChange
             userData.setTurns(MAX_NUMBER_OF_TURNS);
         }
 
-        userData.setTimeInSeconds((int) (long) ((System.currentTimeMillis() - mStartTime) / 1000));
-        userData.setScore(Utilities.calculateScore(mTurns, mStartTime));
+        // Measure the duration once so the time and the score agree. (The server checks that
+        // they do.)
+        int timeInSeconds = (int) (long) ((System.currentTimeMillis() - mStartTime) / 1000);
+
+        userData.setTimeInSeconds(timeInSeconds);
+        userData.setScore(ScoreCalculator.calculate(mTurns, timeInSeconds));
+
+        // The same score weighted by how hard this Secret Number is. (Just a table lookup.)
+        DifficultyTable difficultyTable = DifficultyTable.getInstance();
+        int secretIndex = GuessScorer.toIndex(GuessScorer.pack(mSecretNumber));
+
+        userData.setAdjustedScore(ScoreCalculator.calculateAdjusted(mTurns, timeInSeconds,
+                difficultyTable.getExpectedTurns(secretIndex),
+                difficultyTable.getMeanExpectedTurns()));
+
+        // The whole game, so the server can replay it:
+        if (mTranscript != null)
+        {
+            userData.setTranscript(TranscriptCodec.toHex(mTranscript.toByteArray()));
+        }
+
+        // One key per game: However often the score is sent (or the next screens are
+        // recreated) the server stores it once.
+        userData.setScoreKey(ScoreQueue.Entry.newKey());
 
         // Create the intent with the UserData object:
         Intent authenticationIntent = new Intent(this, AuthenticatorActivity.class);
@@ -5,12 +5,17 @@ package com.android.codebreaker.activities;
  * there isn't an internet connection or the query for data comes back null/empty, than the
  * instructions populate via canned data in res/values/strings.</p>
  *
+ * <p>The last instructions and website link that came from the server are kept on disk (see
+ * MiscDataCache) and shown on the first frame. The query then runs in the background and the
+ * screen only changes if what came back is different.</p>
+ *
  * <p>Includes (top to bottom):</p>
  *
  * <ul>
  *     <li> Website link (ie; GreggsCoolApps.com);</li>
  *     <li> The "Code Buster" logo;</li>
  *     <li> "Begin" button;</li>
+ *     <li> "Computer guesses" button (the app cracks the user's code);</li>
  *     <li> "Game Play" instructions.</li>
  * </ul>
  */
@@ -26,22 +31,13 @@ import android.widget.TextView;
 
 import com.android.codebreaker.R;
 import com.android.codebreaker.data.IDataRequestCallback;
+import com.android.codebreaker.data.MiscData;
+import com.android.codebreaker.data.ScoreQueue;
 import com.android.codebreaker.data.SplashDataRequest;
 import com.android.codebreaker.misc.Utilities;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-public class SplashActivity extends Activity implements IDataRequestCallback
+public class SplashActivity extends Activity implements IDataRequestCallback<MiscData>
 {
-    // Used in JSon parsing... (ie; Removing "magic" strings)
-    private final String JSON_MAIN_NODE = "misc";
-    private final String JSON_CHILD_NODE_NAME = "name";
-    private final String JSON_CHILD_NODE_VALUE = "value";
-    private final String DATABASE_FIELD_WEBSITE_LINK_TEXT = "website_link_text";
-    private final String DATABASE_FIELD_INSTRUCTIONS = "instructions";
-
     // Used in Logs
     private final String TAG = this.getClass().getSimpleName();
 
@@ -49,6 +45,13 @@ public class SplashActivity extends Activity implements IDataRequestCallback
     // so I decided to go ahead and just create the pointer to the object once:
     private TextView mTxtGamePlay;
 
+    // The "misc" query while it's running (so it can be cancelled if the user moves on):
+    private SplashDataRequest mSplashDataRequest;
+
+    // The server's instructions and link on screen (from the disk cache or the query). Null =
+    // none yet.
+    private MiscData mShownMiscData;
+
     /**
      * <p>Setup the screen and fill it with components. Once that is accomplished, start the "misc"
      * query for website link and instructions.</p>
@@ -65,6 +68,16 @@ public class SplashActivity extends Activity implements IDataRequestCallback
         mTxtGamePlay = (TextView) findViewById(R.id.txtGamePlay);
         mTxtGamePlay.setMovementMethod(new ScrollingMovementMethod());
 
+        mSplashDataRequest = new SplashDataRequest(this, getApplicationContext());
+
+        // Show the last instructions we got straight away (the network can take its time):
+        mShownMiscData = mSplashDataRequest.loadCache();
+
+        if (mShownMiscData != null)
+        {
+            showMiscData(mShownMiscData);
+        }
+
         // If user is disconnected from the internet then we don't want to bother with
         // querying for data:
         if ( ! Utilities.isUserConnectedToInternet(getApplicationContext()))
@@ -75,6 +88,24 @@ public class SplashActivity extends Activity implements IDataRequestCallback
 
         // Start the "misc" query for website link and instructions.
         queryForMiscData();
+
+        // Send any scores that were saved while we were offline (see ScoreQueue):
+        ScoreQueue.getInstance(this).flush();
+    }
+
+    /**
+     * <p>Nobody is left to show the query result to, so call it off.</p>
+     */
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+
+        if (mSplashDataRequest != null)
+        {
+            mSplashDataRequest.cancel();
+            mSplashDataRequest = null;
+        }
     }
 
     /**
@@ -86,9 +117,7 @@ public class SplashActivity extends Activity implements IDataRequestCallback
         // problem (probably in "SplashDataRequest").
         try
         {
-            SplashDataRequest splashDataRequest =
-                    new SplashDataRequest(this, getApplicationContext());
-            splashDataRequest.execute();
+            mSplashDataRequest.execute();
         }
 
         // We should never get here.
@@ -119,6 +148,55 @@ public class SplashActivity extends Activity implements IDataRequestCallback
         startActivity(intent);
     }
 
+    /**
+     * <p>Same game, roles reversed: The user picks a Secret Number and the app cracks it. See
+     * res->layout->activity_splash for the button's "onClick" property.</p>
+     *
+     * @param view
+     */
+    public void onComputerGuessesButtonClickCallback(View view)
+    {
+        Log.d(TAG, "onComputerGuessesButtonClickCallback()");
+
+        // Create the "MainActivity" intent in "computer guesses" mode and start it.
+        Intent intent = new Intent(this, MainActivity.class);
+        intent.putExtra(getString(R.string.KEY_GAME_MODE), MainActivity.MODE_COMPUTER_GUESSES);
+        startActivity(intent);
+    }
+
+    /**
+     * <p>Hard mode: The app never commits to a Secret Number and dodges every guess it can. See
+     * res->layout->activity_splash for the button's "onClick" property.</p>
+     *
+     * @param view
+     */
+    public void onEvilModeButtonClickCallback(View view)
+    {
+        Log.d(TAG, "onEvilModeButtonClickCallback()");
+
+        // Create the "MainActivity" intent in "evil" mode and start it.
+        Intent intent = new Intent(this, MainActivity.class);
+        intent.putExtra(getString(R.string.KEY_GAME_MODE), MainActivity.MODE_EVIL);
+        startActivity(intent);
+    }
+
+    /**
+     * <p>Four Secret Numbers at once: Every guess is scored against all of them. See
+     * res->layout->activity_splash for the button's "onClick" property.</p>
+     *
+     * @param view
+     */
+    public void onMultiButtonClickCallback(View view)
+    {
+        Log.d(TAG, "onMultiButtonClickCallback()");
+
+        // Create the "MainActivity" intent in multi-secret mode and start it.
+        Intent intent = new Intent(this, MainActivity.class);
+        intent.putExtra(getString(R.string.KEY_GAME_MODE), MainActivity.MODE_MULTI);
+        intent.putExtra(getString(R.string.KEY_SECRET_COUNT), MainActivity.DEFAULT_SECRET_COUNT);
+        startActivity(intent);
+    }
+
     /**
      * ###################################################################################
      * <p>Callbacks from SplashDataRequest's base class "DataRequestHelper". These callbacks
@@ -130,72 +208,58 @@ public class SplashActivity extends Activity implements IDataRequestCallback
      * <p>We received a result back from the server, Yay! Several steps need to be accomplished:</p>
      *
      * <ul>
-     *     <li>First a sanity check for a non-empty result;</li>
-     *     <li>Attempt to parse the result in JSon format;</li>
-     *     <li>Populate the "website link" and "instructions" text fields if above tests pass.</li>
+     *     <li>If it's what's already on screen (eg; from the disk cache) there's nothing to do;
+     *     </li>
+     *     <li>Otherwise populate the "website link" and "instructions" text fields. (The result
+     *         was already decoded and styled in the background, see MiscData.)</li>
      * </ul>
      *
      * @param result
      */
-    public void onQueryTaskCompleted(String result)
+    public void onQueryTaskCompleted(MiscData result)
     {
-        Log.d(TAG, "onQueryTaskCompleted().result: " + result);
-
-        String instructions = "";
-
-        // Parse the JSon "result" using the parent node "misc":
-        try
+        if (result.equals(mShownMiscData))
         {
-            JSONObject jsonResponse = new JSONObject(result);
-            JSONArray jsonMainNode = jsonResponse.optJSONArray(JSON_MAIN_NODE);
-
-            // Walk each child node:
-            for(int i = 0; i < jsonMainNode.length(); i++)
-            {
-                JSONObject jsonChildNode = jsonMainNode.getJSONObject(i);
-
-                String outputName = jsonChildNode.optString(JSON_CHILD_NODE_NAME);
-                String outputValue = jsonChildNode.optString(JSON_CHILD_NODE_VALUE);
-
-                Log.d(TAG, "onQueryTaskCompleted(): outputName: " + outputName);
-                Log.d(TAG, "onQueryTaskCompleted(): outputValue: " + outputValue);
-
-                // Only two possible name/value pairs (Website link or Instructions):
-                switch (outputName)
-                {
-                    case DATABASE_FIELD_WEBSITE_LINK_TEXT:
-
-                        TextView txtLink = (TextView) findViewById(R.id.txtLink);
-                        txtLink.setText(Html.fromHtml(outputValue));
-
-                        break;
+            Log.d(TAG, "onQueryTaskCompleted(): Unchanged");
+            return;
+        }
 
-                    case DATABASE_FIELD_INSTRUCTIONS:
+        mShownMiscData = result;
+        showMiscData(result);
+    }
 
-                        instructions = outputValue;
+    /**
+     * <p>Fills in the "website link" and "instructions" text fields.</p>
+     *
+     * @param miscData
+     */
+    private void showMiscData(MiscData miscData)
+    {
+        String websiteLinkText = miscData.get(MiscData.WEBSITE_LINK_TEXT);
+        String instructions = miscData.get(MiscData.INSTRUCTIONS);
 
-                        break;
-                }
-            }
-        }
+        Log.d(TAG, "showMiscData(): websiteLinkText: " + websiteLinkText);
+        Log.d(TAG, "showMiscData(): instructions: " + instructions);
 
-        // This should never happen but if it does we'll log it.
-        catch(JSONException e)
+        if ( ! websiteLinkText.isEmpty())
         {
-            Log.d(TAG, "onQueryTaskCompleted(): Error (JSONException): " + e.toString());
+            TextView txtLink = (TextView) findViewById(R.id.txtLink);
+            txtLink.setText(miscData.getStyled(MiscData.WEBSITE_LINK_TEXT));
         }
 
         // Appears we had a connection problem so use baked-in instructions instead.
         if (instructions.isEmpty())
         {
-            Log.d(TAG, "onQueryTaskCompleted(): instructions.isEmpty()");
+            Log.d(TAG, "showMiscData(): instructions.isEmpty()");
 
             // Canned instructions:
-            instructions = getString(R.string.splash_activity_game_play_body);
+            mTxtGamePlay.setText(
+                    Html.fromHtml(getString(R.string.splash_activity_game_play_body)));
+            return;
         }
 
         // Finally, fill in the instructions text:
-        mTxtGamePlay.setText(Html.fromHtml(instructions));
+        mTxtGamePlay.setText(miscData.getStyled(MiscData.INSTRUCTIONS));
     }
 
     /**
@@ -204,7 +268,7 @@ public class SplashActivity extends Activity implements IDataRequestCallback
      * instructions using 'canned' data.</p>
      *
      * <p>Note: In case of an error and no data from the server, we WON'T display the website
-     * link textfield.</p>
+     * link textfield. If the disk cache is already on screen it stays there.</p>
      *
      * @param errorString
      */
@@ -212,6 +276,12 @@ public class SplashActivity extends Activity implements IDataRequestCallback
     {
         Log.d(TAG, "onQueryTaskError(): Error:" + errorString);
 
+        // What we got last time beats the canned instructions:
+        if (mShownMiscData != null)
+        {
+            return;
+        }
+
         // Use baked-in instructions and skip the web-site link.
         runOnUiThread(new Runnable()
         {
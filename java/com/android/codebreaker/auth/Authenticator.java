@@ -11,7 +11,7 @@ package com.android.codebreaker.auth;
  *     <li>adding an account;</li>
  *     <li>removing an account;</li>
  *     <li>finding an account;</li>
- *     <li>and a few getters from an account.</li>
+ *     <li>and a few getters (and a setter) from an account.</li>
  * </ul>
  *
  * <p>Note: I chose not to extend the framework's AbstractAccountAuthenticator because of the
@@ -150,6 +150,21 @@ public class Authenticator
         return null;
     }
 
+    /**
+     * <p>Set Authentication Token (eg; database accounts.user_id). An account added before the
+     * user was verified (eg; without a connection) has 0 until the server has answered.</p>
+     *
+     * @param account
+     * @param userDBTableId
+     */
+    public void setAuthToken(Account account, int userDBTableId)
+    {
+        mAccountManager.setAuthToken(
+                account,
+                mContext.getString(R.string.auth_type),
+                String.valueOf(userDBTableId));
+    }
+
     /**
      * <p>Get password:</p>
      *
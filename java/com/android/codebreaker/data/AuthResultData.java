@@ -0,0 +1,75 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>The answer to the account queries: {"result": n}. (See VerifyAndSubmitData for the rest of
+ * "verify and submit".)</p>
+ *
+ * <p>For "verify credentials" a positive result is the user's id; -1 to -3 are errors (see
+ * AuthenticatorActivity). 0 means the server didn't send a result.</p>
+ */
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+
+public class AuthResultData
+{
+    private final int mResult;
+
+    /**
+     * @param result eg; A score's result from a batch (see ScoreResultsData)
+     */
+    AuthResultData(int result)
+    {
+        mResult = result;
+    }
+
+    public int getResult() { return mResult; }
+
+    /**
+     * <p>Reads {"result": n}. Anything else in the response is skipped, and a response that
+     * isn't an object at all counts as no result.</p>
+     *
+     * @param reader
+     * @return
+     * @throws IOException
+     */
+    static AuthResultData read(JsonReader reader) throws IOException
+    {
+        int result = 0;
+
+        if (reader.peek() != JsonToken.BEGIN_OBJECT)
+        {
+            reader.skipValue();
+            return new AuthResultData(result);
+        }
+
+        reader.beginObject();
+
+        while (reader.hasNext())
+        {
+            // A number, or a number in a string (like JSONObject.optInt):
+            if (reader.nextName().equals("result") &&
+                    (reader.peek() == JsonToken.NUMBER || reader.peek() == JsonToken.STRING))
+            {
+                try
+                {
+                    result = (int) Double.parseDouble(reader.nextString().trim());
+                }
+                catch (NumberFormatException e)
+                {
+                    result = 0;
+                }
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        return new AuthResultData(result);
+    }
+}
@@ -8,47 +8,108 @@ package com.android.codebreaker.data;
  * implement the IDataRequestCallback interface. Simply call setListener with the subclass "this"
  * as a param and all resultant communication will be easily accessible. </p>
  *
+ * <p>"T" is the query's result type. The response is never turned into a String: "decode" pulls
+ * it, token by token, straight off the connection (see JsonReader) into a "T". Memory use doesn't
+ * grow with the size of the response, apart from the result itself.</p>
+ *
+ * <p>A request is only a description (URL, Query String, priority, timeout and listener). The
+ * RequestDispatcher runs it on one of its workers and hands the result to the listener on the
+ * main thread.</p>
+ *
  * <p>To work through this base class the following steps should be taken: </p>
  *
  * <ul>
  *     <li>Extend this class;</li>
+ *     <li>Implement "decode" (the response, as JSON, to a "T");</li>
  *     <li>Implement "IDataRequestCallback" (two callback methods);</li>
  *     <li>Call "setListener" with the subclass' "this" property;</li>
- *     <li>Call "setParams" with the URL and Query String BEFORE calling the AsyncTasks
- *         "execute" method;</li>
- *     <li>Call the AsyncTasks "execute" method;</li>
+ *     <li>Optionally call "setPriority", "setTimeoutMillis", "setContentType",
+ *         "setCompressRequestBody" and "setCacheable";</li>
+ *     <li>Call "setParams" with the URL and Query String (or body) BEFORE calling "submit";</li>
+ *     <li>Call "submit";</li>
  *     <li>Handle the "IDataRequestCallback" methods with the results of the query.</li>
  * </ul>
+ *
+ * <p>"cancel" (eg; when the activity goes away) makes sure the listener is never called.</p>
+ *
+ * <p>Requests go through HttpTransport, which lets the platform keep connections to the server
+ * open between requests.</p>
  */
 
-import android.content.res.Resources;
-import android.os.AsyncTask;
+import android.util.JsonReader;
 import android.util.Log;
 
-import com.android.codebreaker.R;
-
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.HttpURLConnection;
+import java.io.PushbackInputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class DataRequestHelper extends AsyncTask<String, Integer, String>
+public abstract class DataRequestHelper<T>
 {
     // Used in Logs
     private final String TAG = this.getClass().getSimpleName();
 
+    // Priorities: When the dispatcher's workers are all busy the lowest value goes first.
+    public static final int PRIORITY_HIGH = 0;      // The user is waiting on it (eg; a score)
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;       // Nice to have (eg; the splash screen text)
+
+    // How long a request may take, queueing included, unless "setTimeoutMillis" says otherwise:
+    public static final int DEFAULT_TIMEOUT_MILLIS = 15000;
+
+    // What the body is unless "setContentType" says otherwise (the PHP scripts read $_POST):
+    public static final String CONTENT_TYPE_FORM = "application/x-www-form-urlencoded";
+
+    // The error for an empty response. (R.string.result_empty is an app resource and there's no
+    // Context here: Resources.getSystem only has the platform's own.)
+    private static final String RESULT_EMPTY = "ERROR: \"result\" was either null or empty!!";
+
     // The array that holds the URL and Query String.
     private String[] mParams;
 
     // The listener with the two callback methods that will handle the query result.
-    private IDataRequestCallback mListener;
+    private IDataRequestCallback<T> mListener;
+
+    private int mPriority = PRIORITY_NORMAL;
+    private int mTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private String mContentType = CONTENT_TYPE_FORM;
+
+    // Gzip the Query String (see HttpTransport.Call.setCompressBody)? Off: The PHP scripts read
+    // it as a plain form post.
+    private boolean mCompressRequestBody;
+
+    // Keep the result and ask the server whether it changed next time (see ValidatorCache)?
+    private boolean mIsCacheable;
+
+    // Set once the listener has been called, or the request was cancelled or timed out.
+    // Whichever happens first wins.
+    private final AtomicBoolean mIsFinished = new AtomicBoolean();
+
+    // The HTTP call while the request is running (so "cancel" can cut it):
+    private volatile HttpTransport.Call mCall;
+
+    // Gives up on the request (see RequestDispatcher.submit):
+    private final Runnable mTimeoutRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (mIsFinished.compareAndSet(false, true))
+            {
+                Log.e(TAG, "Timed out after " + mTimeoutMillis + " ms.");
+
+                disconnect();
+                mListener.onQueryTaskError("Timed out after " + mTimeoutMillis + " ms");
+            }
+        }
+    };
 
     /**
      * The "listener" here should be the subclass.
      *
      * @param listener
      */
-    protected void setListener(IDataRequestCallback listener)
+    protected void setListener(IDataRequestCallback<T> listener)
     {
         Log.d(TAG, "setListener()");
 
@@ -69,96 +130,255 @@ public class DataRequestHelper extends AsyncTask<String, Integer, String>
     }
 
     /**
-     * Overrides the "AsyncTask" base class method of the same name to set up the:
+     * @param priority One of the PRIORITY_ constants
+     */
+    public void setPriority(int priority) { mPriority = priority; }
+    public int getPriority() { return mPriority; }
+
+    /**
+     * @param timeoutMillis How long the request may take, from "submit" to the result
+     */
+    public void setTimeoutMillis(int timeoutMillis) { mTimeoutMillis = timeoutMillis; }
+    public int getTimeoutMillis() { return mTimeoutMillis; }
+
+    /**
+     * @param contentType What the second "setParams" param is (eg; "application/json")
+     */
+    public void setContentType(String contentType) { mContentType = contentType; }
+
+    /**
+     * @param compress Gzip the Query String if it's big enough. Only if the server accepts
+     *                 "Content-Encoding: gzip" requests.
+     */
+    public void setCompressRequestBody(boolean compress) { mCompressRequestBody = compress; }
+
+    /**
+     * @param cacheable Keep the decoded result. The same query (URL and Query String) asks for
+     *                  it only if it changed and a "304 Not Modified" reuses it. See
+     *                  ValidatorCache.
+     */
+    public void setCacheable(boolean cacheable) { mIsCacheable = cacheable; }
+
+    Runnable getTimeoutRunnable() { return mTimeoutRunnable; }
+
+    /**
+     * <p>Hands the request to the dispatcher. Call it on the main thread, once.</p>
+     */
+    protected void submit()
+    {
+        RequestDispatcher.getInstance().submit(this);
+    }
+
+    /**
+     * <p>Calls the whole thing off: The listener won't be called. A request still in the queue
+     * is skipped; a running one has its connection cut. Main thread only.</p>
+     */
+    public void cancel()
+    {
+        if (mIsFinished.compareAndSet(false, true))
+        {
+            Log.i(TAG, "cancel()");
+
+            RequestDispatcher.getInstance().cancelTimeout(this);
+            disconnect();
+        }
+    }
+
+    /**
+     * <p>Runs the request on a dispatcher worker and posts the result to the main thread.</p>
+     */
+    void run()
+    {
+        // Cancelled (or timed out) while it was waiting?
+        if (mIsFinished.get())
+        {
+            return;
+        }
+
+        final String[] error = new String[1];
+        final T result = performRequest(error);
+
+        RequestDispatcher.getInstance().postToMainThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                deliver(result, error[0]);
+            }
+        });
+    }
+
+    /**
+     * <p>Cuts the connection (if the request is running). Any thread.</p>
+     */
+    private void disconnect()
+    {
+        HttpTransport.Call call = mCall;
+
+        if (call != null)
+        {
+            call.cancel();
+        }
+    }
+
+    /**
+     * <p>Turns the response into the query's result. Runs on a dispatcher worker. Read the whole
+     * value (eg; from "beginObject" to "endObject"), skipping anything that isn't needed.</p>
+     *
+     * @param reader Positioned at the start of the response
+     * @return The result. Null is treated as an empty response.
+     * @throws IOException If the response isn't what was expected
+     */
+    protected abstract T decode(JsonReader reader) throws IOException;
+
+    /**
+     * <p>The server says "not modified": Here's the result stored last time (see "setCacheable").
+     * Override this if part of the result depends on more than the URL and Query String. Runs on
+     * a dispatcher worker.</p>
+     *
+     * @param cached Shared with the cache: Don't change it.
+     * @return The result
+     */
+    protected T fromCache(T cached)
+    {
+        return cached;
+    }
+
+    /**
+     * <p>A fresh result came down (not a "304 Not Modified"). Override this to keep it somewhere
+     * (eg; on disk). Runs on a dispatcher worker, before the listener hears about it.</p>
+     *
+     * @param result
+     * @param eTag         The response's "ETag" header. May be null.
+     * @param lastModified The response's "Last-Modified" header. May be null.
+     */
+    protected void onDownloaded(T result, String eTag, String lastModified)
+    {
+    }
+
+    /**
+     * Sets up the:
      *
      * <ul>
-     *     <li>Server connection object and its' properties;</li>
-     *     <li>URL to include base URL and Query String;</li>
-     *     <li>Reader that takes in the query result;</li>
+     *     <li>HTTP call (see HttpTransport) to the URL with the Query String as its body;</li>
+     *     <li>Reader that decodes the response as it comes in (see "decode");</li>
+     *     <li>Conditional request and stored result if the query is cacheable.</li>
      * </ul>
      *
-     * Note: This method handles all the gory details of establishing and destroying the connection
-     *       object and its' properties.
+     * Note: The connection isn't disconnected afterwards. Closing the response (see HttpTransport)
+     *       leaves it to the platform to keep for the next request to the same server. This runs
+     *       on a dispatcher worker.
      *
-     * @param params
-     * @return
+     * @param error Receives the error message if there's a problem
+     * @return The decoded response or null if there was a problem
      */
-    @Override
-    protected String doInBackground(String... params)
+    @SuppressWarnings("unchecked")
+    private T performRequest(String[] error)
     {
-        Log.d(TAG, "doInBackground()");
-
-        // Instantiate the connection object to the server:
-        HttpURLConnection connection = null;
+        Log.d(TAG, "performRequest()");
 
-        // Instantiate and populate the Query String (2nd param):
-        String postData = mParams[1];
+        HttpTransport transport = HttpTransport.getInstance();
+        ValidatorCache cache = ValidatorCache.getInstance();
+        String cacheKey = ValidatorCache.getKey(mParams[0], mParams[1]);
+        ValidatorCache.Entry cached = mIsCacheable ? cache.get(cacheKey) : null;
 
-        // Try to query the server. If successful read the server response one line at a time.
+        // Try to query the server. If successful decode the response as it comes in.
         try
         {
-            // Instantiate and populate the URL (1st param):
-            URL url = new URL(mParams[0]);
-
-            Log.d(TAG, "URL: " + url);
-
-            // Connection properties
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setRequestProperty("Content-Length", "" +
-                    Integer.toString(postData.getBytes().length));
-            connection.setRequestProperty("Content-Language", "en-US");
-            connection.setUseCaches(false);
-            connection.setDoInput(true);
-            connection.setDoOutput(true);
-            connection.connect();
-            connection.getOutputStream().write(postData.getBytes("UTF-8"));
-            connection.getInputStream();
-
-            // Read the response:
-            BufferedReader reader =
-                    new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            StringBuilder stringBuilder = new StringBuilder();
-            String line = null;
-
-            // Append the new line "\n" character to the end of each line.
+            Log.d(TAG, "URL: " + mParams[0]);
+
+            HttpTransport.Call call = transport.newCall(mParams[0], mContentType,
+                    mParams[1].getBytes("UTF-8"), mTimeoutMillis);
+            call.setCompressBody(mCompressRequestBody);
+            mCall = call;
+
+            // Only send it if it changed:
+            if (cached != null && cached.eTag != null)
+            {
+                call.setHeader("If-None-Match", cached.eTag);
+            }
+
+            if (cached != null && cached.lastModified != null)
+            {
+                call.setHeader("If-Modified-Since", cached.lastModified);
+            }
+
+            // Cancelled between the check in "run" and now? "execute" won't send anything.
+            if (mIsFinished.get())
+            {
+                call.cancel();
+            }
+
+            HttpTransport.Response response = call.execute();
+
             try
             {
-                // Read Server Response
-                while ((line = reader.readLine()) != null)
+                // It didn't: Use what we have without reading or parsing anything.
+                if (response.statusCode == 304 && cached != null)
+                {
+                    cache.countHit();
+                    return fromCache((T) cached.result);
+                }
+
+                if (response.statusCode / 100 != 2)
+                {
+                    throw new IOException("HTTP " + response.statusCode);
+                }
+
+                // An empty response is handled by "deliver". (JsonReader would only report a
+                // premature end of input.)
+                PushbackInputStream body = new PushbackInputStream(response.body);
+                int firstByte = body.read();
+
+                if (firstByte == -1)
+                {
+                    return null;
+                }
+
+                body.unread(firstByte);
+
+                T result = decode(new JsonReader(new InputStreamReader(body, "UTF-8")));
+
+                if (mIsCacheable)
+                {
+                    cache.countMiss();
+                    cache.put(cacheKey, response.getHeader("etag"),
+                            response.getHeader("last-modified"), result);
+                }
+
+                if (result != null)
                 {
-                    stringBuilder.append(line + "\n");
+                    onDownloaded(result, response.getHeader("etag"),
+                            response.getHeader("last-modified"));
                 }
+
+                return result;
             }
 
-            // We're done with the reader so close it and set it up for GC.
+            // Hands the connection back for the next request:
             finally
             {
-                reader.close();
+                response.close();
             }
-
-            // Return the resulting response as a string.
-            return stringBuilder.toString();
         }
 
-        // We had a problem somewhere. Log the error and call the listener's "onQueryTaskError"
-        // callback method with the error. There could be a multitude of possible errors. The most
-        // likely error is a timeout due to the device being disconnected from the internet.
+        // We had a problem somewhere. Log the error and pass it on to the listener's
+        // "onQueryTaskError" callback method. There could be a multitude of possible errors. The
+        // most likely error is a timeout due to the device being disconnected from the internet
+        // (or, now that the response is decoded as it's read, a malformed response).
         catch (Exception e)
         {
             Log.e(TAG, "ERROR: " + e.getMessage());
-            mListener.onQueryTaskError(e.getMessage());
+            error[0] = e.getMessage() != null ? e.getMessage() : e.toString();
         }
-
-        // Disconnect the server connection object:
         finally
         {
-            if (connection != null)
-            {
-                Log.i(TAG, "Disconnecting the server connection.");
-                connection.disconnect();
-            }
+            mCall = null;
+
+            Log.i(TAG, "Responses read to the end: " + transport.getDrainedCount() + " of " +
+                    transport.getRequestCount() + " requests, " + transport.getBytesSaved() +
+                    " bytes saved by gzip. Cache: " +
+                    cache.getHitCount() + " hits, " + cache.getMissCount() + " misses.");
         }
 
         // We had a problem so just return null.
@@ -166,27 +386,41 @@ public class DataRequestHelper extends AsyncTask<String, Integer, String>
     }
 
     /**
-     * We received the result back so handle it.
+     * We received the result back so handle it. (On the main thread.)
      *
      * @param result
+     * @param error  The error message if the request failed
      */
-    @Override
-    protected void onPostExecute(String result)
+    private void deliver(T result, String error)
     {
-        Log.d(TAG, "Overriding the onPostExecute() method.");
+        Log.d(TAG, "deliver()");
+
+        // Cancelled or timed out in the meantime? Then the listener doesn't want to know.
+        if ( ! mIsFinished.compareAndSet(false, true))
+        {
+            return;
+        }
+
+        RequestDispatcher.getInstance().cancelTimeout(this);
+
+        if (error != null)
+        {
+            mListener.onQueryTaskError(error);
+            return;
+        }
 
         // Empty result is an automatic error. Log it and call the subclass' "onQueryTaskError"
         // method with the error message.
-        if (result == null || result.isEmpty())
+        if (result == null)
         {
-            Log.e(TAG, Resources.getSystem().getString(R.string.result_empty));
-            mListener.onQueryTaskError(Resources.getSystem().getString(R.string.result_empty));
+            Log.e(TAG, RESULT_EMPTY);
+            mListener.onQueryTaskError(RESULT_EMPTY);
             return;
         }
 
         // Yay! We were successful with our query. Call the subclass' "onQueryTaskCompleted"
         // method with the results.
-        Log.i(TAG, "onPostExecute(): Query result came back.");
+        Log.i(TAG, "deliver(): Query result came back.");
 
         mListener.onQueryTaskCompleted(result);
     }
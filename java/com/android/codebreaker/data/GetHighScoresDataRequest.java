@@ -8,11 +8,14 @@ package com.android.codebreaker.data;
  */
 
 import android.content.Context;
+import android.util.JsonReader;
 import android.util.Log;
 
 import com.android.codebreaker.R;
 
-public class GetHighScoresDataRequest extends DataRequestHelper
+import java.io.IOException;
+
+public class GetHighScoresDataRequest extends DataRequestHelper<HighScoresData>
 {
     // Used in Logs
     private final String TAG = this.getClass().getSimpleName();
@@ -20,6 +23,10 @@ public class GetHighScoresDataRequest extends DataRequestHelper
     // The context of the calling activity
     Context mContext;
 
+    // Whose score to look for in the list (see HighScoresData). Null = nobody's.
+    private String mUsername;
+    private int mScore;
+
     /**
      * The data request constructor. Takes the listener class object (ie; AuthenticatorActivity)
      * and the context of the same class.
@@ -27,7 +34,7 @@ public class GetHighScoresDataRequest extends DataRequestHelper
      * @param listener - Needed to communicate with the calling class with the query results.
      * @param context - Needed to access resources (strings) to build the HTTP request url.
      */
-    public GetHighScoresDataRequest(IDataRequestCallback listener, Context context)
+    public GetHighScoresDataRequest(IDataRequestCallback<HighScoresData> listener, Context context)
     {
         Log.d(TAG, "Constructor");
 
@@ -36,18 +43,32 @@ public class GetHighScoresDataRequest extends DataRequestHelper
 
         // Set's the calling class as the listener to the base class.
         super.setListener(listener);
+
+        // The user is looking at an empty list until this comes back.
+        super.setPriority(PRIORITY_NORMAL);
+
+        // Only download the list if it changed since last time:
+        super.setCacheable(true);
     }
 
     /**
      * Builds and then executes the query. The final HTTP request is in the form of URL and query
      * string. The base class puts them together.
+     *
+     * @param userData - The user whose score is picked out in the list. Null = nobody.
      */
-    public void execute()
+    public void execute(UserData userData)
     {
         Log.d(TAG, "execute()");
 
         try
         {
+            if (userData != null)
+            {
+                mUsername = userData.getUsername();
+                mScore = userData.getScore();
+            }
+
             // All links are stored in resources (strings).
             String link =
                     mContext.getResources().getString(R.string.url_header) +
@@ -59,8 +80,8 @@ public class GetHighScoresDataRequest extends DataRequestHelper
             // case there isn't a query string needed (ie; no database params for filtering).
             super.setParams(link, "");
 
-            // Finally, call the AsyncTask "execute" method and wait for the response.
-            super.execute("");
+            // Finally, hand the request to the dispatcher and wait for the response.
+            super.submit();
         }
 
         // We had a problem with the query. Log it.
@@ -69,4 +90,30 @@ public class GetHighScoresDataRequest extends DataRequestHelper
             Log.e(TAG + ": Exception", e.getMessage());
         }
     }
+
+    /**
+     * <p>See HighScoresData.read. (The rows are built here, on the worker.)</p>
+     *
+     * @param reader
+     * @return
+     * @throws IOException
+     */
+    @Override
+    protected HighScoresData decode(JsonReader reader) throws IOException
+    {
+        return HighScoresData.read(reader, mUsername, mScore);
+    }
+
+    /**
+     * <p>The cached list picked out someone's score when it was decoded: Pick out this user's.
+     * </p>
+     *
+     * @param cached
+     * @return
+     */
+    @Override
+    protected HighScoresData fromCache(HighScoresData cached)
+    {
+        return cached.forUser(mUsername, mScore);
+    }
 }
\ No newline at end of file
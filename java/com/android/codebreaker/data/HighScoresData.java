@@ -0,0 +1,207 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>The "High Scores" query result (codebuster_getscores.php), ready to show: One list row per
+ * score, best first, numbered and with the score already formatted, plus where the user's own
+ * score is.</p>
+ *
+ * <p>Decoded straight off the connection by GetHighScoresDataRequest, on a background thread.
+ * All that's left for the UI thread is handing the rows to the adapter.</p>
+ *
+ * <p>The rows may be shared (see ValidatorCache): Don't change them.</p>
+ */
+
+import android.util.JsonReader;
+
+import com.android.codebreaker.lists.GetScoresListRowData;
+
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+
+public class HighScoresData
+{
+    // The list's rows, top of the list first:
+    private final ArrayList<GetScoresListRowData> mRows;
+
+    // The row with the user's score or -1 if it isn't in the list:
+    private final int mUserIndex;
+
+    private HighScoresData(ArrayList<GetScoresListRowData> rows, int userIndex)
+    {
+        mRows = rows;
+        mUserIndex = userIndex;
+    }
+
+    public ArrayList<GetScoresListRowData> getRows() { return mRows; }
+    public int getUserIndex() { return mUserIndex; }
+
+    /**
+     * <p>Reads {"scores": [{"username": "...", "score": "123"}, ...]}. Anything else in the
+     * response is skipped.</p>
+     *
+     * <p>The server sends the lowest score first. The list shows the highest first and numbers
+     * the rows from 1.</p>
+     *
+     * @param reader
+     * @param username The user's name, to find their row. Null = don't look.
+     * @param score    The user's score
+     * @return
+     * @throws IOException If the response isn't in that form
+     */
+    static HighScoresData read(JsonReader reader, String username, int score) throws IOException
+    {
+        ArrayList<GetScoresListRowData> rows = new ArrayList<GetScoresListRowData>();
+
+        reader.beginObject();
+
+        while (reader.hasNext())
+        {
+            if ( ! reader.nextName().equals("scores"))
+            {
+                reader.skipValue();
+                continue;
+            }
+
+            rows = readScores(reader);
+        }
+
+        reader.endObject();
+
+        return fromScores(rows, 1, username, score);
+    }
+
+    /**
+     * <p>Reads the "scores" array itself: [{"username": "...", "score": "123"}, ...].</p>
+     *
+     * @param reader Positioned at the array
+     * @return The rows in the server's order (lowest first), not numbered yet
+     * @throws IOException If the array isn't in that form
+     */
+    static ArrayList<GetScoresListRowData> readScores(JsonReader reader) throws IOException
+    {
+        NumberFormat numberFormat = NumberFormat.getNumberInstance(Locale.US);
+        ArrayList<GetScoresListRowData> rows = new ArrayList<GetScoresListRowData>();
+
+        reader.beginArray();
+
+        while (reader.hasNext())
+        {
+            String rowUsername = "";
+            int rowScore = 0;
+
+            reader.beginObject();
+
+            while (reader.hasNext())
+            {
+                switch (reader.nextName())
+                {
+                    case "username":
+
+                        rowUsername = reader.nextString();
+                        break;
+
+                    case "score":
+
+                        rowScore = parseInt(reader.nextString());
+                        break;
+
+                    default:
+
+                        reader.skipValue();
+                        break;
+                }
+            }
+
+            reader.endObject();
+
+            // Numbered once the length is known (see "fromScores"):
+            rows.add(new GetScoresListRowData(0, rowUsername, numberFormat.format(rowScore)));
+        }
+
+        reader.endArray();
+
+        return rows;
+    }
+
+    /**
+     * <p>Turns "readScores" rows into the list: Highest first and numbered.</p>
+     *
+     * @param rows     Lowest first. Reordered and numbered here.
+     * @param topRank  The number of the highest row. (1 for the whole leaderboard; more for a
+     *                 part of it, eg; the scores around the user's.)
+     * @param username The user's name, to find their row. Null = don't look.
+     * @param score    The user's score
+     * @return
+     */
+    static HighScoresData fromScores(ArrayList<GetScoresListRowData> rows, int topRank,
+                                     String username, int score)
+    {
+        // Highest first, numbered from "topRank":
+        Collections.reverse(rows);
+
+        for (int iter = 0; iter < rows.size(); iter++)
+        {
+            rows.get(iter).mIndex = topRank + iter;
+        }
+
+        return new HighScoresData(rows, findUser(rows, username,
+                NumberFormat.getNumberInstance(Locale.US).format(score)));
+    }
+
+    /**
+     * <p>The same rows with someone else's score picked out. (eg; For a list that came from the
+     * cache.)</p>
+     *
+     * @param username Null = nobody
+     * @param score
+     * @return
+     */
+    HighScoresData forUser(String username, int score)
+    {
+        return new HighScoresData(mRows, findUser(mRows, username,
+                NumberFormat.getNumberInstance(Locale.US).format(score)));
+    }
+
+    /**
+     * @param rows
+     * @param username
+     * @param formattedScore
+     * @return The first (highest) row with the user's name and score or -1 if there's none
+     */
+    private static int findUser(ArrayList<GetScoresListRowData> rows, String username,
+                                String formattedScore)
+    {
+        for (int iter = 0; iter < rows.size(); iter++)
+        {
+            GetScoresListRowData row = rows.get(iter);
+
+            // Find the user in the list
+            if (row.mUsername.equals(username) && row.mScore.equals(formattedScore))
+            {
+                return iter;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param value
+     * @return
+     * @throws IOException If it isn't a number
+     */
+    private static int parseInt(String value) throws IOException
+    {
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Not a score: " + value);
+        }
+    }
+}
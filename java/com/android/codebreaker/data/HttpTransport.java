@@ -0,0 +1,548 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>Sends requests to the backend with the platform's HttpURLConnection, in a way that lets its
+ * connection pool keep the connection open for the next request. DataRequestHelper used to
+ * "disconnect" every connection when it was done, which throws the socket away. The end of a
+ * game (verify credentials, save the score, get the high scores) hits the same host three times
+ * in a row and paid for three TCP handshakes.</p>
+ *
+ * <p>HttpURLConnection puts a connection back in its pool once the response body has been read
+ * to the end and closed, as long as nobody called "disconnect" and the server allows it. So:</p>
+ *
+ * <ul>
+ *     <li>"Response.close" reads whatever the caller left of the body (up to MAX_DRAIN_BYTES)
+ *         and closes it. Error responses are read the same way (see
+ *         HttpURLConnection.getErrorStream);</li>
+ *     <li>"disconnect" is only called to give up on a connection: On "cancel", when the body
+ *         can't be read to the end, or when there's more left than is worth reading.</li>
+ * </ul>
+ *
+ * <p>Nothing is ever sent twice. When a request fails there's no telling whether the server got
+ * it (eg; a read timeout can come after the server has stored a score) so the error goes to the
+ * caller. The body is streamed ("setFixedLengthStreamingMode") so the platform can't quietly
+ * resend a POST either. Scores carry an idempotency key and are resent by ScoreQueue.</p>
+ *
+ * <p>Proxies, redirects and the platform's network security rules all apply, as they would to
+ * any other HttpURLConnection.</p>
+ *
+ * <p>gzip: Every request asks for a gzipped response ("Accept-Encoding: gzip") and one that
+ * comes back gzipped is inflated as it's read, so "Response.body" is always the plain body. A
+ * request body can be gzipped too (see Call.setCompressBody) once it's at least GZIP_MIN_BYTES;
+ * only do that when the server is known to take "Content-Encoding: gzip" requests. Leaderboards
+ * and the splash HTML are repetitive text and shrink several times over, which is what counts
+ * on a slow mobile link. "getBytesSaved" adds up the difference.</p>
+ *
+ * <p>Note: Thread safe. A Call (and its Response) belongs to one thread, except for
+ * "cancel".</p>
+ */
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class HttpTransport
+{
+    // Used in Logs
+    private final String TAG = this.getClass().getSimpleName();
+
+    // Unread response bytes "Response.close" skips to keep a connection. (More than this and
+    // it's cheaper to open a new one.)
+    public static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    // Request bodies smaller than this aren't worth gzipping (the gzip header and trailer alone
+    // are 18 bytes and everything fits in a packet or two anyway):
+    public static final int GZIP_MIN_BYTES = 1024;
+
+    // The one and only instance. Created on first use.
+    private static volatile HttpTransport sInstance;
+
+    // Requests sent and responses read to the end (ie; their connection could be kept):
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mDrainedCount = new AtomicInteger();
+
+    // Bytes gzip kept off the network (request and response bodies):
+    private final AtomicLong mBytesSaved = new AtomicLong();
+
+    private HttpTransport()
+    {
+    }
+
+    /**
+     * @return The transport
+     */
+    public static HttpTransport getInstance()
+    {
+        HttpTransport instance = sInstance;
+
+        if (instance == null)
+        {
+            synchronized (HttpTransport.class)
+            {
+                instance = sInstance;
+
+                if (instance == null)
+                {
+                    instance = new HttpTransport();
+                    sInstance = instance;
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * <p>Sets up a POST. Nothing is sent until "execute".</p>
+     *
+     * @param link          The full URL (http or https)
+     * @param contentType   Of the body
+     * @param body          The request body
+     * @param timeoutMillis For connecting and for every read
+     * @return
+     */
+    public Call newCall(String link, String contentType, byte[] body, int timeoutMillis)
+    {
+        return new Call(link, contentType, body, timeoutMillis);
+    }
+
+    public int getRequestCount() { return mRequestCount.get(); }
+    public int getDrainedCount() { return mDrainedCount.get(); }
+    public long getBytesSaved() { return mBytesSaved.get(); }
+
+    /**
+     * <p>A response. The status and headers have been read; the body is read from "body" as it
+     * comes off the connection (and is inflated on the way if it was gzipped). Always "close"
+     * it: That lets the connection be used again.</p>
+     */
+    public static final class Response implements Closeable
+    {
+        public final int statusCode;
+
+        // Header names are lower case. A repeated header keeps its last value.
+        public final Map<String, String> headers;
+
+        // The plain body:
+        public final InputStream body;
+
+        private final Call mCall;
+        private final HttpURLConnection mConnection;
+
+        // The body as it came off the connection, counted:
+        private final CountingInputStream mRawBody;
+
+        // If the body was gzipped: The inflated body, counted. Otherwise null.
+        private final CountingInputStream mInflatedBody;
+
+        private boolean mIsClosed;
+
+        Response(Call call, HttpURLConnection connection, int statusCode,
+                 Map<String, String> headers, CountingInputStream rawBody,
+                 CountingInputStream inflatedBody)
+        {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = inflatedBody != null ? inflatedBody : rawBody;
+            mCall = call;
+            mConnection = connection;
+            mRawBody = rawBody;
+            mInflatedBody = inflatedBody;
+        }
+
+        /**
+         * @param name Lower case
+         * @return The header's value or null
+         */
+        public String getHeader(String name)
+        {
+            return headers.get(name);
+        }
+
+        /**
+         * <p>Finishes the response: The rest of the body is skipped and closed, so the platform
+         * can keep the connection. (If that doesn't work out the connection is dropped.)</p>
+         */
+        @Override
+        public void close()
+        {
+            if (mIsClosed)
+            {
+                return;
+            }
+
+            mIsClosed = true;
+
+            // (Nothing saved if the caller stopped reading early: The inflater reads ahead.)
+            if (mInflatedBody != null)
+            {
+                mCall.countBytesSaved(Math.max(0, mInflatedBody.mCount - mRawBody.mCount));
+            }
+
+            boolean isDrained;
+
+            try
+            {
+                isDrained = drain(mRawBody, MAX_DRAIN_BYTES);
+            }
+            catch (IOException e)
+            {
+                isDrained = false;
+            }
+
+            // Closing the inflated body frees the inflater and closes the raw one too:
+            mCall.finish(mConnection, body, isDrained);
+        }
+
+        /**
+         * @param inputStream
+         * @param maxBytes
+         * @return True if the stream ended within "maxBytes"
+         * @throws IOException
+         */
+        private static boolean drain(InputStream inputStream, int maxBytes) throws IOException
+        {
+            byte[] buffer = new byte[4096];
+            int left = maxBytes;
+
+            while (left >= 0)
+            {
+                int read = inputStream.read(buffer, 0, buffer.length);
+
+                if (read == -1)
+                {
+                    return true;
+                }
+
+                left -= read;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * <p>One request and its response.</p>
+     */
+    public final class Call
+    {
+        private final String mLink;
+        private final String mContentType;
+        private final int mTimeoutMillis;
+
+        // The body as sent (gzipped or not, see "setCompressBody"):
+        private byte[] mBody;
+        private boolean mIsBodyCompressed;
+
+        // More request headers (see "setHeader"):
+        private final Map<String, String> mHeaders = new LinkedHashMap<String, String>();
+
+        // The connection while the call is running (so "cancel" can cut it):
+        private volatile HttpURLConnection mConnection;
+        private volatile boolean mIsCanceled;
+
+        Call(String link, String contentType, byte[] body, int timeoutMillis)
+        {
+            mLink = link;
+            mContentType = contentType;
+            mBody = body;
+            mTimeoutMillis = timeoutMillis;
+        }
+
+        /**
+         * <p>Adds a request header (eg; "If-None-Match"). Call it before "execute".</p>
+         *
+         * @param name
+         * @param value
+         */
+        public void setHeader(String name, String value)
+        {
+            mHeaders.put(name, value);
+        }
+
+        /**
+         * <p>Gzips the request body (if it's at least GZIP_MIN_BYTES and actually gets smaller).
+         * The server has to understand "Content-Encoding: gzip" on requests: Plain PHP form
+         * handling doesn't. Call it before "execute".</p>
+         *
+         * @param compress
+         */
+        public void setCompressBody(boolean compress)
+        {
+            if ( ! compress || mIsBodyCompressed || mBody.length < GZIP_MIN_BYTES)
+            {
+                return;
+            }
+
+            try
+            {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(mBody.length / 2);
+                GZIPOutputStream out = new GZIPOutputStream(compressed);
+                out.write(mBody);
+                out.close();
+
+                if (compressed.size() < mBody.length)
+                {
+                    mBytesSaved.addAndGet(mBody.length - compressed.size());
+                    mBody = compressed.toByteArray();
+                    mIsBodyCompressed = true;
+                }
+            }
+
+            // Can't happen in memory. Send it as it is.
+            catch (IOException e)
+            {
+                Log.e(TAG, "setCompressBody(): " + e.getMessage());
+            }
+        }
+
+        /**
+         * <p>Sends the request and reads the response's status and headers. Blocks: Don't call it
+         * on the UI thread.</p>
+         *
+         * @return The response. Read its body, then close it.
+         * @throws IOException Including when the call was cancelled
+         */
+        public Response execute() throws IOException
+        {
+            checkCanceled();
+
+            URL url = new URL(mLink);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            boolean isStarted = false;
+
+            mConnection = connection;
+            mRequestCount.incrementAndGet();
+
+            try
+            {
+                connection.setConnectTimeout(mTimeoutMillis);
+                connection.setReadTimeout(mTimeoutMillis);
+                connection.setRequestMethod("POST");
+                connection.setUseCaches(false);
+                connection.setDoInput(true);
+                connection.setDoOutput(true);
+
+                // Streamed, not buffered: The platform can't send it again behind our back.
+                connection.setFixedLengthStreamingMode(mBody.length);
+
+                connection.setRequestProperty("Content-Type", mContentType);
+                connection.setRequestProperty("Content-Language", "en-US");
+
+                // Asking for gzip ourselves means the platform hands it over as it is (see
+                // "inflate"), so the savings can be counted.
+                connection.setRequestProperty("Accept-Encoding", "gzip");
+
+                if (mIsBodyCompressed)
+                {
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                }
+
+                for (Map.Entry<String, String> header : mHeaders.entrySet())
+                {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+
+                OutputStream out = connection.getOutputStream();
+
+                try
+                {
+                    out.write(mBody);
+                }
+                finally
+                {
+                    out.close();
+                }
+
+                int statusCode = connection.getResponseCode();
+                Map<String, String> headers = readHeaders(connection);
+
+                // Error responses have their body in the "error stream" (null if there's none):
+                InputStream body = statusCode >= 400 ?
+                        connection.getErrorStream() : connection.getInputStream();
+
+                CountingInputStream rawBody = new CountingInputStream(body != null ?
+                        body : new ByteArrayInputStream(new byte[0]));
+
+                Response response = new Response(this, connection, statusCode, headers, rawBody,
+                        inflate(rawBody, statusCode, headers));
+
+                isStarted = true;
+
+                return response;
+            }
+            finally
+            {
+                if ( ! isStarted)
+                {
+                    mConnection = null;
+                    connection.disconnect();
+                }
+            }
+        }
+
+        /**
+         * <p>Calls the whole thing off: "execute" (or reading the body) fails with an
+         * IOException. Any thread.</p>
+         */
+        public void cancel()
+        {
+            mIsCanceled = true;
+
+            HttpURLConnection connection = mConnection;
+
+            if (connection != null)
+            {
+                connection.disconnect();
+            }
+        }
+
+        /**
+         * <p>The response is done with "connection" (see Response.close).</p>
+         *
+         * @param connection
+         * @param body
+         * @param isDrained The whole body was read, so the connection can be used again
+         */
+        private void finish(HttpURLConnection connection, InputStream body, boolean isDrained)
+        {
+            mConnection = null;
+
+            try
+            {
+                body.close();
+            }
+            catch (IOException e)
+            {
+                isDrained = false;
+            }
+
+            if (isDrained && ! mIsCanceled)
+            {
+                mDrainedCount.incrementAndGet();
+            }
+            else
+            {
+                connection.disconnect();
+            }
+        }
+
+        /**
+         * @param bytes Saved by inflating a response (see Response.close)
+         */
+        private void countBytesSaved(long bytes)
+        {
+            mBytesSaved.addAndGet(bytes);
+        }
+
+        /**
+         * @param rawBody
+         * @param statusCode
+         * @param headers
+         * @return The inflated body (counted) or null if it isn't gzipped
+         * @throws IOException
+         */
+        private CountingInputStream inflate(InputStream rawBody, int statusCode,
+                                            Map<String, String> headers) throws IOException
+        {
+            String contentEncoding = headers.get("content-encoding");
+
+            // No body at all (so no gzip header to read either):
+            if (contentEncoding == null || ! contentEncoding.equalsIgnoreCase("gzip") ||
+                    statusCode == 204 || statusCode == 304 ||
+                    "0".equals(headers.get("content-length")))
+            {
+                return null;
+            }
+
+            return new CountingInputStream(new GZIPInputStream(rawBody));
+        }
+
+        /**
+         * @throws IOException If the call was cancelled
+         */
+        private void checkCanceled() throws IOException
+        {
+            if (mIsCanceled)
+            {
+                throw new IOException("Canceled");
+            }
+        }
+    }
+
+    /**
+     * @param connection
+     * @return The response headers, names in lower case
+     */
+    private static Map<String, String> readHeaders(HttpURLConnection connection)
+    {
+        Map<String, String> headers = new HashMap<String, String>();
+
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet())
+        {
+            // The status line comes with a null name:
+            if (header.getKey() == null || header.getValue().isEmpty())
+            {
+                continue;
+            }
+
+            List<String> values = header.getValue();
+            headers.put(header.getKey().toLowerCase(Locale.US), values.get(values.size() - 1));
+        }
+
+        return headers;
+    }
+
+    /**
+     * <p>Counts the bytes read through it.</p>
+     */
+    private static final class CountingInputStream extends FilterInputStream
+    {
+        long mCount;
+
+        CountingInputStream(InputStream inputStream)
+        {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int read = super.read();
+            mCount += read != -1 ? 1 : 0;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            int read = super.read(buffer, offset, length);
+            mCount += Math.max(read, 0);
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException
+        {
+            long skipped = super.skip(count);
+            mCount += skipped;
+            return skipped;
+        }
+    }
+}
@@ -4,10 +4,13 @@ package com.android.codebreaker.data;
  * <p>This is the generic (all purpose) interface used by all "...DataRequest" classes. These
  * callback methods are the communications tool used by these classes to get query results from
  * the "DataRequestHelper" base class.</p>
+ *
+ * <p>"T" is the decoded result (eg; HighScoresData). It's decoded on a background thread; both
+ * methods are called on the main thread.</p>
  */
 
-public interface IDataRequestCallback
+public interface IDataRequestCallback<T>
 {
-    void onQueryTaskCompleted(String result);  // A successful return with data.
+    void onQueryTaskCompleted(T result);       // A successful return with data.
     void onQueryTaskError(String errorString); // An error occurred.
-}
\ No newline at end of file
+}
@@ -0,0 +1,152 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>The "misc" query result (codebuster_miscdata.php): name/value pairs such as the website
+ * link text and the game play instructions.</p>
+ *
+ * <p>Decoded straight off the connection by SplashDataRequest, on a background thread. The values
+ * are HTML, so they are turned into styled text (see "getStyled") there too.</p>
+ */
+
+import android.text.Html;
+import android.util.JsonReader;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class MiscData
+{
+    // Names used by the "misc" table:
+    public static final String WEBSITE_LINK_TEXT = "website_link_text";
+    public static final String INSTRUCTIONS = "instructions";
+
+    private final Map<String, String> mValues;
+
+    // The same values as styled text (see Html.fromHtml):
+    private final Map<String, CharSequence> mStyledValues;
+
+    /**
+     * @param values Name/value pairs (eg; read back by MiscDataCache)
+     */
+    MiscData(Map<String, String> values)
+    {
+        mValues = values;
+        mStyledValues = new HashMap<String, CharSequence>();
+
+        for (Map.Entry<String, String> entry : values.entrySet())
+        {
+            mStyledValues.put(entry.getKey(), Html.fromHtml(entry.getValue()));
+        }
+    }
+
+    /**
+     * @param name eg; INSTRUCTIONS
+     * @return Its value or an empty string if the server didn't send it
+     */
+    public String get(String name)
+    {
+        String value = mValues.get(name);
+        return value != null ? value : "";
+    }
+
+    /**
+     * @param name eg; INSTRUCTIONS
+     * @return Its value as styled text, ready for a TextView. Empty if the server didn't send it.
+     */
+    public CharSequence getStyled(String name)
+    {
+        CharSequence value = mStyledValues.get(name);
+        return value != null ? value : "";
+    }
+
+    /**
+     * @return Every name/value pair (read only)
+     */
+    Map<String, String> getValues()
+    {
+        return Collections.unmodifiableMap(mValues);
+    }
+
+    /**
+     * @param other
+     * @return True if "other" has the same name/value pairs. (ie; Shows the same.)
+     */
+    @Override
+    public boolean equals(Object other)
+    {
+        return other instanceof MiscData && ((MiscData) other).mValues.equals(mValues);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return mValues.hashCode();
+    }
+
+    /**
+     * <p>Reads {"misc": [{"name": "...", "value": "..."}, ...]}. Anything else in the response
+     * is skipped.</p>
+     *
+     * @param reader
+     * @return
+     * @throws IOException If the response isn't in that form
+     */
+    static MiscData read(JsonReader reader) throws IOException
+    {
+        Map<String, String> values = new HashMap<String, String>();
+
+        reader.beginObject();
+
+        while (reader.hasNext())
+        {
+            if ( ! reader.nextName().equals("misc"))
+            {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginArray();
+
+            while (reader.hasNext())
+            {
+                String name = "";
+                String value = "";
+
+                reader.beginObject();
+
+                while (reader.hasNext())
+                {
+                    switch (reader.nextName())
+                    {
+                        case "name":
+
+                            name = reader.nextString();
+                            break;
+
+                        case "value":
+
+                            value = reader.nextString();
+                            break;
+
+                        default:
+
+                            reader.skipValue();
+                            break;
+                    }
+                }
+
+                reader.endObject();
+
+                values.put(name, value);
+            }
+
+            reader.endArray();
+        }
+
+        reader.endObject();
+
+        return new MiscData(values);
+    }
+}
@@ -0,0 +1,212 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>The last good "misc" query result (see MiscData), on disk, so the splash screen can show the
+ * instructions and website link on its first frame instead of waiting on the network. It also
+ * keeps the result's validators ("ETag", "Last-Modified") so the refresh after a cold start can
+ * still be a cheap "304 Not Modified" (see ValidatorCache).</p>
+ *
+ * <p>File layout: "CBMD" (magic), format version, the ETag and Last-Modified values (empty =
+ * none), the number of pairs, then each name and value. Strings are a length followed by their
+ * UTF-8 bytes. The whole thing is a few KB and is read in well under a millisecond.</p>
+ *
+ * <p>A new file is written next to the old one and renamed over it, so a crash mid-write leaves
+ * the old file as it was.</p>
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class MiscDataCache
+{
+    // The name of the cache file (in the app's private files folder):
+    public static final String FILE_NAME = "misc_data.bin";
+
+    // File header: "CBMD" followed by the format version.
+    public static final int MAGIC = 0x43424D44;
+    public static final int VERSION = 1;
+
+    // Anything bigger than this isn't a misc value (ie; the file is broken):
+    private static final int MAX_STRING_BYTES = 1024 * 1024;
+    private static final int MAX_PAIR_COUNT = 256;
+
+    /**
+     * <p>What's in the file.</p>
+     */
+    public static final class Entry
+    {
+        // May be null:
+        public final String eTag;
+        public final String lastModified;
+
+        public final MiscData data;
+
+        Entry(String eTag, String lastModified, MiscData data)
+        {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.data = data;
+        }
+    }
+
+    private MiscDataCache()
+    {
+    }
+
+    /**
+     * @param file
+     * @return What's stored or null if there's nothing (or the file is broken)
+     */
+    public static Entry read(File file)
+    {
+        DataInputStream in;
+
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+        catch (FileNotFoundException e)
+        {
+            return null;
+        }
+
+        try
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                return null;
+            }
+
+            String eTag = readString(in);
+            String lastModified = readString(in);
+            int pairCount = in.readInt();
+
+            if (pairCount < 0 || pairCount > MAX_PAIR_COUNT)
+            {
+                return null;
+            }
+
+            Map<String, String> values = new HashMap<String, String>();
+
+            for (int iter = 0; iter < pairCount; iter++)
+            {
+                String name = readString(in);
+                values.put(name, readString(in));
+            }
+
+            return new Entry(eTag.isEmpty() ? null : eTag,
+                    lastModified.isEmpty() ? null : lastModified, new MiscData(values));
+        }
+
+        // Cut short or unreadable? Nothing stored.
+        catch (IOException e)
+        {
+            return null;
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing more to read anyway.
+            }
+        }
+    }
+
+    /**
+     * <p>Replaces what's stored. Blocks on the disk: Don't call it on the UI thread.</p>
+     *
+     * @param file
+     * @param eTag         May be null
+     * @param lastModified May be null
+     * @param data
+     * @return False if it couldn't be written (the old file, if any, is still there)
+     */
+    public static boolean write(File file, String eTag, String lastModified, MiscData data)
+    {
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try
+        {
+            FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+
+            try
+            {
+                DataOutputStream out =
+                        new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+                Map<String, String> values = data.getValues();
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, eTag != null ? eTag : "");
+                writeString(out, lastModified != null ? lastModified : "");
+                out.writeInt(values.size());
+
+                for (Map.Entry<String, String> pair : values.entrySet())
+                {
+                    writeString(out, pair.getKey());
+                    writeString(out, pair.getValue());
+                }
+
+                out.flush();
+                fileOutputStream.getFD().sync();
+            }
+            finally
+            {
+                fileOutputStream.close();
+            }
+
+            return tempFile.renameTo(file);
+        }
+        catch (IOException e)
+        {
+            tempFile.delete();
+            return false;
+        }
+    }
+
+    /**
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+
+        if (length < 0 || length > MAX_STRING_BYTES)
+        {
+            throw new IOException("Bad string length: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes("UTF-8");
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,172 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>Runs every server request (see DataRequestHelper) for the whole app. Each request used to
+ * be its own AsyncTask, and AsyncTasks all share one serial executor: A slow splash screen
+ * fetch held up the score submission queued behind it. The dispatcher instead has:</p>
+ *
+ * <ul>
+ *     <li>A small, fixed pool of worker threads (MAX_WORKERS) so requests run side by side
+ *         without opening an unbounded number of connections;</li>
+ *     <li>A priority queue: When every worker is busy the most important request goes next
+ *         (see DataRequestHelper.PRIORITY_). Requests of equal priority go first come, first
+ *         served;</li>
+ *     <li>Cancellation: After DataRequestHelper.cancel a request that hasn't started is skipped
+ *         and one that has gets its connection cut;</li>
+ *     <li>Timeouts: A request that hasn't finished after its timeout is cancelled and reported
+ *         as an error.</li>
+ * </ul>
+ *
+ * <p>The listener (IDataRequestCallback) is always called on the main (UI) thread, exactly once,
+ * unless the request was cancelled.</p>
+ */
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RequestDispatcher
+{
+    // Used in Logs
+    private final String TAG = this.getClass().getSimpleName();
+
+    // Requests running at the same time:
+    public static final int MAX_WORKERS = 2;
+
+    // The one and only instance. Created on first use.
+    private static volatile RequestDispatcher sInstance;
+
+    // The workers and their (priority ordered) queue:
+    private final ThreadPoolExecutor mExecutor;
+
+    // Delivers results (and runs the timeouts) on the main thread:
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Breaks priority ties: first come, first served.
+    private final AtomicLong mSequence = new AtomicLong();
+
+    private RequestDispatcher()
+    {
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        mExecutor = new ThreadPoolExecutor(
+                MAX_WORKERS,
+                MAX_WORKERS,
+                0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(final Runnable runnable)
+                    {
+                        return new Thread(new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                // Stay out of the UI's way:
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "DataRequest-" + threadCount.incrementAndGet());
+                    }
+                });
+    }
+
+    /**
+     * @return The dispatcher
+     */
+    public static RequestDispatcher getInstance()
+    {
+        RequestDispatcher instance = sInstance;
+
+        if (instance == null)
+        {
+            synchronized (RequestDispatcher.class)
+            {
+                instance = sInstance;
+
+                if (instance == null)
+                {
+                    instance = new RequestDispatcher();
+                    sInstance = instance;
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * <p>Queues a request and starts its timeout. Call it on the main thread.</p>
+     *
+     * @param request
+     */
+    void submit(DataRequestHelper<?> request)
+    {
+        Log.d(TAG, "submit(): " + request.getClass().getSimpleName());
+
+        mMainHandler.postDelayed(request.getTimeoutRunnable(), request.getTimeoutMillis());
+        mExecutor.execute(new Job(request, mSequence.getAndIncrement()));
+    }
+
+    /**
+     * <p>Stops a request's timeout. (It has finished or been cancelled.) Main thread only.</p>
+     *
+     * @param request
+     */
+    void cancelTimeout(DataRequestHelper<?> request)
+    {
+        mMainHandler.removeCallbacks(request.getTimeoutRunnable());
+    }
+
+    /**
+     * <p>Runs "runnable" on the main thread.</p>
+     *
+     * @param runnable
+     */
+    void postToMainThread(Runnable runnable)
+    {
+        mMainHandler.post(runnable);
+    }
+
+    /**
+     * <p>A queued request. Ordered by priority, then by when it was submitted.</p>
+     */
+    private static final class Job implements Runnable, Comparable<Job>
+    {
+        private final DataRequestHelper<?> mRequest;
+        private final long mSequence;
+
+        Job(DataRequestHelper<?> request, long sequence)
+        {
+            mRequest = request;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run()
+        {
+            mRequest.run();
+        }
+
+        @Override
+        public int compareTo(Job other)
+        {
+            if (mRequest.getPriority() != other.mRequest.getPriority())
+            {
+                return mRequest.getPriority() < other.mRequest.getPriority() ? -1 : 1;
+            }
+
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,1117 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>Scores on their way to the server, on disk. A score used to be a single request: Without a
+ * connection (or if the request failed) it was simply lost. Now every score is written here
+ * first and only taken off the queue once the server has answered for it.</p>
+ *
+ * <p>A score is queued under the user's account id when that's known. Otherwise (eg; a new user
+ * who logged in without a connection) it's queued under their username, as long as their
+ * account is on the device ("Remember me", see auth/Authenticator): It goes through "verify and
+ * submit" when it's sent, with the password from the device's AccountManager. (The password is
+ * never written here.) Once the server knows the account the score is queued under the account
+ * id instead. A score without either (eg; the user chose "Not now") isn't queued.</p>
+ *
+ * <ul>
+ *     <li>"verifyAndSubmit" verifies the user and sends their new score in one request (see
+ *         VerifyAndSubmitDataRequest). The score is queued first, and queued again under the
+ *         verified account id if the server couldn't store it. (The user is waiting.);</li>
+ *     <li>"add" only queues it. (eg; There's no connection.);</li>
+ *     <li>"flush" sends whatever is still queued, oldest first. ScoreQueueJobService calls it
+ *         when the network comes back.</li>
+ * </ul>
+ *
+ * <p>Queued scores go out in batches (see SubmitScoresDataRequest): Up to FLUSH_BATCH_SIZE of
+ * them in one request, each with its own result (see ScoreResultsData). Scores that still need
+ * their user verified go alongside, one request each.</p>
+ *
+ * <p>Every score carries an idempotency key (a random UUID) that never changes however often
+ * it's sent. If the server stored a score but the answer never made it back the score is sent
+ * again, and the server recognizes the key instead of adding a second leaderboard row.</p>
+ *
+ * <p>File layout: "CBSQ" (magic), format version, the number of scores, then each score (see
+ * "writeEntry"). Strings are stored as in MiscDataCache. The queue is tiny (MAX_ENTRIES at
+ * most) so the whole file is rewritten on every change: A new file is written next to the old
+ * one, forced to disk and renamed over it. A crash mid-write leaves the old queue as it was.</p>
+ *
+ * <p>All of the file work happens on one background thread, in order. Callers hear back on the
+ * main (UI) thread.</p>
+ *
+ * <p>Note: Call the instance methods on the main thread.</p>
+ */
+
+import android.accounts.Account;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.android.codebreaker.auth.Authenticator;
+import com.android.codebreaker.misc.Utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ScoreQueue
+{
+    // Used in Logs
+    private final String TAG = this.getClass().getSimpleName();
+
+    // The name of the queue file (in the app's private files folder):
+    public static final String FILE_NAME = "score_queue.bin";
+
+    // File header: "CBSQ" followed by the format version.
+    public static final int MAGIC = 0x43425351;
+    public static final int VERSION = 3;
+
+    // Older files are still read: Version 1 has no username, version 2 a password after it
+    // (which is skipped).
+    private static final int VERSION_WITHOUT_USERNAME = 1;
+    private static final int VERSION_WITH_PASSWORD = 2;
+
+    // The most scores kept. When it's full the oldest score makes room.
+    public static final int MAX_ENTRIES = 64;
+
+    // The most scores in one request (the next batch follows once it's through):
+    public static final int FLUSH_BATCH_SIZE = 32;
+
+    // The one and only instance. Created on first use.
+    private static volatile ScoreQueue sInstance;
+
+    /**
+     * <p>Hears when a "flush" is over.</p>
+     */
+    public interface FlushListener
+    {
+        /**
+         * <p>Called on the main thread.</p>
+         *
+         * @param isQueueEmpty False if some scores are still queued (eg; the connection dropped
+         *                     again or there's no connection at all)
+         */
+        void onFlushDone(boolean isQueueEmpty);
+    }
+
+    /**
+     * <p>A queued score: Everything SubmitScoresDataRequest sends for it.</p>
+     */
+    public static final class Entry
+    {
+        // Sent with the score so a resend is recognized (see the class comment):
+        public final String key;
+
+        // When it was queued (System.currentTimeMillis):
+        public final long queuedAt;
+
+        // The user's id on the server (see UserData.getAuthToken). 0 = not known yet: The
+        // score goes through "verify and submit" as the device account called "username".
+        public final int accountId;
+        public final String username;
+
+        public final String secretNumber;
+        public final int turns;
+        public final int timeInSeconds;
+        public final int score;
+        public final int adjustedScore;
+        public final String transcript;
+
+        Entry(String key, long queuedAt, int accountId, String username, String secretNumber, int turns, int timeInSeconds, int score, int adjustedScore,
+              String transcript)
+        {
+            this.key = key;
+            this.queuedAt = queuedAt;
+            this.accountId = accountId;
+            this.username = username;
+            this.secretNumber = secretNumber;
+            this.turns = turns;
+            this.timeInSeconds = timeInSeconds;
+            this.score = score;
+            this.adjustedScore = adjustedScore;
+            this.transcript = transcript;
+        }
+
+        /**
+         * @return A new idempotency key. Make one per game: Every send of that game's score
+         *         uses it.
+         */
+        public static String newKey()
+        {
+            return UUID.randomUUID().toString();
+        }
+
+        /**
+         * @param userData
+         * @param key      See "newKey"
+         * @return The game's score or null if "userData" doesn't say who the user is (a verified
+         *         account id, or a remembered username) or what the Secret Number was
+         */
+        public static Entry from(UserData userData, String key)
+        {
+            return from(userData, key, userData.getAuthToken());
+        }
+
+        /**
+         * @param userData
+         * @param key       See "newKey"
+         * @param accountId The user's id on the server (0 or less = not known)
+         * @return The game's score or null if the Secret Number is missing, or both the account
+         *         id and a remembered username (see UserData.getRememberMe: Only then is the
+         *         password on the device for the "flush")
+         */
+        static Entry from(UserData userData, String key, int accountId)
+        {
+            if (userData.getSecretNumber() == null || userData.getSecretNumber().length() == 0)
+            {
+                return null;
+            }
+
+            boolean isRemembered = userData.getRememberMe() &&
+                    userData.getUsername() != null && userData.getUsername().length() > 0;
+
+            if (accountId <= 0 && ! isRemembered)
+            {
+                return null;
+            }
+
+            boolean isVerified = accountId > 0;
+
+            return new Entry(
+                    key,
+                    System.currentTimeMillis(),
+                    isVerified ? accountId : 0,
+                    isVerified ? "" : userData.getUsername(),
+                    userData.getSecretNumber(),
+                    userData.getTurns(),
+                    userData.getTimeInSeconds(),
+                    userData.getScore(),
+                    userData.getAdjustedScore(),
+                    userData.getTranscript() != null ? userData.getTranscript() : "");
+        }
+
+        /**
+         * @return True if the score still needs its user verified (see "toUserData")
+         */
+        public boolean isUnverified()
+        {
+            return accountId <= 0;
+        }
+
+        /**
+         * @param password The device account's password
+         * @return What VerifyAndSubmitDataRequest sends for this score
+         */
+        UserData toUserData(String password)
+        {
+            UserData userData = new UserData();
+
+            userData.setUsername(username);
+            userData.setPassword(password);
+            userData.setRememberMe(true);
+            userData.setSecretNumber(secretNumber);
+            userData.setTurns(turns);
+            userData.setTimeInSeconds(timeInSeconds);
+            userData.setScore(score);
+            userData.setAdjustedScore(adjustedScore);
+            userData.setTranscript(transcript);
+            userData.setScoreKey(key);
+
+            return userData;
+        }
+    }
+
+    // Does all of the file work, in order:
+    private final ExecutorService mWriter = Executors.newSingleThreadExecutor();
+
+    // Tells the main thread when the file work is done:
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Not an Activity (this outlives them):
+    private final Context mContext;
+    private final File mFile;
+
+    // Writer thread only. Oldest first. Read from the file on first use.
+    private final List<Entry> mEntries = new ArrayList<Entry>();
+    private boolean mIsLoaded;
+
+    // Main thread only. The keys of the scores being sent right now, whether a "flush" is
+    // running and who's waiting for it to end:
+    private final Set<String> mSending = new HashSet<String>();
+    private boolean mIsFlushing;
+    private final List<FlushListener> mFlushListeners = new ArrayList<FlushListener>();
+
+    // Main thread only. The requests of the running "flush" that aren't back yet and whether it
+    // should go round again once they are:
+    private int mFlushRequests;
+    private boolean mIsMoreToFlush;
+
+    /**
+     * @param context
+     */
+    private ScoreQueue(Context context)
+    {
+        mContext = context.getApplicationContext();
+        mFile = new File(mContext.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * @param context
+     * @return The queue
+     */
+    public static ScoreQueue getInstance(Context context)
+    {
+        ScoreQueue instance = sInstance;
+
+        if (instance == null)
+        {
+            synchronized (ScoreQueue.class)
+            {
+                instance = sInstance;
+
+                if (instance == null)
+                {
+                    instance = new ScoreQueue(context);
+                    sInstance = instance;
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * <p>Queues a score. Returns right away; the write happens in the background.</p>
+     *
+     * @param entry
+     * @param onQueued Run on the main thread once the score is on disk (or couldn't be written).
+     *                 May be null.
+     */
+    public void add(final Entry entry, final Runnable onQueued)
+    {
+        mWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                addEntry(entry);
+
+                if (onQueued != null)
+                {
+                    mMainHandler.post(onQueued);
+                }
+            }
+        });
+    }
+
+    /**
+     * <p>Verifies the user and sends the game's score, in one request (see
+     * VerifyAndSubmitDataRequest):</p>
+     *
+     * <ul>
+     *     <li>The score is queued first (see "Entry.from"), so it isn't lost if the request
+     *         fails;</li>
+     *     <li>Verified but not stored (eg; the INSERT failed)? It's queued, under the verified
+     *         account id, for the next "flush";</li>
+     *     <li>Stored (or invalid, see VerifyAndSubmitData.isScoreSettled), or the credentials
+     *         were rejected for good (see VerifyAndSubmitData.isRejected)? It's taken off the
+     *         queue;</li>
+     *     <li>Anything else (eg; the server's database is down, or the answer made no sense)
+     *         leaves the queue as it was: A queued score stays for the next "flush".</li>
+     * </ul>
+     *
+     * <p>Then anything else that's queued is sent too.</p>
+     *
+     * @param userData The user's credentials and the game
+     * @param key      The game's idempotency key (see Entry.newKey). The same one every time
+     *                 this game is sent.
+     * @param listener
+     */
+    public void verifyAndSubmit(final UserData userData, final String key,
+                                final IDataRequestCallback<VerifyAndSubmitData> listener)
+    {
+        final Runnable send = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                mSending.add(key);
+
+                VerifyAndSubmitDataRequest verifyAndSubmitDataRequest =
+                        new VerifyAndSubmitDataRequest(
+                                new IDataRequestCallback<VerifyAndSubmitData>()
+                {
+                    @Override
+                    public void onQueryTaskCompleted(VerifyAndSubmitData result)
+                    {
+                        mSending.remove(key);
+                        settle(userData, key, result);
+
+                        listener.onQueryTaskCompleted(result);
+
+                        // We're online: Catch up on anything older.
+                        if (result.getResult() > 0)
+                        {
+                            flush();
+                        }
+                    }
+
+                    @Override
+                    public void onQueryTaskError(String errorString)
+                    {
+                        mSending.remove(key);
+                        listener.onQueryTaskError(errorString);
+                    }
+                }, mContext);
+
+                if ( ! verifyAndSubmitDataRequest.execute(userData, key))
+                {
+                    mSending.remove(key);
+                    listener.onQueryTaskError("Score " + key + " can't be sent");
+                }
+            }
+        };
+
+        Entry entry = Entry.from(userData, key);
+
+        if (entry != null)
+        {
+            add(entry, send);
+        }
+        else
+        {
+            send.run();
+        }
+    }
+
+    /**
+     * <p>Updates the queue with a "verify and submit" answer (see "verifyAndSubmit"). Main thread
+     * only.</p>
+     *
+     * @param userData
+     * @param key
+     * @param result
+     */
+    private void settle(UserData userData, String key, VerifyAndSubmitData result)
+    {
+        boolean isVerified = result.getResult() > 0;
+
+        if (isVerified && ! result.isScoreSettled())
+        {
+            Entry verified = Entry.from(userData, key, result.getResult());
+
+            if (verified != null)
+            {
+                add(verified, null);
+            }
+        }
+        // Stored (or never will be), or the credentials were refused:
+        else if (isVerified || result.isRejected())
+        {
+            remove(Collections.singleton(key));
+        }
+    }
+
+    /**
+     * <p>Sends the queued scores, oldest first, FLUSH_BATCH_SIZE per request. Another request
+     * follows as long as the last one was full and got somewhere; a failure stops it and the
+     * rest wait for the next "flush". Does nothing without a network connection or if a "flush"
+     * is already running.</p>
+     *
+     * <p>A score that still needs its user verified (see Entry.isUnverified) goes on its own,
+     * through "verify and submit", alongside the batch. The "flush" is over once every request
+     * is back.</p>
+     */
+    public void flush()
+    {
+        flush(null);
+    }
+
+    /**
+     * <p>Same as "flush()", and then tells "listener". (If a "flush" is already running it's
+     * told when that one is over.)</p>
+     *
+     * @param listener May be null
+     */
+    public void flush(FlushListener listener)
+    {
+        if (listener != null)
+        {
+            mFlushListeners.add(listener);
+        }
+
+        if (mIsFlushing)
+        {
+            return;
+        }
+
+        if ( ! Utilities.isNetworkAvailable(mContext))
+        {
+            onFlushDone();
+            return;
+        }
+
+        mIsFlushing = true;
+
+        mWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                load();
+
+                final List<Entry> entries = new ArrayList<Entry>(mEntries);
+
+                mMainHandler.post(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        final List<Entry> batch = new ArrayList<Entry>();
+                        List<Entry> unverified = new ArrayList<Entry>();
+
+                        for (Entry entry : entries)
+                        {
+                            if ( ! entry.isUnverified())
+                            {
+                                if (batch.size() < FLUSH_BATCH_SIZE)
+                                {
+                                    batch.add(entry);
+                                }
+                            }
+
+                            // Not on its way already (eg; "verifyAndSubmit" is sending it)?
+                            else if ( ! mSending.contains(entry.key))
+                            {
+                                unverified.add(entry);
+                            }
+                        }
+
+                        Log.i(TAG, "flush(): " + batch.size() + " queued score(s), " +
+                                unverified.size() + " to verify");
+
+                        mFlushRequests = 0;
+                        mIsMoreToFlush = false;
+
+                        // Each one on its own: A user the server can't verify right now doesn't
+                        // hold up anybody else's score.
+                        for (Entry entry : unverified)
+                        {
+                            if (sendUnverified(entry))
+                            {
+                                mFlushRequests++;
+                            }
+                        }
+
+                        boolean isSent = send(batch, DataRequestHelper.PRIORITY_LOW,
+                                new IDataRequestCallback<ScoreResultsData>()
+                        {
+                            @Override
+                            public void onQueryTaskCompleted(ScoreResultsData results)
+                            {
+                                // A full batch that got somewhere may mean there's more:
+                                if (batch.size() == FLUSH_BATCH_SIZE &&
+                                        countSettled(batch, results) > 0)
+                                {
+                                    mIsMoreToFlush = true;
+                                }
+
+                                onFlushRequestDone();
+                            }
+
+                            @Override
+                            public void onQueryTaskError(String errorString)
+                            {
+                                // Most likely the connection dropped again. Try again when
+                                // it's back.
+                                Log.i(TAG, "flush(): Batch stopped. " + errorString);
+
+                                onFlushRequestDone();
+                            }
+                        });
+
+                        if (isSent)
+                        {
+                            mFlushRequests++;
+                        }
+
+                        // Nothing to send (or it's all on its way already):
+                        if (mFlushRequests == 0)
+                        {
+                            mIsFlushing = false;
+                            onFlushDone();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * <p>Part of "flush": Verifies the user of a queued score and sends it. If the server
+     * verifies the user but doesn't store the score, it's queued under the account id (see
+     * "settle") and the "flush" goes round again to send it. Main thread only.</p>
+     *
+     * @param entry
+     * @return False if it wasn't sent (it never will be, so it's taken off the queue)
+     */
+    private boolean sendUnverified(final Entry entry)
+    {
+        Log.i(TAG, "flush(): Verifying the user of " + entry.key);
+
+        // The password lives in the device account. Gone (or someone else's)? Then the score
+        // can't be sent.
+        final Authenticator authenticator = new Authenticator(mContext);
+        final Account account = authenticator.findAccount();
+        String password = null;
+
+        if (account != null && account.name.equals(entry.username))
+        {
+            password = authenticator.getPasswordFromAccount(account);
+        }
+
+        if (password == null)
+        {
+            Log.w(TAG, "flush(): No device account for " + entry.key + ". Dropping it.");
+
+            remove(Collections.singleton(entry.key));
+            return false;
+        }
+
+        final UserData userData = entry.toUserData(password);
+
+        mSending.add(entry.key);
+
+        VerifyAndSubmitDataRequest verifyAndSubmitDataRequest = new VerifyAndSubmitDataRequest(
+                new IDataRequestCallback<VerifyAndSubmitData>()
+        {
+            @Override
+            public void onQueryTaskCompleted(VerifyAndSubmitData result)
+            {
+                mSending.remove(entry.key);
+                settle(userData, entry.key, result);
+
+                // The next game can skip the verification:
+                if (result.getResult() > 0)
+                {
+                    authenticator.setAuthToken(account, result.getResult());
+                }
+
+                if (result.getResult() > 0 && ! result.isScoreSettled())
+                {
+                    mIsMoreToFlush = true;
+                }
+
+                onFlushRequestDone();
+            }
+
+            @Override
+            public void onQueryTaskError(String errorString)
+            {
+                Log.i(TAG, "flush(): " + entry.key + " stopped. " + errorString);
+
+                mSending.remove(entry.key);
+                onFlushRequestDone();
+            }
+        }, mContext);
+
+        // Nobody is waiting on this one:
+        verifyAndSubmitDataRequest.setPriority(DataRequestHelper.PRIORITY_LOW);
+
+        if ( ! verifyAndSubmitDataRequest.execute(userData, entry.key))
+        {
+            mSending.remove(entry.key);
+            remove(Collections.singleton(entry.key));
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>One of the "flush" requests is back. Once they all are the "flush" is over, or goes
+     * round again if there's more to send. Main thread only.</p>
+     */
+    private void onFlushRequestDone()
+    {
+        if (--mFlushRequests > 0)
+        {
+            return;
+        }
+
+        mIsFlushing = false;
+
+        if (mIsMoreToFlush)
+        {
+            flush();
+        }
+        else
+        {
+            onFlushDone();
+        }
+    }
+
+    /**
+     * <p>The "flush" is over: Tells whoever is waiting whether anything is still queued. (The
+     * answer comes from the writer thread, after the settled scores have been taken off.) Main
+     * thread only.</p>
+     */
+    private void onFlushDone()
+    {
+        if (mFlushListeners.isEmpty())
+        {
+            return;
+        }
+
+        final List<FlushListener> listeners = new ArrayList<FlushListener>(mFlushListeners);
+        mFlushListeners.clear();
+
+        mWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                load();
+
+                final boolean isQueueEmpty = mEntries.isEmpty();
+
+                mMainHandler.post(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for (FlushListener listener : listeners)
+                        {
+                            listener.onFlushDone(isQueueEmpty);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * <p>Sends the scores in "batch" that aren't already on their way, in one request, and takes
+     * those the server has settled (see ScoreResultsData.isSettled) off the queue. Main thread
+     * only.</p>
+     *
+     * @param batch
+     * @param priority See DataRequestHelper.PRIORITY_
+     * @param listener Hears about the request if it was sent
+     * @return False if nothing was sent
+     */
+    private boolean send(List<Entry> batch, int priority,
+                         final IDataRequestCallback<ScoreResultsData> listener)
+    {
+        final List<Entry> toSend = new ArrayList<Entry>();
+
+        for (Entry entry : batch)
+        {
+            // Already on its way (eg; "verifyAndSubmit" while a "flush" is running)?
+            if ( ! mSending.contains(entry.key))
+            {
+                toSend.add(entry);
+            }
+        }
+
+        if (toSend.isEmpty())
+        {
+            return false;
+        }
+
+        for (Entry entry : toSend)
+        {
+            mSending.add(entry.key);
+        }
+
+        SubmitScoresDataRequest submitScoresDataRequest = new SubmitScoresDataRequest(
+                new IDataRequestCallback<ScoreResultsData>()
+        {
+            @Override
+            public void onQueryTaskCompleted(ScoreResultsData results)
+            {
+                Set<String> settled = new HashSet<String>();
+
+                for (Entry entry : toSend)
+                {
+                    mSending.remove(entry.key);
+
+                    if (results.isSettled(entry.key))
+                    {
+                        settled.add(entry.key);
+                    }
+                }
+
+                remove(settled);
+                listener.onQueryTaskCompleted(results);
+            }
+
+            @Override
+            public void onQueryTaskError(String errorString)
+            {
+                for (Entry entry : toSend)
+                {
+                    mSending.remove(entry.key);
+                }
+
+                listener.onQueryTaskError(errorString);
+            }
+        }, mContext);
+
+        submitScoresDataRequest.setPriority(priority);
+
+        if ( ! submitScoresDataRequest.execute(toSend))
+        {
+            for (Entry entry : toSend)
+            {
+                mSending.remove(entry.key);
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param batch
+     * @param results
+     * @return How many of "batch" the server has settled
+     */
+    private static int countSettled(List<Entry> batch, ScoreResultsData results)
+    {
+        int count = 0;
+
+        for (Entry entry : batch)
+        {
+            if (results.isSettled(entry.key))
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * <p>Writer thread only.</p>
+     *
+     * @param entry
+     */
+    private void addEntry(Entry entry)
+    {
+        load();
+
+        // The same game again (eg; verified after all)? It replaces the old one.
+        for (Iterator<Entry> iterator = mEntries.iterator(); iterator.hasNext(); )
+        {
+            if (iterator.next().key.equals(entry.key))
+            {
+                iterator.remove();
+            }
+        }
+
+        // Full? The oldest score goes.
+        if (mEntries.size() >= MAX_ENTRIES)
+        {
+            Log.w(TAG, "add(): Queue full. Dropping " + mEntries.get(0).key);
+            mEntries.remove(0);
+        }
+
+        mEntries.add(entry);
+        save();
+    }
+
+    /**
+     * <p>Takes scores off the queue. Returns right away.</p>
+     *
+     * @param keys
+     */
+    private void remove(final Set<String> keys)
+    {
+        if (keys.isEmpty())
+        {
+            return;
+        }
+
+        mWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                load();
+
+                boolean isChanged = false;
+
+                for (Iterator<Entry> iterator = mEntries.iterator(); iterator.hasNext(); )
+                {
+                    if (keys.contains(iterator.next().key))
+                    {
+                        iterator.remove();
+                        isChanged = true;
+                    }
+                }
+
+                if (isChanged)
+                {
+                    save();
+                }
+            }
+        });
+    }
+
+    /**
+     * <p>Reads the file the first time the queue is used. Writer thread only.</p>
+     */
+    private void load()
+    {
+        if (mIsLoaded)
+        {
+            return;
+        }
+
+        mIsLoaded = true;
+
+        List<Entry> entries = readFile(mFile);
+
+        if (entries != null)
+        {
+            mEntries.addAll(entries);
+        }
+
+        updateJob();
+    }
+
+    /**
+     * <p>Replaces the file with what's queued now. Writer thread only.</p>
+     */
+    private void save()
+    {
+        if ( ! writeFile(mFile, mEntries))
+        {
+            Log.e(TAG, "save(): Couldn't write " + mFile);
+        }
+
+        updateJob();
+    }
+
+    /**
+     * <p>While there's something queued ScoreQueueJobService is scheduled, to run once there's a
+     * network connection. Writer thread only.</p>
+     *
+     * <p>The job isn't cancelled when the queue empties: This may be the job's own "flush", and
+     * cancelling a running job stops it. A job that finds nothing to send is over at once.</p>
+     */
+    private void updateJob()
+    {
+        if (mEntries.isEmpty())
+        {
+            return;
+        }
+
+        JobScheduler jobScheduler =
+                (JobScheduler) mContext.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+
+        // Already scheduled (or running)? Scheduling it again would replace (stop) it.
+        for (JobInfo jobInfo : jobScheduler.getAllPendingJobs())
+        {
+            if (jobInfo.getId() == ScoreQueueJobService.JOB_ID)
+            {
+                return;
+            }
+        }
+
+        jobScheduler.schedule(new JobInfo.Builder(ScoreQueueJobService.JOB_ID,
+                new ComponentName(mContext, ScoreQueueJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPersisted(true)
+                .build());
+    }
+
+    /**
+     * @param file
+     * @return The queued scores or null if there are none (or the file is broken)
+     */
+    static List<Entry> readFile(File file)
+    {
+        DataInputStream in;
+
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+        catch (FileNotFoundException e)
+        {
+            return null;
+        }
+
+        try
+        {
+            if (in.readInt() != MAGIC)
+            {
+                return null;
+            }
+
+            int version = in.readInt();
+
+            if (version != VERSION && version != VERSION_WITHOUT_USERNAME &&
+                    version != VERSION_WITH_PASSWORD)
+            {
+                return null;
+            }
+
+            int entryCount = in.readInt();
+
+            if (entryCount < 0 || entryCount > MAX_ENTRIES)
+            {
+                return null;
+            }
+
+            List<Entry> entries = new ArrayList<Entry>(entryCount);
+
+            for (int iter = 0; iter < entryCount; iter++)
+            {
+                entries.add(readEntry(in, version));
+            }
+
+            return entries;
+        }
+
+        // Cut short or unreadable? Nothing queued.
+        catch (IOException e)
+        {
+            return null;
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing more to read anyway.
+            }
+        }
+    }
+
+    /**
+     * <p>Blocks on the disk: Don't call it on the UI thread.</p>
+     *
+     * @param file
+     * @param entries
+     * @return False if it couldn't be written (the old file, if any, is still there)
+     */
+    static boolean writeFile(File file, List<Entry> entries)
+    {
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try
+        {
+            FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+
+            try
+            {
+                DataOutputStream out =
+                        new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+
+                for (Entry entry : entries)
+                {
+                    writeEntry(out, entry);
+                }
+
+                out.flush();
+                fileOutputStream.getFD().sync();
+            }
+            finally
+            {
+                fileOutputStream.close();
+            }
+
+            return tempFile.renameTo(file);
+        }
+        catch (IOException e)
+        {
+            tempFile.delete();
+            return false;
+        }
+    }
+
+    /**
+     * @param in
+     * @param version The file's format version
+     * @return
+     * @throws IOException
+     */
+    private static Entry readEntry(DataInputStream in, int version) throws IOException
+    {
+        String key = MiscDataCache.readString(in);
+        long queuedAt = in.readLong();
+        int accountId = in.readInt();
+        String username = "";
+
+        if (version != VERSION_WITHOUT_USERNAME)
+        {
+            username = MiscDataCache.readString(in);
+        }
+
+        if (version == VERSION_WITH_PASSWORD)
+        {
+            MiscDataCache.readString(in);
+        }
+
+        String secretNumber = MiscDataCache.readString(in);
+        int turns = in.readInt();
+        int timeInSeconds = in.readInt();
+        int score = in.readInt();
+        int adjustedScore = in.readInt();
+        String transcript = MiscDataCache.readString(in);
+
+        return new Entry(key, queuedAt, accountId, username, secretNumber, turns, timeInSeconds,
+                score, adjustedScore, transcript);
+    }
+
+    /**
+     * <p>The key, when it was queued, the account id, the username (empty once the account id is
+     * known), the Secret Number, turns, time, score, adjusted score and transcript.</p>
+     *
+     * @param out
+     * @param entry
+     * @throws IOException
+     */
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException
+    {
+        MiscDataCache.writeString(out, entry.key);
+        out.writeLong(entry.queuedAt);
+        out.writeInt(entry.accountId);
+        MiscDataCache.writeString(out, entry.username);
+        MiscDataCache.writeString(out, entry.secretNumber);
+        out.writeInt(entry.turns);
+        out.writeInt(entry.timeInSeconds);
+        out.writeInt(entry.score);
+        out.writeInt(entry.adjustedScore);
+        MiscDataCache.writeString(out, entry.transcript);
+    }
+}
@@ -0,0 +1,65 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>Sends the queued scores (see ScoreQueue) once there's a connection again. This works even
+ * when the app isn't running: JobScheduler starts the app for the job and keeps it alive until
+ * "jobFinished" (a BroadcastReceiver's process can be killed as soon as "onReceive" returns,
+ * halfway through the request).</p>
+ *
+ * <p>ScoreQueue schedules the job (JOB_ID, any network) while there's something queued.</p>
+ */
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.util.Log;
+
+public class ScoreQueueJobService extends JobService
+{
+    // Used in Logs
+    private final String TAG = this.getClass().getSimpleName();
+
+    // The job's id (there's only ever one):
+    public static final int JOB_ID = 1;
+
+    /**
+     * <p>There's a network connection: Flush the queue. The job is done when the flush is.</p>
+     *
+     * @param params
+     * @return True: The flush is still running.
+     */
+    @Override
+    public boolean onStartJob(final JobParameters params)
+    {
+        Log.d(TAG, "onStartJob(): Connected. Flushing the score queue.");
+
+        ScoreQueue.getInstance(this).flush(new ScoreQueue.FlushListener()
+        {
+            @Override
+            public void onFlushDone(boolean isQueueEmpty)
+            {
+                Log.d(TAG, "onFlushDone(): " + (isQueueEmpty ? "Empty." : "Try again later."));
+
+                // Anything left (eg; the connection dropped again)? Try again later.
+                jobFinished(params, ! isQueueEmpty);
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * <p>The connection went away (or the system wants the app's resources back). The request
+     * can't be taken back, so just ask to be run again: A score that gets sent twice is
+     * recognized by its idempotency key.</p>
+     *
+     * @param params
+     * @return True: Reschedule.
+     */
+    @Override
+    public boolean onStopJob(JobParameters params)
+    {
+        Log.d(TAG, "onStopJob()");
+
+        return true;
+    }
+}
@@ -0,0 +1,138 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>The answer to a batch of scores (codebuster_submitscores_batch.php): One result per score,
+ * matched up by the score's idempotency key (see ScoreQueue).</p>
+ *
+ * <p>A positive result is the score's row id, whether it was stored just now or already had
+ * been (a resend). The errors are the same as for the other account queries: -1 = fields
+ * missing or invalid, -3 = the INSERT failed.</p>
+ */
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ScoreResultsData
+{
+    // The results that mean something:
+    public static final int RESULT_FIELDS_MISSING = -1;
+    public static final int RESULT_INSERT_FAILED = -3;
+
+    // Result by idempotency key:
+    private final Map<String, Integer> mResults;
+
+    private ScoreResultsData(Map<String, Integer> results)
+    {
+        mResults = results;
+    }
+
+    /**
+     * @param key The score's idempotency key
+     * @return Its result or null if the server didn't send one
+     */
+    public Integer getResult(String key)
+    {
+        return mResults.get(key);
+    }
+
+    /**
+     * @param key The score's idempotency key
+     * @return True if sending the score again won't change anything: It's stored (a row id), or
+     *         it never will be (RESULT_FIELDS_MISSING). A failed INSERT, a result that makes no
+     *         sense (eg; 0) or no answer at all is worth another try.
+     */
+    public boolean isSettled(String key)
+    {
+        Integer result = mResults.get(key);
+        return result != null && (result > 0 || result == RESULT_FIELDS_MISSING);
+    }
+
+    /**
+     * <p>Reads {"results": [{"key": "...", "result": n}, ...]}. Anything else in the response is
+     * skipped.</p>
+     *
+     * @param reader
+     * @return
+     * @throws IOException If the response isn't in that form
+     */
+    static ScoreResultsData read(JsonReader reader) throws IOException
+    {
+        Map<String, Integer> results = new HashMap<String, Integer>();
+
+        reader.beginObject();
+
+        while (reader.hasNext())
+        {
+            if ( ! reader.nextName().equals("results"))
+            {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginArray();
+
+            while (reader.hasNext())
+            {
+                String key = null;
+                Integer result = null;
+
+                reader.beginObject();
+
+                while (reader.hasNext())
+                {
+                    String name = reader.nextName();
+
+                    if (name.equals("key") && reader.peek() == JsonToken.STRING)
+                    {
+                        key = reader.nextString();
+                    }
+                    else if (name.equals("result") && (reader.peek() == JsonToken.NUMBER ||
+                            reader.peek() == JsonToken.STRING))
+                    {
+                        result = parseInt(reader.nextString());
+                    }
+                    else
+                    {
+                        reader.skipValue();
+                    }
+                }
+
+                reader.endObject();
+
+                // No key? There's no telling which score it's for. No result? Then it has none
+                // (and stays queued).
+                if (key != null && result != null)
+                {
+                    results.put(key, result);
+                }
+            }
+
+            reader.endArray();
+        }
+
+        reader.endObject();
+
+        return new ScoreResultsData(results);
+    }
+
+    /**
+     * @param value
+     * @return
+     * @throws IOException If it isn't a number
+     */
+    private static int parseInt(String value) throws IOException
+    {
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Not a result: " + value);
+        }
+    }
+}
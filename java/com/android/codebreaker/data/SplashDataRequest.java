@@ -6,14 +6,21 @@ package com.android.codebreaker.data;
  *
  * <p>Notice that the base class will take the listener from the activity. In that way, we'll
  * bypass this class completely when the query results come back.</p>
+ *
+ * <p>The last good result is kept on disk (see MiscDataCache): "loadCache" gets it back right
+ * away and the query then only checks whether it changed.</p>
  */
 
 import android.content.Context;
+import android.util.JsonReader;
 import android.util.Log;
 
 import com.android.codebreaker.R;
 
-public class SplashDataRequest extends DataRequestHelper
+import java.io.File;
+import java.io.IOException;
+
+public class SplashDataRequest extends DataRequestHelper<MiscData>
 {
     // Used in Logs
     private final String TAG = this.getClass().getSimpleName();
@@ -21,6 +28,9 @@ public class SplashDataRequest extends DataRequestHelper
     // The context of the calling activity
     Context mContext;
 
+    // What's on disk (see "loadCache"). Null = nothing.
+    private volatile MiscDataCache.Entry mOnDisk;
+
     /**
      * The data request constructor. Takes the listener class object (ie; SplashActivity) and the
      * context of the same class.
@@ -28,7 +38,7 @@ public class SplashDataRequest extends DataRequestHelper
      * @param listener - Needed to communicate with the calling class with the query results.
      * @param context - Needed to access resources (strings) to build the HTTP request url.
      */
-    public SplashDataRequest(IDataRequestCallback listener, Context context)
+    public SplashDataRequest(IDataRequestCallback<MiscData> listener, Context context)
     {
         Log.d(TAG, "Constructor");
 
@@ -37,6 +47,12 @@ public class SplashDataRequest extends DataRequestHelper
 
         // Set's this class as the listener to the base class.
         super.setListener(listener);
+
+        // Nice to have: Mustn't hold up anything the user is waiting on.
+        super.setPriority(PRIORITY_LOW);
+
+        // Only download the instructions if they changed since last time:
+        super.setCacheable(true);
     }
 
     /**
@@ -52,9 +68,7 @@ public class SplashDataRequest extends DataRequestHelper
         try
         {
             // All links are stored in resources (strings).
-            String link =
-                    mContext.getResources().getString(R.string.url_header) +
-                    mContext.getResources().getString(R.string.url_tail_splash);
+            String link = getLink();
 
             Log.i(TAG, ".execute(): link:" + link);
 
@@ -62,9 +76,9 @@ public class SplashDataRequest extends DataRequestHelper
             // case there isn't a query string needed (ie; no database params for filtering).
             super.setParams(link, "");
 
-            // Finally, execute the query. See the base class "AsyncTask" for more on the
-            // "execute" method.
-            super.execute("");
+            // Finally, hand the request to the dispatcher. See RequestDispatcher for more on how
+            // it's run.
+            super.submit();
         }
 
         // Something went wrong. We'll log it.
@@ -73,4 +87,87 @@ public class SplashDataRequest extends DataRequestHelper
             Log.e(TAG + ": Exception", e.getMessage());
         }
     }
+
+    /**
+     * <p>See MiscData.read.</p>
+     *
+     * @param reader
+     * @return
+     * @throws IOException
+     */
+    @Override
+    protected MiscData decode(JsonReader reader) throws IOException
+    {
+        return MiscData.read(reader);
+    }
+
+    /**
+     * <p>Reads the last good result from disk, so there's something to show before the query
+     * comes back. The query will then only ask the server whether it changed. Call it before
+     * "execute". (The file is tiny: It's fine on the UI thread.)</p>
+     *
+     * @return The stored result or null if there isn't one
+     */
+    public MiscData loadCache()
+    {
+        MiscDataCache.Entry entry = MiscDataCache.read(getCacheFile());
+        mOnDisk = entry;
+
+        if (entry == null)
+        {
+            return null;
+        }
+
+        ValidatorCache.getInstance().seed(ValidatorCache.getKey(getLink(), ""), entry.eTag,
+                entry.lastModified, entry.data);
+
+        return entry.data;
+    }
+
+    /**
+     * <p>Replaces the copy on disk, but only if something changed.</p>
+     *
+     * @param result
+     * @param eTag
+     * @param lastModified
+     */
+    @Override
+    protected void onDownloaded(MiscData result, String eTag, String lastModified)
+    {
+        MiscDataCache.Entry onDisk = mOnDisk;
+
+        if (onDisk != null && onDisk.data.equals(result) &&
+                equal(onDisk.eTag, eTag) && equal(onDisk.lastModified, lastModified))
+        {
+            return;
+        }
+
+        if (MiscDataCache.write(getCacheFile(), eTag, lastModified, result))
+        {
+            mOnDisk = new MiscDataCache.Entry(eTag, lastModified, result);
+        }
+        else
+        {
+            Log.e(TAG, "onDownloaded(): Couldn't write " + MiscDataCache.FILE_NAME);
+        }
+    }
+
+    /**
+     * @return The "misc" query's URL
+     */
+    private String getLink()
+    {
+        return mContext.getResources().getString(R.string.url_header) +
+                mContext.getResources().getString(R.string.url_tail_splash);
+    }
+
+    private File getCacheFile()
+    {
+        return new File(mContext.getFilesDir(), MiscDataCache.FILE_NAME);
+    }
+
+    private static boolean equal(String first, String second)
+    {
+        return first == null ? second == null : first.equals(second);
+    }
 }
\ No newline at end of file
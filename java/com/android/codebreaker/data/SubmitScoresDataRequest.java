@@ -0,0 +1,143 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>A helper class that sets up the query that saves one or more of the user's scores on the
+ * server in a single request (see ScoreQueue). A backlog of scores from while the device was
+ * offline goes out in one round trip instead of one per game.</p>
+ *
+ * <p>Notice that the base class will take the listener from the caller. In that way, we'll
+ * bypass this class completely when the query results come back.</p>
+ *
+ * <p>The body is JSON rather than a form post, one array per score with the fields in a fixed
+ * order:</p>
+ *
+ * <pre>
+ * {"scores": [["idempotency_key", account_id, "secret_number", turns, time_in_seconds, score,
+ *              adjusted_score, "transcript"], ...]}
+ * </pre>
+ *
+ * <p>The server answers with one result per score (see ScoreResultsData). Big batches are
+ * gzipped (see HttpTransport.Call.setCompressBody).</p>
+ */
+
+import android.content.Context;
+import android.util.JsonReader;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import com.android.codebreaker.R;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+public class SubmitScoresDataRequest extends DataRequestHelper<ScoreResultsData>
+{
+    // Used in Logs
+    private final String TAG = this.getClass().getSimpleName();
+
+    // The context of the calling class
+    Context mContext;
+
+    /**
+     * The data request constructor. Takes the listener class object (ie; ScoreQueue) and a
+     * context.
+     *
+     * @param listener - Needed to communicate with the calling class with the query results.
+     * @param context - Needed to access resources (strings) to build the HTTP request url.
+     */
+    public SubmitScoresDataRequest(IDataRequestCallback<ScoreResultsData> listener,
+                                   Context context)
+    {
+        Log.d(TAG, "Constructor");
+
+        // Set the context so we can build the HTTP request URL using resources (strings)
+        mContext = context;
+
+        // Set's the calling class as the listener to the base class.
+        super.setListener(listener);
+
+        // The body is JSON and the server takes it gzipped:
+        super.setContentType("application/json");
+        super.setCompressRequestBody(true);
+    }
+
+    /**
+     * Builds and then executes the query. The final HTTP request is the URL and the scores as
+     * JSON. The base class puts them together.
+     *
+     * @param entries - The queued scores (ie; account id, score, turns...). At least one.
+     * @return False if the query couldn't be sent
+     */
+    public boolean execute(List<ScoreQueue.Entry> entries)
+    {
+        Log.d(TAG, "execute(): " + entries.size() + " score(s)");
+
+        try
+        {
+            // All links are stored in resources (strings).
+            String link =
+                    mContext.getResources().getString(R.string.url_header) +
+                            mContext.getResources().getString(
+                                    R.string.url_tail_submit_scores_batch);
+
+            Log.i(TAG, "execute().link:" + link);
+
+            // Setup the body...
+            StringWriter body = new StringWriter();
+            JsonWriter writer = new JsonWriter(body);
+
+            writer.beginObject();
+            writer.name("scores");
+            writer.beginArray();
+
+            // One array per score. Keep the order in step with the server (see the class
+            // comment):
+            for (ScoreQueue.Entry entry : entries)
+            {
+                writer.beginArray();
+                writer.value(entry.key);
+                writer.value(entry.accountId);
+                writer.value(entry.secretNumber);
+                writer.value(entry.turns);
+                writer.value(entry.timeInSeconds);
+                writer.value(entry.score);
+                writer.value(entry.adjustedScore);
+                writer.value(entry.transcript);
+                writer.endArray();
+            }
+
+            writer.endArray();
+            writer.endObject();
+            writer.close();
+
+            // Set the URL and body in the base class.
+            super.setParams(link, body.toString());
+
+            // Finally, hand the request to the dispatcher and wait for the response.
+            super.submit();
+
+            return true;
+        }
+
+        // We had a problem with the query. Log it.
+        catch(Exception e)
+        {
+            Log.e(TAG + ": Exception", "" + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * <p>See ScoreResultsData.read.</p>
+     *
+     * @param reader
+     * @return
+     * @throws IOException
+     */
+    @Override
+    protected ScoreResultsData decode(JsonReader reader) throws IOException
+    {
+        return ScoreResultsData.read(reader);
+    }
+}
\ No newline at end of file
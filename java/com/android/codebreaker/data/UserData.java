@@ -27,6 +27,9 @@ public class UserData implements Serializable
     private int mTurns;
     private int mTimeInSeconds;
     private int mScore;
+    private int mAdjustedScore;
+    private String mTranscript = "";
+    private String mScoreKey;
 
     /**
      * Empty constructor. Use the individual setters below...
@@ -113,4 +116,28 @@ public class UserData implements Serializable
      */
     public void setScore(int score) { mScore = score; }
     public int getScore() { return mScore; }
+
+    /**
+     * "mAdjustedScore": The score weighted by how hard the Secret Number was (see
+     *                   engine/DifficultyTable). Same as "mScore" without a difficulty table.
+     * @param adjustedScore
+     */
+    public void setAdjustedScore(int adjustedScore) { mAdjustedScore = adjustedScore; }
+    public int getAdjustedScore() { return mAdjustedScore; }
+
+    /**
+     * "mTranscript": Every turn of the game (hex, see engine/TranscriptCodec). The server replays
+     *                it to make sure the score is real.
+     * @param transcript
+     */
+    public void setTranscript(String transcript) { mTranscript = transcript; }
+    public String getTranscript() { return mTranscript; }
+
+    /**
+     * "mScoreKey": The game's idempotency key (see data/ScoreQueue.Entry.newKey). Made once, when
+     *              the game ends, so every send of this score uses the same one.
+     * @param scoreKey
+     */
+    public void setScoreKey(String scoreKey) { mScoreKey = scoreKey; }
+    public String getScoreKey() { return mScoreKey; }
 }
@@ -0,0 +1,164 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>Remembers the last decoded result of a query together with the validators the server sent
+ * with it ("ETag" and/or "Last-Modified"). The next time the same query goes out it asks "only if
+ * it changed" (If-None-Match / If-Modified-Since). Most of the time the instructions and the
+ * leaderboard haven't changed: The server answers "304 Not Modified" with no body and the stored
+ * result is used as it is. Nothing is downloaded or parsed.</p>
+ *
+ * <p>Entries are keyed by the URL and the Query String (see DataRequestHelper.setCacheable) and
+ * kept in memory, MAX_ENTRIES at most (least recently used goes first). A response without
+ * validators isn't stored: There'd be no way to check it later.</p>
+ *
+ * <p>"getHitCount" counts queries answered from here (304); "getMissCount" counts cacheable
+ * queries that had to download the result.</p>
+ *
+ * <p>Note: This class is thread safe. Stored results are shared, so treat them as read only.</p>
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ValidatorCache
+{
+    // The most results kept:
+    public static final int MAX_ENTRIES = 16;
+
+    // The one and only instance. Created on first use.
+    private static volatile ValidatorCache sInstance;
+
+    /**
+     * <p>A stored result and what the server said about it.</p>
+     */
+    public static final class Entry
+    {
+        // Either may be null (not both):
+        public final String eTag;
+        public final String lastModified;
+
+        // The decoded result (see DataRequestHelper.decode):
+        public final Object result;
+
+        Entry(String eTag, String lastModified, Object result)
+        {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.result = result;
+        }
+    }
+
+    // Least recently used first:
+    private final Map<String, Entry> mEntries =
+            new LinkedHashMap<String, Entry>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ValidatorCache.Entry> eldest)
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private final AtomicInteger mHitCount = new AtomicInteger();
+    private final AtomicInteger mMissCount = new AtomicInteger();
+
+    private ValidatorCache()
+    {
+    }
+
+    /**
+     * @return The cache
+     */
+    public static ValidatorCache getInstance()
+    {
+        ValidatorCache instance = sInstance;
+
+        if (instance == null)
+        {
+            synchronized (ValidatorCache.class)
+            {
+                instance = sInstance;
+
+                if (instance == null)
+                {
+                    instance = new ValidatorCache();
+                    sInstance = instance;
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * @param link The URL
+     * @param data The Query String
+     * @return The key for a query
+     */
+    public static String getKey(String link, String data)
+    {
+        return link + "?" + data;
+    }
+
+    /**
+     * @param key See "getKey"
+     * @return The stored result or null if there's none
+     */
+    public synchronized Entry get(String key)
+    {
+        return mEntries.get(key);
+    }
+
+    /**
+     * <p>Stores a freshly downloaded result. Without validators any old entry is dropped
+     * instead.</p>
+     *
+     * @param key          See "getKey"
+     * @param eTag         The response's "ETag" header. May be null.
+     * @param lastModified The response's "Last-Modified" header. May be null.
+     * @param result       The decoded result
+     */
+    public synchronized void put(String key, String eTag, String lastModified, Object result)
+    {
+        if ((eTag == null && lastModified == null) || result == null)
+        {
+            mEntries.remove(key);
+            return;
+        }
+
+        mEntries.put(key, new Entry(eTag, lastModified, result));
+    }
+
+    /**
+     * <p>Stores a result kept from an earlier run (eg; on disk) unless there's a newer one
+     * already. It's treated like any other: The next query asks the server if it changed.</p>
+     *
+     * @param key          See "getKey"
+     * @param eTag         May be null
+     * @param lastModified May be null
+     * @param result
+     */
+    public synchronized void seed(String key, String eTag, String lastModified, Object result)
+    {
+        if ( ! mEntries.containsKey(key))
+        {
+            put(key, eTag, lastModified, result);
+        }
+    }
+
+    /**
+     * <p>Forgets everything. (eg; After the user's own data changed in a way the server's
+     * validators might not show.)</p>
+     */
+    public synchronized void clear()
+    {
+        mEntries.clear();
+    }
+
+    void countHit() { mHitCount.incrementAndGet(); }
+    void countMiss() { mMissCount.incrementAndGet(); }
+
+    public int getHitCount() { return mHitCount.get(); }
+    public int getMissCount() { return mMissCount.get(); }
+}
@@ -0,0 +1,150 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>The answer to "verify and submit" (codebuster_verify_and_submit.php): Everything the end of
+ * a game used to need three round trips for.</p>
+ *
+ * <ul>
+ *     <li>"result": The verify credentials result (see AuthResultData);</li>
+ *     <li>"score_result": The score's result (as in ScoreResultsData). Only there if the user
+ *         was verified;</li>
+ *     <li>"scores" and "top_rank": The part of the leaderboard around the user's score, lowest
+ *         first (as codebuster_getscores.php sends it), and the rank of its highest row.</li>
+ * </ul>
+ *
+ * <p>Decoded straight off the connection by VerifyAndSubmitDataRequest, on a background thread,
+ * leaderboard rows and all (see HighScoresData).</p>
+ */
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.android.codebreaker.lists.GetScoresListRowData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+public class VerifyAndSubmitData extends AuthResultData
+{
+    // The verify credentials results that are final (see "isRejected"):
+    public static final int RESULT_FIELDS_MISSING = -1;
+    public static final int RESULT_WRONG_PASSWORD = -2;
+
+    // The score's result or null if the server didn't send one:
+    private final Integer mScoreResult;
+
+    // Null if the server didn't send any:
+    private final HighScoresData mHighScores;
+
+    private VerifyAndSubmitData(int result, Integer scoreResult, HighScoresData highScores)
+    {
+        super(result);
+
+        mScoreResult = scoreResult;
+        mHighScores = highScores;
+    }
+
+    public Integer getScoreResult() { return mScoreResult; }
+    public HighScoresData getHighScores() { return mHighScores; }
+
+    /**
+     * @return True if the user wasn't verified and never will be with these credentials (fields
+     *         missing or the wrong password). A failed account INSERT (-3) or no result at all
+     *         (0) is worth another try.
+     */
+    public boolean isRejected()
+    {
+        return getResult() == RESULT_FIELDS_MISSING || getResult() == RESULT_WRONG_PASSWORD;
+    }
+
+    /**
+     * @return True if the score doesn't need sending again: It's stored, or it never will be.
+     *         (See ScoreResultsData.isSettled.)
+     */
+    public boolean isScoreSettled()
+    {
+        return mScoreResult != null && (mScoreResult > 0 ||
+                mScoreResult == ScoreResultsData.RESULT_FIELDS_MISSING);
+    }
+
+    /**
+     * <p>Reads {"result": n, "score_result": n, "top_rank": n, "scores": [...]}. Anything else in
+     * the response is skipped; anything missing is left out.</p>
+     *
+     * @param reader
+     * @param username The user's name, to find their row in the leaderboard
+     * @param score    The user's score
+     * @return
+     * @throws IOException If the response isn't in that form
+     */
+    static VerifyAndSubmitData read(JsonReader reader, String username, int score)
+            throws IOException
+    {
+        int result = 0;
+        Integer scoreResult = null;
+        int topRank = 1;
+        ArrayList<GetScoresListRowData> rows = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+
+            if (name.equals("scores"))
+            {
+                rows = HighScoresData.readScores(reader);
+            }
+            else if ((name.equals("result") || name.equals("score_result") ||
+                    name.equals("top_rank")) &&
+                    (reader.peek() == JsonToken.NUMBER || reader.peek() == JsonToken.STRING))
+            {
+                int value = parseInt(reader.nextString());
+
+                switch (name)
+                {
+                    case "result":
+
+                        result = value;
+                        break;
+
+                    case "score_result":
+
+                        scoreResult = value;
+                        break;
+
+                    default:
+
+                        topRank = Math.max(1, value);
+                        break;
+                }
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        return new VerifyAndSubmitData(result, scoreResult, rows != null ?
+                HighScoresData.fromScores(rows, topRank, username, score) : null);
+    }
+
+    /**
+     * @param value
+     * @return
+     * @throws IOException If it isn't a number
+     */
+    private static int parseInt(String value) throws IOException
+    {
+        try
+        {
+            return (int) Double.parseDouble(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Not a number: " + value);
+        }
+    }
+}
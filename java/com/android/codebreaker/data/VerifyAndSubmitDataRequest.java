@@ -0,0 +1,149 @@
+package com.android.codebreaker.data;
+
+/**
+ * <p>A helper class that sets up the query that does everything the end of a game needs in one
+ * round trip: Verifies the user ("accounts" table), stores their score and sends back the part
+ * of the leaderboard around it. (It used to be three queries, one after the other.)</p>
+ *
+ * <p>Notice that the base class will take the listener from the caller. In that way, we'll
+ * bypass this class completely when the query results come back.</p>
+ *
+ * <p>The score is sent with its idempotency key (see ScoreQueue), so sending it again (eg; after
+ * a lost answer) never stores it twice.</p>
+ */
+
+import android.content.Context;
+import android.util.JsonReader;
+import android.util.Log;
+
+import com.android.codebreaker.R;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+
+public class VerifyAndSubmitDataRequest extends DataRequestHelper<VerifyAndSubmitData>
+{
+    // Used in Logs
+    private final String TAG = this.getClass().getSimpleName();
+
+    // Leaderboard rows wanted above and below the user's score:
+    public static final int NEIGHBOURHOOD_SIZE = 10;
+
+    // The context of the calling class
+    Context mContext;
+
+    // Whose score to look for in the leaderboard (see HighScoresData):
+    private String mUsername;
+    private int mScore;
+
+    /**
+     * The data request constructor. Takes the listener class object (ie; ScoreQueue) and a
+     * context.
+     *
+     * @param listener - Needed to communicate with the calling class with the query results.
+     * @param context - Needed to access resources (strings) to build the HTTP request url.
+     */
+    public VerifyAndSubmitDataRequest(IDataRequestCallback<VerifyAndSubmitData> listener,
+                                      Context context)
+    {
+        Log.d(TAG, "Constructor");
+
+        // Set the context so we can build the HTTP request URL using resources (strings)
+        mContext = context;
+
+        // Set's the calling class as the listener to the base class.
+        super.setListener(listener);
+
+        // The user is waiting on this one. It goes ahead of everything else.
+        super.setPriority(PRIORITY_HIGH);
+    }
+
+    /**
+     * Builds and then executes the query. The final HTTP request is in the form of URL and query
+     * string. The base class puts them together.
+     *
+     * @param userData - Contains the user's "Username" and "Password" and the game's score,
+     *                   turns...
+     * @param key      - The score's idempotency key
+     * @return False if the query couldn't be sent (ie; data is missing)
+     */
+    public boolean execute(UserData userData, String key)
+    {
+        Log.d(TAG, "execute()");
+
+        try
+        {
+            // We need the "Username" and "Password". So, if we don't have them there's no sense
+            // in trying to authenticate.
+            if (userData.getUsername().length() == 0 ||
+                    userData.getPassword().length() == 0)
+            {
+                Log.e(TAG, "execute(): ERROR: Username or Password were empty!");
+                return false;
+            }
+
+            mUsername = userData.getUsername();
+            mScore = userData.getScore();
+
+            // All links are stored in resources (strings).
+            String link =
+                    mContext.getResources().getString(R.string.url_header) +
+                            mContext.getResources().getString(R.string.url_tail_verify_and_submit);
+
+            Log.i(TAG, "execute(): link:" + link);
+
+            // Setup the query string...
+            String queryString = URLEncoder.encode("username", "UTF-8") + "=" +
+                    URLEncoder.encode(userData.getUsername(), "UTF-8");
+            queryString += "&" + URLEncoder.encode("password", "UTF-8") + "=" +
+                    URLEncoder.encode(userData.getPassword(), "UTF-8");
+            queryString += "&" + URLEncoder.encode("idempotency_key", "UTF-8") + "=" +
+                    URLEncoder.encode(key, "UTF-8");
+            queryString += "&" + URLEncoder.encode("secret_number", "UTF-8") + "=" +
+                    URLEncoder.encode(userData.getSecretNumber(), "UTF-8");
+            queryString += "&" + URLEncoder.encode("turns", "UTF-8") + "=" +
+                    URLEncoder.encode(Integer.toString(userData.getTurns()), "UTF-8");
+            queryString += "&" + URLEncoder.encode("time_in_seconds", "UTF-8") + "=" +
+                    URLEncoder.encode(Integer.toString(userData.getTimeInSeconds()), "UTF-8");
+            queryString += "&" + URLEncoder.encode("score", "UTF-8") + "=" +
+                    URLEncoder.encode(Integer.toString(userData.getScore()), "UTF-8");
+            queryString += "&" + URLEncoder.encode("adjusted_score", "UTF-8") + "=" +
+                    URLEncoder.encode(Integer.toString(userData.getAdjustedScore()), "UTF-8");
+            queryString += "&" + URLEncoder.encode("transcript", "UTF-8") + "=" +
+                    URLEncoder.encode(userData.getTranscript(), "UTF-8");
+            queryString += "&" + URLEncoder.encode("neighbourhood", "UTF-8") + "=" +
+                    URLEncoder.encode(Integer.toString(NEIGHBOURHOOD_SIZE), "UTF-8");
+
+            // Don't log the password:
+            Log.i(TAG, "execute(): idempotency_key:" + key);
+
+            // Set the URL and Query String in the base class.
+            super.setParams(link, queryString);
+
+            // Finally, hand the request to the dispatcher and wait for the response.
+            super.submit();
+
+            return true;
+        }
+
+        // We had a problem with the query. Log it.
+        catch(Exception e)
+        {
+            Log.e(TAG + ": Exception", "" + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * <p>See VerifyAndSubmitData.read. (The leaderboard rows are built here, on the worker.)</p>
+     *
+     * @param reader
+     * @return
+     * @throws IOException
+     */
+    @Override
+    protected VerifyAndSubmitData decode(JsonReader reader) throws IOException
+    {
+        return VerifyAndSubmitData.read(reader, mUsername, mScore);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>The "evil" Secret Number keeper for hard mode. It never picks a Secret Number up front.
+ * Instead, every time the user guesses, it splits the remaining candidates by the feedback they
+ * would give and answers with the feedback of the BIGGEST group. (ie; Whatever keeps the most
+ * codes alive.) The Secret Number is only pinned down when there's nothing left to dodge with.
+ * Every answer is consistent with every earlier one so it's still a fair game: Once it's over,
+ * the last guess is a Secret Number that would have given all of the same feedback.</p>
+ *
+ * <p>This runs on the UI thread once per turn, so it has to fit in a frame (16 ms) even with
+ * all 10,000 candidates:</p>
+ *
+ * <ul>
+ *     <li>The candidates are a plain int array (see CandidateSet.copyTo);</li>
+ *     <li>The histogram (and the packed candidate buffer BatchScorer needs when there's no
+ *         feedback table) are allocated once and reused every turn.</li>
+ * </ul>
+ *
+ * <p>Ties are broken deterministically: A group that doesn't end the game wins, then the group
+ * with fewer correct digits (the lower feedback class).</p>
+ *
+ * <p>Note: This class is not thread safe.</p>
+ */
+
+public class AdversaryEngine
+{
+    // The feedback class of four "Green" balls:
+    private static final int WIN_CLASS = FeedbackTable.toFeedbackClass(GuessScorer.FEEDBACK_WIN);
+
+    // Reused every turn: the group sizes by feedback class.
+    private final int[] mHistogram = new int[FeedbackTable.FEEDBACK_CLASS_COUNT];
+
+    // Reused every turn (BatchScorer only): the candidates as packed codes.
+    private final int[] mPackedCandidates = new int[GuessScorer.CODE_COUNT];
+
+    /**
+     * <p>Answers a guess.</p>
+     *
+     * @param guessIndex     The guess (0-9999)
+     * @param candidates     Remaining candidates (code indices). See CandidateSet.copyTo.
+     * @param candidateCount How many entries of "candidates" are used (at least one)
+     * @return The encoded feedback (see GuessScorer) that keeps the most candidates alive.
+     */
+    public int respond(int guessIndex, int[] candidates, int candidateCount)
+    {
+        FeedbackTable feedbackTable = FeedbackTable.getInstance();
+
+        // Group the candidates by the feedback this guess would get:
+        if (feedbackTable.isMapped())
+        {
+            for (int iter = 0; iter < mHistogram.length; iter++)
+            {
+                mHistogram[iter] = 0;
+            }
+
+            for (int iter = 0; iter < candidateCount; iter++)
+            {
+                mHistogram[feedbackTable.scoreClass(candidates[iter], guessIndex)]++;
+            }
+        }
+        else
+        {
+            BatchScorer.pack(candidates, candidateCount, mPackedCandidates);
+            BatchScorer.histogram(GuessScorer.fromIndex(guessIndex),
+                    mPackedCandidates, candidateCount, mHistogram);
+        }
+
+        // Keep the biggest group. A win only happens when it's the last group standing.
+        int bestClass = WIN_CLASS;
+        int bestCount = 0;
+
+        for (int feedbackClass = 0; feedbackClass < mHistogram.length; feedbackClass++)
+        {
+            if (feedbackClass != WIN_CLASS && mHistogram[feedbackClass] > bestCount)
+            {
+                bestClass = feedbackClass;
+                bestCount = mHistogram[feedbackClass];
+            }
+        }
+
+        return FeedbackTable.fromFeedbackClass(bestClass);
+    }
+}
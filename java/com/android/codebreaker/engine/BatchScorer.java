@@ -0,0 +1,177 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>Scores ONE guess against a whole array of codes in a single pass:</p>
+ *
+ * <ul>
+ *     <li>"scoreClasses"/"histogram": Counts how many candidates land in each feedback class.
+ *         That "group the candidates by feedback" loop is where the hint engine and the solver
+ *         spend nearly all of their time;</li>
+ *     <li>"scoreSecrets": The feedback against each of several Secret Numbers (multi-secret
+ *         mode).</li>
+ * </ul>
+ *
+ * <p>Everything the candidates share is worked out once per guess, and each candidate is then
+ * scored with a handful of register operations and no per-digit branches (SWAR: "SIMD within a
+ * register"):</p>
+ *
+ * <ul>
+ *     <li>Exact: XOR the two packed codes. A digit is correct when its nibble is zero, so each
+ *         nibble's bits are OR-ed down into its lowest bit and the wrong digits are counted with
+ *         a single bitCount;</li>
+ *     <li>Common digits: Both codes' digit counts live in a long, one nibble per digit value
+ *         (0-9). The guess's counts are computed once. The per-digit minimum of the two is taken
+ *         for all ten nibbles at once: A guard bit on top of each nibble survives the
+ *         subtraction only where the candidate's count is the bigger one, and that is turned
+ *         into a select mask. One multiply adds the ten minimums up.</li>
+ * </ul>
+ *
+ * <p>Candidates are packed codes (see GuessScorer.pack/fromIndex) so there are no table reads
+ * at all: Unlike the feedback table, scoring a guess against every candidate never misses the
+ * cache.</p>
+ */
+
+public final class BatchScorer
+{
+    // The guard bit of each of the ten digit-count nibbles:
+    private static final long GUARDS = 0x8888888888L;
+
+    // Adds the ten nibbles up into the top one (bits 36-39):
+    private static final long NIBBLE_ONES = 0x1111111111L;
+    private static final int SUM_SHIFT = 36;
+
+    // The lowest bit of each of the four digit nibbles:
+    private static final int DIGIT_LOW_BITS = 0x1111;
+
+    // (exact * 4) + common -> feedback class. That's the encoded feedback, (exact * 5) +
+    // misplaced, so the biggest index is FEEDBACK_WIN.
+    private static final int[] CLASS_BY_EXACT_AND_COMMON = new int[GuessScorer.FEEDBACK_WIN + 1];
+
+    static
+    {
+        for (int exact = 0; exact <= GuessScorer.CODE_LENGTH; exact++)
+        {
+            for (int common = exact; common <= GuessScorer.CODE_LENGTH; common++)
+            {
+                CLASS_BY_EXACT_AND_COMMON[exact * GuessScorer.CODE_LENGTH + common] =
+                        FeedbackTable.toFeedbackClass(
+                                GuessScorer.encodeFeedback(exact, common - exact));
+            }
+        }
+    }
+
+    /**
+     * Static methods only. No instances needed.
+     */
+    private BatchScorer() { }
+
+    /**
+     * <p>Turns code indices (0-9999) into packed codes, the input "scoreClasses" wants.</p>
+     *
+     * @param codeIndices
+     * @param count       How many entries of "codeIndices" are used
+     * @param packedCodes Filled with the packed codes
+     */
+    public static void pack(int[] codeIndices, int count, int[] packedCodes)
+    {
+        for (int iter = 0; iter < count; iter++)
+        {
+            packedCodes[iter] = GuessScorer.fromIndex(codeIndices[iter]);
+        }
+    }
+
+    /**
+     * <p>Adds the feedback class (see FeedbackTable) of every candidate in [from, to) against
+     * the guess to the histogram. The histogram is NOT cleared first, so a long run of
+     * candidates can be scored a chunk at a time. (eg; To give up early.)</p>
+     *
+     * @param guess      Packed guess
+     * @param candidates Packed candidates
+     * @param from       First candidate (inclusive)
+     * @param to         Last candidate (exclusive)
+     * @param histogram  FeedbackTable.FEEDBACK_CLASS_COUNT counts
+     */
+    public static void scoreClasses(int guess, int[] candidates, int from, int to, int[] histogram)
+    {
+        long guessCounts = digitCounts(guess);
+
+        for (int iter = from; iter < to; iter++)
+        {
+            histogram[CLASS_BY_EXACT_AND_COMMON[score(guess, guessCounts, candidates[iter])]]++;
+        }
+    }
+
+    /**
+     * <p>Scores one guess against several Secret Numbers. Allocates nothing.</p>
+     *
+     * @param guess       Packed guess
+     * @param secrets     Packed Secret Numbers
+     * @param secretCount How many entries of "secrets" are used
+     * @param feedbacks   Filled with the encoded feedback (see GuessScorer) for each secret
+     */
+    public static void scoreSecrets(int guess, int[] secrets, int secretCount, int[] feedbacks)
+    {
+        long guessCounts = digitCounts(guess);
+
+        for (int iter = 0; iter < secretCount; iter++)
+        {
+            feedbacks[iter] = score(guess, guessCounts, secrets[iter]);
+        }
+    }
+
+    /**
+     * <p>Same as "scoreClasses" for the whole array, with the histogram cleared first.</p>
+     *
+     * @param guess          Packed guess
+     * @param candidates     Packed candidates
+     * @param candidateCount How many entries of "candidates" are used
+     * @param histogram      FeedbackTable.FEEDBACK_CLASS_COUNT counts
+     */
+    public static void histogram(int guess, int[] candidates, int candidateCount, int[] histogram)
+    {
+        for (int iter = 0; iter < histogram.length; iter++)
+        {
+            histogram[iter] = 0;
+        }
+
+        scoreClasses(guess, candidates, 0, candidateCount, histogram);
+    }
+
+    /**
+     * @param guess       Packed guess
+     * @param guessCounts "digitCounts(guess)"
+     * @param code        Packed candidate/Secret Number
+     * @return (exact * 4) + common, which is the encoded feedback (see GuessScorer)
+     */
+    private static int score(int guess, long guessCounts, int code)
+    {
+        // Exact: Fold every nibble of the difference into its lowest bit.
+        int difference = code ^ guess;
+        difference |= difference >>> 1;
+        difference |= difference >>> 2;
+
+        int exact = GuessScorer.CODE_LENGTH - Integer.bitCount(difference & DIGIT_LOW_BITS);
+
+        // Common: The per-digit minimum of the two count vectors, added up.
+        long codeCounts = digitCounts(code);
+        long codeIsBigger = (((codeCounts | GUARDS) - guessCounts) & GUARDS) >>> 3;
+        codeIsBigger *= 0xF;
+
+        long minimums = (guessCounts & codeIsBigger) | (codeCounts & ~codeIsBigger);
+        int common = (int) ((minimums * NIBBLE_ONES) >>> SUM_SHIFT) & 0xF;
+
+        return exact * GuessScorer.CODE_LENGTH + common;
+    }
+
+    /**
+     * @param code Packed code
+     * @return One nibble per digit value with the number of times it appears in the code.
+     */
+    private static long digitCounts(int code)
+    {
+        return (1L << ((code & 0xF) << 2)) +
+                (1L << (((code >>> 4) & 0xF) << 2)) +
+                (1L << (((code >>> 8) & 0xF) << 2)) +
+                (1L << (((code >>> 12) & 0xF) << 2));
+    }
+}
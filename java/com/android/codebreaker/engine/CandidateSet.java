@@ -0,0 +1,119 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>Keeps track of every Secret Number that is still possible given the guesses (and their
+ * feedback) so far. Think of it as the game "state" from the code breaker's point of view.</p>
+ *
+ * <p>There are only 10,000 codes so the set is a 10,000 bit BitSet (about 1.2 KB) indexed by
+ * code index (0-9999, see GuessScorer.toIndex). Each time a guess is scored the set is pruned
+ * once: Any candidate that would NOT have produced the same feedback is removed. That way the
+ * history of guesses never has to be replayed.</p>
+ *
+ * <p>This is the shared base for the "codes remaining" display, hints and the solvers.</p>
+ *
+ * <p>Note: This class is not thread safe. Use "copyTo" to hand a snapshot to other threads.</p>
+ */
+
+import java.util.BitSet;
+
+public class CandidateSet
+{
+    // One bit per code index. Set = still a possible Secret Number.
+    private final BitSet mCandidates;
+
+    // Cached cardinality of mCandidates:
+    private int mSize;
+
+    /**
+     * A new game: Every code is a candidate.
+     */
+    public CandidateSet()
+    {
+        mCandidates = new BitSet(GuessScorer.CODE_COUNT);
+        mCandidates.set(0, GuessScorer.CODE_COUNT);
+        mSize = GuessScorer.CODE_COUNT;
+    }
+
+    /**
+     * Restores a set saved with "toLongArray". (eg; After the Activity was recreated.)
+     *
+     * @param words
+     */
+    public CandidateSet(long[] words)
+    {
+        mCandidates = BitSet.valueOf(words);
+        mSize = mCandidates.cardinality();
+    }
+
+    /**
+     * <p>Removes every candidate that is inconsistent with a guess and its feedback. Only the
+     * remaining candidates are visited so each turn gets cheaper as the set shrinks.</p>
+     *
+     * @param guessIndex The guess (0-9999)
+     * @param feedback   The encoded feedback the guess received (see GuessScorer)
+     * @return The number of candidates remaining
+     */
+    public int prune(int guessIndex, int feedback)
+    {
+        FeedbackTable feedbackTable = FeedbackTable.getInstance();
+
+        for (int candidate = mCandidates.nextSetBit(0);
+             candidate >= 0;
+             candidate = mCandidates.nextSetBit(candidate + 1))
+        {
+            if (feedbackTable.score(candidate, guessIndex) != feedback)
+            {
+                mCandidates.clear(candidate);
+                mSize--;
+            }
+        }
+
+        return mSize;
+    }
+
+    /**
+     * @return The number of codes that are still possible.
+     */
+    public int size()
+    {
+        return mSize;
+    }
+
+    /**
+     * @param codeIndex 0-9999
+     * @return True if the code is still a possible Secret Number.
+     */
+    public boolean contains(int codeIndex)
+    {
+        return mCandidates.get(codeIndex);
+    }
+
+    /**
+     * <p>Copies the remaining candidates (code indices, ascending) into an array. The
+     * destination must hold at least "size()" ints.</p>
+     *
+     * @param destination
+     * @return The number of candidates copied
+     */
+    public int copyTo(int[] destination)
+    {
+        int count = 0;
+
+        for (int candidate = mCandidates.nextSetBit(0);
+             candidate >= 0;
+             candidate = mCandidates.nextSetBit(candidate + 1))
+        {
+            destination[count++] = candidate;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return The set flattened for a Bundle (see the "long[]" constructor).
+     */
+    public long[] toLongArray()
+    {
+        return mCandidates.toLongArray();
+    }
+}
@@ -0,0 +1,226 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>How hard each Secret Number is: the number of turns the app's best player (minimax) can
+ * expect to need to crack it. Some codes (like 0000 or 1122) fall sooner than others (like
+ * 1123), so a raw score is partly luck. ScoreCalculator.calculateAdjusted uses this table to
+ * even that out.</p>
+ *
+ * <p>Only the repeat pattern of a code (ABCD, AABC, AABB, AAAB or AAAA) makes a difference, so
+ * every code of a pattern has the same value: the average over all of them. Working that out
+ * takes a game for every code, so it's done offline (see tools/DifficultyTableGenerator) and
+ * shipped as an asset. A lookup is an array read.</p>
+ *
+ * <p>File layout: "CBDT" (magic), format version, then one unsigned byte per code index
+ * (0-9999): the expected number of turns in sixteenths of a turn (see TURN_SCALE).</p>
+ *
+ * <p>If the table is missing (or broken) every code is equally hard. (ie; Adjusted scores are
+ * the same as plain ones.)</p>
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public final class DifficultyTable
+{
+    // The name of the table file (in the app's assets):
+    public static final String ASSET_NAME = "difficulty_table.bin";
+
+    // File header: "CBDT" followed by the format version.
+    public static final int MAGIC = 0x43424454;
+    public static final int VERSION = 1;
+
+    // Expected turns are stored in sixteenths of a turn:
+    public static final int TURN_SCALE = 16;
+
+    // The biggest value a byte holds (almost 16 turns):
+    public static final int MAX_EXPECTED_TURNS = 0xFF;
+
+    /**
+     * <p>Where the table comes from.</p>
+     */
+    public interface Source
+    {
+        /**
+         * @return The table file, or null if there isn't one.
+         * @throws IOException
+         */
+        InputStream open() throws IOException;
+    }
+
+    // Where to find the table. Null = no table.
+    private static volatile Source sSource;
+
+    // The one and only instance. Loaded on first use.
+    private static volatile DifficultyTable sInstance;
+
+    // Expected turns (in TURN_SCALE units) by code index, or null if there's no table:
+    private final byte[] mExpectedTurns;
+
+    // The average of all of them (in TURN_SCALE units):
+    private final int mMeanExpectedTurns;
+
+    /**
+     * @param expectedTurns One per code index, in TURN_SCALE units. Null = no table.
+     */
+    public DifficultyTable(byte[] expectedTurns)
+    {
+        mExpectedTurns = expectedTurns;
+
+        long total = 0;
+
+        if (expectedTurns != null)
+        {
+            for (byte value : expectedTurns)
+            {
+                total += value & 0xFF;
+            }
+        }
+
+        mMeanExpectedTurns = expectedTurns != null ?
+                (int) ((total + GuessScorer.CODE_COUNT / 2) / GuessScorer.CODE_COUNT) : 0;
+    }
+
+    /**
+     * <p>Tells the table where its file lives. Must be called before the first "getInstance" to
+     * have any effect.</p>
+     *
+     * @param source
+     */
+    public static void setSource(Source source)
+    {
+        sSource = source;
+    }
+
+    /**
+     * <p>Gets the table, loading it on the first call. Never returns null: Without a usable
+     * table file "isLoaded" is false.</p>
+     *
+     * @return
+     */
+    public static DifficultyTable getInstance()
+    {
+        DifficultyTable instance = sInstance;
+
+        if (instance == null)
+        {
+            synchronized (DifficultyTable.class)
+            {
+                instance = sInstance;
+
+                if (instance == null)
+                {
+                    instance = loadSource(sSource);
+                    sInstance = instance;
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * <p>Reads the table from its source. Any problem = no table.</p>
+     *
+     * @param source
+     * @return
+     */
+    private static DifficultyTable loadSource(Source source)
+    {
+        DifficultyTable emptyTable = new DifficultyTable(null);
+
+        if (source == null)
+        {
+            return emptyTable;
+        }
+
+        try
+        {
+            InputStream inputStream = source.open();
+
+            if (inputStream == null)
+            {
+                return emptyTable;
+            }
+
+            try
+            {
+                DifficultyTable table = read(inputStream);
+                return table != null ? table : emptyTable;
+            }
+            finally
+            {
+                inputStream.close();
+            }
+        }
+
+        // Can't read it? No table.
+        catch (IOException e)
+        {
+            return emptyTable;
+        }
+    }
+
+    /**
+     * @param inputStream
+     * @return The table or null if the header doesn't match.
+     * @throws IOException
+     */
+    public static DifficultyTable read(InputStream inputStream) throws IOException
+    {
+        DataInputStream in = new DataInputStream(inputStream);
+
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        {
+            return null;
+        }
+
+        byte[] expectedTurns = new byte[GuessScorer.CODE_COUNT];
+        in.readFully(expectedTurns);
+
+        return new DifficultyTable(expectedTurns);
+    }
+
+    /**
+     * @param outputStream
+     * @throws IOException
+     */
+    public void write(OutputStream outputStream) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(outputStream);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.write(mExpectedTurns);
+        out.flush();
+    }
+
+    /**
+     * @return True if there's a table. (Otherwise every code counts as average.)
+     */
+    public boolean isLoaded()
+    {
+        return mExpectedTurns != null;
+    }
+
+    /**
+     * @param secretIndex The Secret Number (0-9999)
+     * @return Expected turns to crack it, in TURN_SCALE units. The mean if there's no table.
+     */
+    public int getExpectedTurns(int secretIndex)
+    {
+        return mExpectedTurns != null ? mExpectedTurns[secretIndex] & 0xFF : mMeanExpectedTurns;
+    }
+
+    /**
+     * @return The average expected turns over all codes, in TURN_SCALE units (0 if there's no
+     *         table).
+     */
+    public int getMeanExpectedTurns()
+    {
+        return mMeanExpectedTurns;
+    }
+}
@@ -0,0 +1,295 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>A precomputed table of the feedback for every Secret Number/guess pair. There are only
+ * 10,000 codes so there are 10,000 x 10,000 pairs and each pair has one of just 14 possible
+ * outcomes (see "FEEDBACK_CLASS_COUNT" below). 14 outcomes fit in a nibble so the entire table is
+ * a 50 MB matrix of nibbles.</p>
+ *
+ * <p>With the table in place, scoring a guess is a single array read instead of the two loops in
+ * GuessScorer. That matters for the solver, hints and the score verifier which score millions of
+ * pairs.</p>
+ *
+ * <p>How it works:</p>
+ *
+ * <ul>
+ *     <li>The table file is written offline by tools/FeedbackTableGenerator;</li>
+ *     <li>The app (or any JVM) tells this class where to find the file by calling "setSource";</li>
+ *     <li>The file is memory-mapped the first time "getInstance" is called (lazy);</li>
+ *     <li>If the file is missing (or broken) we fall back to computing the feedback with
+ *         GuessScorer. Same results, just slower.</li>
+ * </ul>
+ *
+ * <p>File layout: An 8 byte header (magic "CBFT", format version) followed by the matrix. The
+ * pair (secretIndex, guessIndex) lives at nibble number (secretIndex * 10,000 + guessIndex). The
+ * even nibble is the low half of a byte.</p>
+ *
+ * <p>Note: All lookups use code indices (0-9999, see GuessScorer.toIndex) rather than packed
+ * codes. Converting a packed code to an index costs about as much as scoring it.</p>
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public final class FeedbackTable
+{
+    // The name of the table file (in the app's assets or on disk):
+    public static final String ASSET_NAME = "feedback_table.bin";
+
+    // The number of possible outcomes of scoring a guess. (exact, misplaced) with
+    // exact + misplaced <= 4, minus the impossible "three exact, one misplaced".
+    public static final int FEEDBACK_CLASS_COUNT = 14;
+
+    // File header: "CBFT" followed by the format version.
+    public static final int MAGIC = 0x43424654;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE_BYTES = 8;
+
+    // The size of the matrix (one nibble per pair):
+    public static final long MATRIX_SIZE_BYTES =
+            (long) GuessScorer.CODE_COUNT * GuessScorer.CODE_COUNT / 2;
+
+    // Feedback class (0-13) -> encoded feedback (see GuessScorer) and back again:
+    private static final int[] CLASS_TO_FEEDBACK = new int[FEEDBACK_CLASS_COUNT];
+    private static final int[] FEEDBACK_TO_CLASS = new int[GuessScorer.FEEDBACK_RANGE];
+
+    static
+    {
+        int feedbackClass = 0;
+
+        for (int exact = 0; exact <= GuessScorer.CODE_LENGTH; exact++)
+        {
+            for (int misplaced = 0; exact + misplaced <= GuessScorer.CODE_LENGTH; misplaced++)
+            {
+                int feedback = GuessScorer.encodeFeedback(exact, misplaced);
+
+                // Three in the right spot and the fourth somewhere else? Impossible.
+                if (exact == GuessScorer.CODE_LENGTH - 1 && misplaced == 1)
+                {
+                    FEEDBACK_TO_CLASS[feedback] = -1;
+                    continue;
+                }
+
+                CLASS_TO_FEEDBACK[feedbackClass] = feedback;
+                FEEDBACK_TO_CLASS[feedback] = feedbackClass++;
+            }
+        }
+    }
+
+    /**
+     * <p>Where the table comes from. Implementations only need to map the matrix; this class
+     * checks the header.</p>
+     */
+    public interface Source
+    {
+        /**
+         * @return The whole table file (header included), or null if there isn't one.
+         * @throws IOException
+         */
+        ByteBuffer map() throws IOException;
+    }
+
+    // Where to find the table. Null = no table, always compute.
+    private static volatile Source sSource;
+
+    // The one and only instance. Created on first use.
+    private static volatile FeedbackTable sInstance;
+
+    // The memory-mapped table or null if we're computing instead:
+    private final ByteBuffer mTable;
+
+    // Only needed when computing: index -> packed code.
+    private final int[] mPackedCodes;
+
+    /**
+     * @param table The mapped table (already validated) or null to compute instead.
+     */
+    private FeedbackTable(ByteBuffer table)
+    {
+        mTable = table;
+
+        if (table == null)
+        {
+            mPackedCodes = new int[GuessScorer.CODE_COUNT];
+
+            for (int index = 0; index < GuessScorer.CODE_COUNT; index++)
+            {
+                mPackedCodes[index] = GuessScorer.fromIndex(index);
+            }
+        }
+        else
+        {
+            mPackedCodes = null;
+        }
+    }
+
+    /**
+     * <p>Tells the table where its file lives. Must be called before the first "getInstance" to
+     * have any effect. Nothing is opened or mapped here.</p>
+     *
+     * @param source
+     */
+    public static void setSource(Source source)
+    {
+        sSource = source;
+    }
+
+    /**
+     * <p>A Source for a plain file on disk. (eg; Tools and the server-side verifier.)</p>
+     *
+     * @param file
+     * @return
+     */
+    public static Source fileSource(final File file)
+    {
+        return new Source()
+        {
+            @Override
+            public ByteBuffer map() throws IOException
+            {
+                if ( ! file.isFile())
+                {
+                    return null;
+                }
+
+                RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+
+                // The mapping stays valid after the file is closed.
+                try
+                {
+                    return randomAccessFile.getChannel().map(
+                            FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+                }
+                finally
+                {
+                    randomAccessFile.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * <p>Gets the table, mapping it on the first call. Never returns null: If there's no usable
+     * table file the instance computes feedback instead.</p>
+     *
+     * @return
+     */
+    public static FeedbackTable getInstance()
+    {
+        FeedbackTable instance = sInstance;
+
+        if (instance == null)
+        {
+            synchronized (FeedbackTable.class)
+            {
+                instance = sInstance;
+
+                if (instance == null)
+                {
+                    instance = new FeedbackTable(mapSource(sSource));
+                    sInstance = instance;
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * <p>Maps the source and checks the header. Any problem = null (ie; compute instead).</p>
+     *
+     * @param source
+     * @return
+     */
+    private static ByteBuffer mapSource(Source source)
+    {
+        if (source == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            ByteBuffer table = source.map();
+
+            if (table == null ||
+                    table.capacity() != HEADER_SIZE_BYTES + MATRIX_SIZE_BYTES ||
+                    table.getInt(0) != MAGIC ||
+                    table.getInt(4) != VERSION)
+            {
+                return null;
+            }
+
+            return table;
+        }
+
+        // Can't read it? We'll compute.
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return True if lookups are served from the table; false if they're computed.
+     */
+    public boolean isMapped()
+    {
+        return mTable != null;
+    }
+
+    /**
+     * <p>The feedback for a Secret Number/guess pair.</p>
+     *
+     * @param secretIndex 0-9999
+     * @param guessIndex  0-9999
+     * @return The encoded feedback (see GuessScorer)
+     */
+    public int score(int secretIndex, int guessIndex)
+    {
+        return CLASS_TO_FEEDBACK[scoreClass(secretIndex, guessIndex)];
+    }
+
+    /**
+     * <p>Same as "score" but returns the compact feedback class (0-13). Use this one to index
+     * histograms when speed matters.</p>
+     *
+     * @param secretIndex 0-9999
+     * @param guessIndex  0-9999
+     * @return 0-13
+     */
+    public int scoreClass(int secretIndex, int guessIndex)
+    {
+        if (mTable == null)
+        {
+            return FEEDBACK_TO_CLASS[
+                    GuessScorer.score(mPackedCodes[secretIndex], mPackedCodes[guessIndex])];
+        }
+
+        int nibble = secretIndex * GuessScorer.CODE_COUNT + guessIndex;
+        int packedByte = mTable.get(HEADER_SIZE_BYTES + (nibble >>> 1));
+
+        return (packedByte >>> ((nibble & 1) << 2)) & 0xF;
+    }
+
+    /**
+     * @param feedback The encoded feedback (see GuessScorer)
+     * @return The feedback class 0-13 (or -1 if the feedback is impossible)
+     */
+    public static int toFeedbackClass(int feedback)
+    {
+        return FEEDBACK_TO_CLASS[feedback];
+    }
+
+    /**
+     * @param feedbackClass 0-13
+     * @return The encoded feedback (see GuessScorer)
+     */
+    public static int fromFeedbackClass(int feedbackClass)
+    {
+        return CLASS_TO_FEEDBACK[feedbackClass];
+    }
+}
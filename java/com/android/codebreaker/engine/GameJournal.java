@@ -0,0 +1,482 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>The game in progress, on disk. The activity's saved state only survives if Android gets
+ * to save it; when the process is killed outright a long game is simply gone. So every guess is
+ * also appended to a tiny journal file which is replayed when the game screen comes back.</p>
+ *
+ * <p>File layout: "CBGJ" (magic), format version, game mode, start time (ms), the number of
+ * Secret Numbers and the Secret Numbers themselves (packed codes). Then one RECORD_SIZE record
+ * per guess: the guess (short), its encoded feedback (byte) and a check byte.</p>
+ *
+ * <p>Crash safety comes from only ever appending:</p>
+ *
+ * <ul>
+ *     <li>A record goes out in a single write and never touches the records before it;</li>
+ *     <li>A record that didn't make it to disk in one piece (a short file, or the zeros a file
+ *         system can leave after a crash) fails the check byte. Replay stops at the first bad
+ *         record and "open" cuts the file back to the good ones;</li>
+ *     <li>The file is forced to disk (fsync) every SYNC_INTERVAL records and on "sync" (ie;
+ *         when the activity is paused) rather than after every guess.</li>
+ * </ul>
+ *
+ * <p>All of the file work happens on one background thread, in order, so a guess never waits
+ * for the disk. "read" is the only blocking call: Run it off the UI thread. A whole game
+ * replays in microseconds.</p>
+ *
+ * <p>Note: Call the instance methods from one thread (the UI thread).</p>
+ */
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class GameJournal
+{
+    // The name of the journal file (in the app's private files folder):
+    public static final String FILE_NAME = "game_journal.bin";
+
+    // File header: "CBGJ" followed by the format version.
+    public static final int MAGIC = 0x4342474A;
+    public static final int VERSION = 1;
+
+    // Bytes per guess:
+    public static final int RECORD_SIZE = 4;
+
+    // Records between forced writes to disk:
+    public static final int SYNC_INTERVAL = 4;
+
+    // The most Secret Numbers a game can have:
+    private static final int MAX_SECRET_COUNT = 64;
+
+    // Bytes in the header before the Secret Numbers:
+    private static final int FIXED_HEADER_SIZE = 24;
+
+    /**
+     * <p>A game read back from the journal.</p>
+     */
+    public static final class Snapshot
+    {
+        // The game mode it was written with (the caller's own constants):
+        public final int mode;
+
+        // When the game started (System.currentTimeMillis):
+        public final long startTime;
+
+        // The Secret Numbers (packed codes, see GuessScorer). May be empty. (eg; "Evil" mode.)
+        public final int[] secrets;
+
+        // Every guess (0-9999) and its encoded feedback, oldest first:
+        public final int[] guesses;
+        public final int[] feedbacks;
+        public final int turnCount;
+
+        // The length of the file up to the last good record:
+        final long mValidLength;
+
+        Snapshot(int mode, long startTime, int[] secrets, int[] guesses, int[] feedbacks,
+                 int turnCount, long validLength)
+        {
+            this.mode = mode;
+            this.startTime = startTime;
+            this.secrets = secrets;
+            this.guesses = guesses;
+            this.feedbacks = feedbacks;
+            this.turnCount = turnCount;
+            mValidLength = validLength;
+        }
+    }
+
+    // Does all of the file work, in order. Shared by every journal so an old one (eg; from
+    // before a rotation) is done with the file before the next one reads it.
+    private static final ExecutorService sWriter = Executors.newSingleThreadExecutor();
+
+    private final File mFile;
+
+    // Only touched on the writer thread:
+    private FileOutputStream mOutputStream;
+    private int mUnsyncedRecords;
+
+    /**
+     * @param file
+     */
+    private GameJournal(File file)
+    {
+        mFile = file;
+    }
+
+    /**
+     * <p>Starts a journal for a new game. Any old journal in "file" is replaced.</p>
+     *
+     * @param file
+     * @param mode      The game mode (handed back by "read", see Snapshot)
+     * @param startTime When the game started
+     * @param secrets   The Secret Numbers (packed codes). Null = none yet.
+     * @return
+     */
+    public static GameJournal start(File file, final int mode, final long startTime,
+                                    final int[] secrets)
+    {
+        final GameJournal journal = new GameJournal(file);
+        final int secretCount = secrets != null ? secrets.length : 0;
+
+        sWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    ByteArrayOutputStream header = new ByteArrayOutputStream();
+                    DataOutputStream out = new DataOutputStream(header);
+
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(mode);
+                    out.writeLong(startTime);
+                    out.writeInt(secretCount);
+
+                    for (int iter = 0; iter < secretCount; iter++)
+                    {
+                        out.writeInt(secrets[iter]);
+                    }
+
+                    journal.mOutputStream = new FileOutputStream(journal.mFile, false);
+                    journal.mOutputStream.write(header.toByteArray());
+                    journal.mOutputStream.getFD().sync();
+                }
+                catch (IOException e)
+                {
+                    journal.closeQuietly();
+                }
+            }
+        });
+
+        return journal;
+    }
+
+    /**
+     * <p>Carries on with the journal that is already in "file". A broken tail is cut off first
+     * so new records follow the last good one. (Without a usable journal nothing is written.)
+     * </p>
+     *
+     * @param file
+     * @return
+     */
+    public static GameJournal open(File file)
+    {
+        final GameJournal journal = new GameJournal(file);
+
+        sWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Snapshot snapshot = readFile(journal.mFile);
+
+                if (snapshot == null)
+                {
+                    return;
+                }
+
+                try
+                {
+                    RandomAccessFile randomAccessFile = new RandomAccessFile(journal.mFile, "rw");
+
+                    try
+                    {
+                        randomAccessFile.setLength(snapshot.mValidLength);
+                    }
+                    finally
+                    {
+                        randomAccessFile.close();
+                    }
+
+                    journal.mOutputStream = new FileOutputStream(journal.mFile, true);
+                }
+                catch (IOException e)
+                {
+                    journal.closeQuietly();
+                }
+            }
+        });
+
+        return journal;
+    }
+
+    /**
+     * <p>Reads a journal back, once every write that's already queued has happened. This
+     * blocks: Don't call it on the UI thread.</p>
+     *
+     * @param file
+     * @return The game or null if there's no journal (or its header is broken).
+     */
+    public static Snapshot read(final File file)
+    {
+        try
+        {
+            return sWriter.submit(new Callable<Snapshot>()
+            {
+                @Override
+                public Snapshot call()
+                {
+                    return readFile(file);
+                }
+            }).get();
+        }
+        catch (InterruptedException e)
+        {
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * <p>Writer thread only.</p>
+     *
+     * @param file
+     * @return The game or null if there's no journal (or its header is broken).
+     */
+    private static Snapshot readFile(File file)
+    {
+        DataInputStream in;
+
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+        catch (FileNotFoundException e)
+        {
+            return null;
+        }
+
+        try
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                return null;
+            }
+
+            int mode = in.readInt();
+            long startTime = in.readLong();
+            int secretCount = in.readInt();
+
+            if (secretCount < 0 || secretCount > MAX_SECRET_COUNT)
+            {
+                return null;
+            }
+
+            int[] secrets = new int[secretCount];
+
+            for (int iter = 0; iter < secretCount; iter++)
+            {
+                secrets[iter] = in.readInt();
+            }
+
+            long headerLength = FIXED_HEADER_SIZE + (long) secretCount * 4;
+            int maxTurns = (int) Math.max(0, (file.length() - headerLength) / RECORD_SIZE);
+            int[] guesses = new int[maxTurns];
+            int[] feedbacks = new int[maxTurns];
+            int turnCount = 0;
+
+            // Keep every record up to the first one that doesn't check out:
+            while (turnCount < maxTurns)
+            {
+                int guessIndex = in.readUnsignedShort();
+                int feedback = in.readUnsignedByte();
+                int check = in.readUnsignedByte();
+
+                if (check != checkByte(guessIndex, feedback) ||
+                        guessIndex >= GuessScorer.CODE_COUNT ||
+                        feedback >= GuessScorer.FEEDBACK_RANGE)
+                {
+                    break;
+                }
+
+                guesses[turnCount] = guessIndex;
+                feedbacks[turnCount] = feedback;
+                turnCount++;
+            }
+
+            return new Snapshot(mode, startTime, secrets, guesses, feedbacks, turnCount,
+                    headerLength + (long) turnCount * RECORD_SIZE);
+        }
+
+        // Can't read it (or the header was cut short)? No game to resume.
+        catch (IOException e)
+        {
+            return null;
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing more to read anyway.
+            }
+        }
+    }
+
+    /**
+     * <p>Adds a guess. Returns right away; the write happens in the background.</p>
+     *
+     * @param guessIndex 0-9999
+     * @param feedback   The encoded feedback (see GuessScorer)
+     */
+    public void append(int guessIndex, int feedback)
+    {
+        final byte[] record = {
+                (byte) (guessIndex >>> 8),
+                (byte) guessIndex,
+                (byte) feedback,
+                (byte) checkByte(guessIndex, feedback) };
+
+        sWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (mOutputStream == null)
+                {
+                    return;
+                }
+
+                try
+                {
+                    mOutputStream.write(record);
+
+                    if (++mUnsyncedRecords >= SYNC_INTERVAL)
+                    {
+                        mOutputStream.getFD().sync();
+                        mUnsyncedRecords = 0;
+                    }
+                }
+                catch (IOException e)
+                {
+                    closeQuietly();
+                }
+            }
+        });
+    }
+
+    /**
+     * <p>Forces everything written so far to disk. (eg; When the app goes to the background and
+     * might be killed.)</p>
+     */
+    public void sync()
+    {
+        sWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                syncQuietly();
+            }
+        });
+    }
+
+    /**
+     * <p>Syncs and closes the journal but leaves it on disk to be replayed.</p>
+     */
+    public void close()
+    {
+        sWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                syncQuietly();
+                closeQuietly();
+            }
+        });
+    }
+
+    /**
+     * <p>The game is over (or abandoned): Closes the journal and deletes it.</p>
+     */
+    public void discard()
+    {
+        sWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                closeQuietly();
+
+                if ( ! mFile.delete())
+                {
+                    mFile.deleteOnExit();
+                }
+            }
+        });
+    }
+
+    /**
+     * <p>Writer thread only.</p>
+     */
+    private void syncQuietly()
+    {
+        if (mOutputStream == null || mUnsyncedRecords == 0)
+        {
+            return;
+        }
+
+        try
+        {
+            mOutputStream.getFD().sync();
+            mUnsyncedRecords = 0;
+        }
+        catch (IOException e)
+        {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * <p>Writer thread only. A journal that can't be written to is simply dropped: The game
+     * goes on, it just can't be recovered.</p>
+     */
+    private void closeQuietly()
+    {
+        if (mOutputStream == null)
+        {
+            return;
+        }
+
+        try
+        {
+            mOutputStream.close();
+        }
+        catch (IOException e)
+        {
+            // Nothing left to do.
+        }
+
+        mOutputStream = null;
+    }
+
+    /**
+     * @return A byte that a torn or zeroed record is very unlikely to match
+     */
+    private static int checkByte(int guessIndex, int feedback)
+    {
+        return ~(guessIndex ^ (guessIndex >>> 8) ^ (feedback * 0x25)) & 0xFF;
+    }
+}
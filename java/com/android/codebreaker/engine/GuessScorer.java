@@ -0,0 +1,221 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>The scoring "engine" of the game. Given a Secret Number and a guess, this class figures out
+ * how many digits are in the correct spot ("Green" balls) and how many digits are in the Secret
+ * Number but NOT in the correct spot ("Gray" balls).</p>
+ *
+ * <p>This used to live inside MainActivity.okButtonClick but it couldn't be reused by anything
+ * else (bots, solvers, server-side verification...). So, here are the rules this class follows:</p>
+ *
+ * <ul>
+ *     <li>No Android dependencies. It runs on any plain JVM;</li>
+ *     <li>No allocations. Every method works on primitives only;</li>
+ *     <li>Codes are "packed" into an int, one digit per 4 bits (nibble).</li>
+ * </ul>
+ *
+ * <p>Packing: The first digit lives in the highest nibble so the hex representation of a packed
+ * code reads just like the code itself. (ie; The code "1234" is packed as 0x1234.)</p>
+ *
+ * <p>Feedback: The result of scoring is also a single int: (exact * 5) + misplaced. Use the
+ * "exact" and "misplaced" methods below to take it apart again. The encoding is dense enough
+ * (0-24) to be used directly as an index into a histogram.</p>
+ */
+
+public final class GuessScorer
+{
+    // The number of slots (digits) in a code:
+    public static final int CODE_LENGTH = 4;
+
+    // Each slot holds a digit 0-9:
+    public static final int DIGIT_COUNT = 10;
+
+    // The total number of possible codes (10^4):
+    public static final int CODE_COUNT = 10000;
+
+    // Number of bits used by one digit in a packed code:
+    public static final int BITS_PER_DIGIT = 4;
+
+    // The number of distinct values the encoded feedback can take (0-24). Use this to size
+    // histograms indexed by feedback.
+    public static final int FEEDBACK_RANGE = (CODE_LENGTH + 1) * (CODE_LENGTH + 1);
+
+    // The feedback when every digit is in its correct spot (ie; four "Green" balls):
+    public static final int FEEDBACK_WIN = CODE_LENGTH * (CODE_LENGTH + 1);
+
+    // Mask for a single digit (nibble):
+    private static final int DIGIT_MASK = 0xF;
+
+    /**
+     * Static methods only. No instances needed.
+     */
+    private GuessScorer() { }
+
+    /**
+     * <p>Scores a guess against a Secret Number. Both are packed codes.</p>
+     *
+     * <p>The "exact" count is simple: Compare each slot. The "misplaced" count is the number of
+     * digits the two codes have in common (regardless of position) minus the exact count. To
+     * find the common digits without allocating count arrays, each code's digit counts are kept
+     * in a long with one nibble per digit value (0-9). A count can never be more than four so a
+     * nibble is plenty.</p>
+     *
+     * @param secret Packed Secret Number
+     * @param guess  Packed guess
+     * @return The encoded feedback: (exact * 5) + misplaced
+     */
+    public static int score(int secret, int guess)
+    {
+        int exact = 0;
+
+        // One nibble per digit value. (ie; The nibble at bits 12-15 is how many 3's there are.)
+        long secretCounts = 0;
+        long guessCounts = 0;
+
+        // Walk the four slots:
+        for (int shift = 0; shift < CODE_LENGTH * BITS_PER_DIGIT; shift += BITS_PER_DIGIT)
+        {
+            int secretDigit = (secret >>> shift) & DIGIT_MASK;
+            int guessDigit = (guess >>> shift) & DIGIT_MASK;
+
+            // Same digit in the same spot = "Green" ball:
+            if (secretDigit == guessDigit)
+            {
+                exact++;
+            }
+
+            secretCounts += 1L << (secretDigit * BITS_PER_DIGIT);
+            guessCounts += 1L << (guessDigit * BITS_PER_DIGIT);
+        }
+
+        // How many digits do they have in common? The smaller count of each digit value.
+        int common = 0;
+
+        for (int shift = 0; shift < DIGIT_COUNT * BITS_PER_DIGIT; shift += BITS_PER_DIGIT)
+        {
+            common += Math.min(
+                    (int) (secretCounts >>> shift) & DIGIT_MASK,
+                    (int) (guessCounts >>> shift) & DIGIT_MASK);
+        }
+
+        return encodeFeedback(exact, common - exact);
+    }
+
+    /**
+     * Builds the single int feedback from its two parts.
+     *
+     * @param exact     Digits in the correct spot ("Green")
+     * @param misplaced Digits in the code but in the wrong spot ("Gray")
+     * @return The encoded feedback
+     */
+    public static int encodeFeedback(int exact, int misplaced)
+    {
+        return exact * (CODE_LENGTH + 1) + misplaced;
+    }
+
+    /**
+     * @param feedback The encoded feedback
+     * @return The number of digits in the correct spot ("Green" balls)
+     */
+    public static int exact(int feedback)
+    {
+        return feedback / (CODE_LENGTH + 1);
+    }
+
+    /**
+     * @param feedback The encoded feedback
+     * @return The number of digits in the code but in the wrong spot ("Gray" balls)
+     */
+    public static int misplaced(int feedback)
+    {
+        return feedback % (CODE_LENGTH + 1);
+    }
+
+    /**
+     * @param feedback The encoded feedback
+     * @return True if all four digits were in the correct spot.
+     */
+    public static boolean isWin(int feedback)
+    {
+        return feedback == FEEDBACK_WIN;
+    }
+
+    /**
+     * Packs four digits (each 0-9) into a single int.
+     *
+     * @param digits An array of (at least) four digits
+     * @return The packed code
+     */
+    public static int pack(int[] digits)
+    {
+        int code = 0;
+
+        for (int iter = 0; iter < CODE_LENGTH; iter++)
+        {
+            code = (code << BITS_PER_DIGIT) | digits[iter];
+        }
+
+        return code;
+    }
+
+    /**
+     * Unpacks a code into an existing array. (ie; No allocation.)
+     *
+     * @param code   Packed code
+     * @param digits The destination array (at least four long)
+     */
+    public static void unpack(int code, int[] digits)
+    {
+        for (int iter = 0; iter < CODE_LENGTH; iter++)
+        {
+            digits[iter] = digitAt(code, iter);
+        }
+    }
+
+    /**
+     * @param code     Packed code
+     * @param position Slot 0-3 (left to right)
+     * @return The digit at that slot
+     */
+    public static int digitAt(int code, int position)
+    {
+        return (code >>> ((CODE_LENGTH - 1 - position) * BITS_PER_DIGIT)) & DIGIT_MASK;
+    }
+
+    /**
+     * Converts a code index (0-9999, ie; the code read as a decimal number) into a packed code.
+     *
+     * @param index 0-9999
+     * @return The packed code
+     */
+    public static int fromIndex(int index)
+    {
+        int code = 0;
+
+        for (int shift = 0; shift < CODE_LENGTH * BITS_PER_DIGIT; shift += BITS_PER_DIGIT)
+        {
+            code |= (index % 10) << shift;
+            index /= 10;
+        }
+
+        return code;
+    }
+
+    /**
+     * Converts a packed code into its index (0-9999). Handy for tables and bit sets.
+     *
+     * @param code Packed code
+     * @return 0-9999
+     */
+    public static int toIndex(int code)
+    {
+        int index = 0;
+
+        for (int iter = 0; iter < CODE_LENGTH; iter++)
+        {
+            index = index * 10 + digitAt(code, iter);
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,340 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>Finds the "best next guess" for the hint button. Every one of the 10,000 possible guesses
+ * is scored against the remaining candidates and ranked by expected information gain (entropy):
+ * A guess that splits the candidates into many small, even groups tells the user the most.</p>
+ *
+ * <p>That's 10,000 x (remaining candidates) feedback lookups. Early in the game that is far too
+ * much work for the UI thread, so:</p>
+ *
+ * <ul>
+ *     <li>The guesses are split into chunks and evaluated on a ForkJoinPool (all cores);</li>
+ *     <li>Every search has a deadline (time budget). When it passes, each chunk stops and the
+ *         best guess found so far is returned (ie; a partial result);</li>
+ *     <li>A search can be cancelled from another thread (see "cancel").</li>
+ * </ul>
+ *
+ * <p>Without the feedback table (see FeedbackTable.isMapped) the candidates are packed once
+ * per search and each guess is scored against all of them with BatchScorer.</p>
+ *
+ * <p>Remaining candidates are evaluated first. They're usually among the best guesses and they
+ * are the only ones that can win right away, so a partial result is still a good one.</p>
+ *
+ * <p>Note: "findBestGuess" blocks until the search is finished. Don't call it on the UI
+ * thread.</p>
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class HintEngine
+{
+    // A reasonable time budget for an interactive hint:
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 50;
+
+    // Guesses per leaf task. Small enough to spread the work evenly across cores and to notice
+    // the deadline quickly.
+    private static final int GUESSES_PER_TASK = 128;
+
+    // c * log2(c) for every possible group size (0-10,000). Used in the entropy calculation.
+    private static final double[] C_LOG2_C = new double[GuessScorer.CODE_COUNT + 1];
+
+    static
+    {
+        for (int count = 1; count <= GuessScorer.CODE_COUNT; count++)
+        {
+            C_LOG2_C[count] = count * Math.log(count) / Math.log(2);
+        }
+    }
+
+    // The workers:
+    private final ForkJoinPool mPool;
+
+    // The cancel flag of the search in progress (if any):
+    private volatile AtomicBoolean mCurrentSearchCancelled;
+
+    /**
+     * Uses one worker per core.
+     */
+    public HintEngine()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism Number of worker threads
+     */
+    public HintEngine(int parallelism)
+    {
+        mPool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * <p>The result of a search.</p>
+     */
+    public static final class Hint
+    {
+        // The suggested guess (0-9999):
+        public final int guessIndex;
+
+        // Expected information gain in bits:
+        public final double expectedInformation;
+
+        // How many of the guesses were evaluated before the deadline:
+        public final int guessesEvaluated;
+
+        // True if every guess was evaluated (ie; the deadline didn't cut the search short):
+        public final boolean isComplete;
+
+        Hint(int guessIndex, double expectedInformation, int guessesEvaluated, boolean isComplete)
+        {
+            this.guessIndex = guessIndex;
+            this.expectedInformation = expectedInformation;
+            this.guessesEvaluated = guessesEvaluated;
+            this.isComplete = isComplete;
+        }
+    }
+
+    /**
+     * <p>Searches for the guess with the highest expected information gain.</p>
+     *
+     * @param candidates       Remaining candidates (code indices). See CandidateSet.copyTo.
+     * @param candidateCount   How many entries of "candidates" are used
+     * @param timeBudgetMillis The deadline. Zero or less = no deadline.
+     * @return The best guess found. Null if there are no candidates or the search was cancelled
+     *         before anything was evaluated.
+     */
+    public Hint findBestGuess(int[] candidates, int candidateCount, long timeBudgetMillis)
+    {
+        if (candidateCount == 0)
+        {
+            return null;
+        }
+
+        // One or two candidates left? Either one is as good as it gets.
+        if (candidateCount <= 2)
+        {
+            return new Hint(candidates[0], candidateCount == 1 ? 0 : 1, 0, true);
+        }
+
+        long deadline = timeBudgetMillis > 0 ?
+                System.nanoTime() + timeBudgetMillis * 1000000L : Long.MAX_VALUE;
+
+        // Candidates first, then everything else:
+        int[] guessOrder = new int[GuessScorer.CODE_COUNT];
+        boolean[] isCandidate = new boolean[GuessScorer.CODE_COUNT];
+
+        for (int iter = 0; iter < candidateCount; iter++)
+        {
+            guessOrder[iter] = candidates[iter];
+            isCandidate[candidates[iter]] = true;
+        }
+
+        int position = candidateCount;
+
+        for (int guess = 0; guess < GuessScorer.CODE_COUNT; guess++)
+        {
+            if ( ! isCandidate[guess])
+            {
+                guessOrder[position++] = guess;
+            }
+        }
+
+        // No table? Score with BatchScorer instead of one pair at a time.
+        int[] packedCandidates = null;
+
+        if ( ! FeedbackTable.getInstance().isMapped())
+        {
+            packedCandidates = new int[candidateCount];
+            BatchScorer.pack(candidates, candidateCount, packedCandidates);
+        }
+
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        mCurrentSearchCancelled = cancelled;
+
+        SearchResult result = mPool.invoke(new SearchTask(candidates, packedCandidates,
+                candidateCount, guessOrder, 0, guessOrder.length, deadline, cancelled));
+
+        if (result.bestGuess < 0)
+        {
+            return null;
+        }
+
+        // Expected information = log2(n) - (sum of c*log2(c)) / n
+        double expectedInformation =
+                (C_LOG2_C[candidateCount] - result.bestCost) / candidateCount;
+
+        return new Hint(
+                result.bestGuess,
+                expectedInformation,
+                result.evaluated,
+                result.evaluated == guessOrder.length);
+    }
+
+    /**
+     * <p>Cancels the search in progress (if any). It returns whatever it has found so far.</p>
+     */
+    public void cancel()
+    {
+        AtomicBoolean cancelled = mCurrentSearchCancelled;
+
+        if (cancelled != null)
+        {
+            cancelled.set(true);
+        }
+    }
+
+    /**
+     * <p>Stops the workers. A search in progress is cancelled (it still returns). Any later
+     * "findBestGuess" throws a RejectedExecutionException.</p>
+     */
+    public void shutdown()
+    {
+        cancel();
+        mPool.shutdown();
+    }
+
+    /**
+     * <p>The best guess of a (part of a) search. "Cost" is the sum of c*log2(c) over the
+     * feedback groups. Lower cost = higher entropy.</p>
+     */
+    private static final class SearchResult
+    {
+        int bestGuess = -1;
+        int bestPosition = Integer.MAX_VALUE;
+        double bestCost = Double.MAX_VALUE;
+        int evaluated;
+
+        /**
+         * Keeps the better of the two results and adds up the work done.
+         */
+        SearchResult merge(SearchResult other)
+        {
+            evaluated += other.evaluated;
+
+            // Equal cost? The one that comes first in the guess order (ie; candidates) wins.
+            if (other.bestCost < bestCost ||
+                    (other.bestCost == bestCost && other.bestPosition < bestPosition))
+            {
+                bestGuess = other.bestGuess;
+                bestPosition = other.bestPosition;
+                bestCost = other.bestCost;
+            }
+
+            return this;
+        }
+    }
+
+    /**
+     * <p>Evaluates a range of the guess order. Splits itself in two until the range is small
+     * enough, then scores each guess against every candidate.</p>
+     */
+    @SuppressWarnings("serial")
+    private static final class SearchTask extends RecursiveTask<SearchResult>
+    {
+        private final int[] mCandidates;
+        private final int[] mPackedCandidates;  // Null = use the feedback table
+        private final int mCandidateCount;
+        private final int[] mGuessOrder;
+        private final int mFrom;
+        private final int mTo;
+        private final long mDeadline;
+        private final AtomicBoolean mCancelled;
+
+        SearchTask(int[] candidates,
+                   int[] packedCandidates,
+                   int candidateCount,
+                   int[] guessOrder,
+                   int from,
+                   int to,
+                   long deadline,
+                   AtomicBoolean cancelled)
+        {
+            mCandidates = candidates;
+            mPackedCandidates = packedCandidates;
+            mCandidateCount = candidateCount;
+            mGuessOrder = guessOrder;
+            mFrom = from;
+            mTo = to;
+            mDeadline = deadline;
+            mCancelled = cancelled;
+        }
+
+        @Override
+        protected SearchResult compute()
+        {
+            // Too big? Split it.
+            if (mTo - mFrom > GUESSES_PER_TASK)
+            {
+                int middle = (mFrom + mTo) >>> 1;
+
+                SearchTask left = new SearchTask(mCandidates, mPackedCandidates, mCandidateCount,
+                        mGuessOrder, mFrom, middle, mDeadline, mCancelled);
+                SearchTask right = new SearchTask(mCandidates, mPackedCandidates, mCandidateCount,
+                        mGuessOrder, middle, mTo, mDeadline, mCancelled);
+
+                // The left half goes first on this worker: It holds the candidates (see the
+                // class comment), so they're reached early even if the deadline cuts it short.
+                right.fork();
+                SearchResult leftResult = left.compute();
+
+                return leftResult.merge(right.join());
+            }
+
+            FeedbackTable feedbackTable = FeedbackTable.getInstance();
+            int[] histogram = new int[FeedbackTable.FEEDBACK_CLASS_COUNT];
+            SearchResult result = new SearchResult();
+
+            for (int position = mFrom; position < mTo; position++)
+            {
+                // Out of time (or cancelled)? Keep what we have.
+                if (mCancelled.get() || System.nanoTime() > mDeadline)
+                {
+                    break;
+                }
+
+                int guess = mGuessOrder[position];
+
+                // Group the candidates by the feedback this guess would get:
+                if (mPackedCandidates != null)
+                {
+                    BatchScorer.histogram(GuessScorer.fromIndex(guess),
+                            mPackedCandidates, mCandidateCount, histogram);
+                }
+                else
+                {
+                    for (int iter = 0; iter < histogram.length; iter++)
+                    {
+                        histogram[iter] = 0;
+                    }
+
+                    for (int iter = 0; iter < mCandidateCount; iter++)
+                    {
+                        histogram[feedbackTable.scoreClass(mCandidates[iter], guess)]++;
+                    }
+                }
+
+                double cost = 0;
+
+                for (int count : histogram)
+                {
+                    cost += C_LOG2_C[count];
+                }
+
+                result.evaluated++;
+
+                // Strictly better only: positions are visited in order.
+                if (cost < result.bestCost)
+                {
+                    result.bestGuess = guess;
+                    result.bestPosition = position;
+                    result.bestCost = cost;
+                }
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>A Knuth-style "minimax" code breaker. Used when the app tries to crack the player's Secret
+ * Number. Each turn it picks the guess whose WORST outcome leaves the fewest candidates. (ie;
+ * It plays for the best worst case rather than the best average case like HintEngine.)</p>
+ *
+ * <p>For every possible guess the remaining candidates are partitioned by the feedback they would
+ * give (a 14 bucket histogram, see FeedbackTable). The size of the biggest bucket is the guess's
+ * "worst case". To keep this fast on a phone:</p>
+ *
+ * <ul>
+ *     <li>Equivalent guesses are skipped. Digits that have never been guessed are
+ *         interchangeable, so only one representative guess is tried for each way of using
+ *         them (see "isCanonical"). On the first turn this leaves 15 guesses out of 10,000;</li>
+ *     <li>A guess is abandoned as soon as one of its buckets is bigger than the best worst case
+ *         found so far (shared between all workers);</li>
+ *     <li>The guesses are split across a ForkJoinPool (all cores);</li>
+ *     <li>Without the feedback table (see FeedbackTable.isMapped) the candidates are scored a
+ *         chunk at a time with BatchScorer.</li>
+ * </ul>
+ *
+ * <p>Ties are broken deterministically: A guess that could be the Secret Number wins, then the
+ * lowest code. So the same position always gets the same answer.</p>
+ *
+ * <p>Note: "nextGuess" blocks until the search is finished. Don't call it on the UI thread.</p>
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MinimaxSolver
+{
+    // Guesses per leaf task:
+    private static final int GUESSES_PER_TASK = 64;
+
+    // Candidates scored between "worst case" checks (BatchScorer only):
+    private static final int CANDIDATES_PER_CHUNK = 256;
+
+    // Bit mask with all ten digits set:
+    private static final int ALL_DIGITS = (1 << GuessScorer.DIGIT_COUNT) - 1;
+
+    // The workers:
+    private final ForkJoinPool mPool;
+
+    /**
+     * Uses one worker per core.
+     */
+    public MinimaxSolver()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism Number of worker threads
+     */
+    public MinimaxSolver(int parallelism)
+    {
+        mPool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * <p>Picks the next guess.</p>
+     *
+     * @param candidates     Remaining candidates (code indices). See CandidateSet.copyTo.
+     * @param candidateCount How many entries of "candidates" are used
+     * @param usedDigits     Bit mask of every digit that has appeared in a guess so far (see
+     *                       "digitMask"). Zero at the start of a game.
+     * @return The guess (0-9999) or -1 if there are no candidates.
+     */
+    public int nextGuess(int[] candidates, int candidateCount, int usedDigits)
+    {
+        if (candidateCount == 0)
+        {
+            return -1;
+        }
+
+        // One or two left? Guess one of them: Either we win or we know the other one.
+        if (candidateCount <= 2)
+        {
+            return candidates[0];
+        }
+
+        boolean[] isCandidate = new boolean[GuessScorer.CODE_COUNT];
+
+        for (int iter = 0; iter < candidateCount; iter++)
+        {
+            isCandidate[candidates[iter]] = true;
+        }
+
+        // Only one guess per equivalence class:
+        int[] guesses = new int[GuessScorer.CODE_COUNT];
+        int guessCount = 0;
+
+        for (int guess = 0; guess < GuessScorer.CODE_COUNT; guess++)
+        {
+            if (isCanonical(guess, usedDigits))
+            {
+                guesses[guessCount++] = guess;
+            }
+        }
+
+        // No table? Score with BatchScorer instead of one pair at a time.
+        int[] packedCandidates = null;
+
+        if ( ! FeedbackTable.getInstance().isMapped())
+        {
+            packedCandidates = new int[candidateCount];
+            BatchScorer.pack(candidates, candidateCount, packedCandidates);
+        }
+
+        // Nothing can be worse than all candidates in one bucket:
+        AtomicInteger bound = new AtomicInteger(candidateCount);
+
+        SolveResult result = mPool.invoke(new SolveTask(candidates, packedCandidates,
+                candidateCount, isCandidate, guesses, 0, guessCount, bound));
+
+        return result.bestGuess;
+    }
+
+    /**
+     * <p>Stops the workers. Any later "nextGuess" throws a RejectedExecutionException.</p>
+     */
+    public void shutdown()
+    {
+        mPool.shutdown();
+    }
+
+    /**
+     * @param codeIndex 0-9999
+     * @return Bit mask of the digits in the code (bit 0 = digit 0...)
+     */
+    public static int digitMask(int codeIndex)
+    {
+        int mask = 0;
+
+        for (int iter = 0; iter < GuessScorer.CODE_LENGTH; iter++)
+        {
+            mask |= 1 << (codeIndex % 10);
+            codeIndex /= 10;
+        }
+
+        return mask;
+    }
+
+    /**
+     * <p>Is this guess the representative of its equivalence class? Digits that have never been
+     * guessed ("fresh" digits) can be swapped for one another without changing anything, so we
+     * only keep the guess that uses fresh digits in ascending order, smallest first. (eg; With
+     * nothing guessed yet, "0012" stands in for "5538", "7749"...)</p>
+     *
+     * @param guess      0-9999
+     * @param usedDigits Bit mask of the digits guessed so far
+     * @return
+     */
+    static boolean isCanonical(int guess, int usedDigits)
+    {
+        // Every digit is used = no fresh digits = nothing to prune.
+        if (usedDigits == ALL_DIGITS)
+        {
+            return true;
+        }
+
+        int seen = usedDigits;
+        int divisor = 1000;
+
+        // Left to right:
+        for (int iter = 0; iter < GuessScorer.CODE_LENGTH; iter++)
+        {
+            int digit = guess / divisor % 10;
+            divisor /= 10;
+
+            if ((seen & (1 << digit)) != 0)
+            {
+                continue;
+            }
+
+            // A fresh digit has to be the smallest fresh digit not yet in the guess:
+            if (digit != Integer.numberOfTrailingZeros(~seen))
+            {
+                return false;
+            }
+
+            seen |= 1 << digit;
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>The best guess of a (part of a) search.</p>
+     */
+    private static final class SolveResult
+    {
+        int bestGuess = -1;
+        int bestWorstCase = Integer.MAX_VALUE;
+        boolean bestIsCandidate;
+
+        /**
+         * @return True if (worstCase, isCandidate, guess) beats the current best.
+         */
+        boolean isBetter(int worstCase, boolean isCandidate, int guess)
+        {
+            if (worstCase != bestWorstCase)
+            {
+                return worstCase < bestWorstCase;
+            }
+
+            if (isCandidate != bestIsCandidate)
+            {
+                return isCandidate;
+            }
+
+            return bestGuess < 0 || guess < bestGuess;
+        }
+
+        SolveResult merge(SolveResult other)
+        {
+            if (other.bestGuess >= 0 &&
+                    isBetter(other.bestWorstCase, other.bestIsCandidate, other.bestGuess))
+            {
+                bestGuess = other.bestGuess;
+                bestWorstCase = other.bestWorstCase;
+                bestIsCandidate = other.bestIsCandidate;
+            }
+
+            return this;
+        }
+    }
+
+    /**
+     * <p>Evaluates a range of guesses. Splits itself in two until the range is small enough.</p>
+     */
+    @SuppressWarnings("serial")
+    private static final class SolveTask extends RecursiveTask<SolveResult>
+    {
+        private final int[] mCandidates;
+        private final int[] mPackedCandidates;  // Null = use the feedback table
+        private final int mCandidateCount;
+        private final boolean[] mIsCandidate;
+        private final int[] mGuesses;
+        private final int mFrom;
+        private final int mTo;
+
+        // The best worst case found by any worker so far:
+        private final AtomicInteger mBound;
+
+        SolveTask(int[] candidates,
+                  int[] packedCandidates,
+                  int candidateCount,
+                  boolean[] isCandidate,
+                  int[] guesses,
+                  int from,
+                  int to,
+                  AtomicInteger bound)
+        {
+            mCandidates = candidates;
+            mPackedCandidates = packedCandidates;
+            mCandidateCount = candidateCount;
+            mIsCandidate = isCandidate;
+            mGuesses = guesses;
+            mFrom = from;
+            mTo = to;
+            mBound = bound;
+        }
+
+        @Override
+        protected SolveResult compute()
+        {
+            // Too big? Split it.
+            if (mTo - mFrom > GUESSES_PER_TASK)
+            {
+                int middle = (mFrom + mTo) >>> 1;
+
+                SolveTask left = new SolveTask(mCandidates, mPackedCandidates, mCandidateCount,
+                        mIsCandidate, mGuesses, mFrom, middle, mBound);
+                SolveTask right = new SolveTask(mCandidates, mPackedCandidates, mCandidateCount,
+                        mIsCandidate, mGuesses, middle, mTo, mBound);
+
+                left.fork();
+                SolveResult rightResult = right.compute();
+
+                return left.join().merge(rightResult);
+            }
+
+            FeedbackTable feedbackTable = FeedbackTable.getInstance();
+            int[] histogram = new int[FeedbackTable.FEEDBACK_CLASS_COUNT];
+            SolveResult result = new SolveResult();
+
+            for (int position = mFrom; position < mTo; position++)
+            {
+                int guess = mGuesses[position];
+                int bound = mBound.get();
+                int worstCase = 0;
+
+                for (int iter = 0; iter < histogram.length; iter++)
+                {
+                    histogram[iter] = 0;
+                }
+
+                // Partition the candidates. Give up as soon as a bucket is too big. (Ties are
+                // kept so the tie-break is the same no matter which worker finishes first.)
+                if (mPackedCandidates != null)
+                {
+                    worstCase = worstCaseByChunks(guess, histogram, bound);
+                }
+                else
+                {
+                    for (int iter = 0; iter < mCandidateCount; iter++)
+                    {
+                        int count =
+                                ++histogram[feedbackTable.scoreClass(mCandidates[iter], guess)];
+
+                        if (count > worstCase)
+                        {
+                            worstCase = count;
+
+                            if (worstCase > bound)
+                            {
+                                break;
+                            }
+                        }
+                    }
+                }
+
+                if (worstCase > bound)
+                {
+                    continue;
+                }
+
+                if (result.isBetter(worstCase, mIsCandidate[guess], guess))
+                {
+                    result.bestGuess = guess;
+                    result.bestWorstCase = worstCase;
+                    result.bestIsCandidate = mIsCandidate[guess];
+                }
+
+                // Tighten the shared bound:
+                while (worstCase < bound && ! mBound.compareAndSet(bound, worstCase))
+                {
+                    bound = mBound.get();
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * <p>Partitions the candidates with BatchScorer, a chunk at a time, and stops after the
+         * first chunk that makes a bucket bigger than "bound".</p>
+         *
+         * @param guess     0-9999
+         * @param histogram Cleared, filled with the bucket sizes
+         * @param bound     The best worst case so far
+         * @return The biggest bucket (or a number over "bound" if the guess was abandoned)
+         */
+        private int worstCaseByChunks(int guess, int[] histogram, int bound)
+        {
+            int packedGuess = GuessScorer.fromIndex(guess);
+            int worstCase = 0;
+
+            for (int from = 0; from < mCandidateCount && worstCase <= bound;
+                 from += CANDIDATES_PER_CHUNK)
+            {
+                BatchScorer.scoreClasses(packedGuess, mPackedCandidates, from,
+                        Math.min(from + CANDIDATES_PER_CHUNK, mCandidateCount), histogram);
+
+                for (int count : histogram)
+                {
+                    worstCase = Math.max(worstCase, count);
+                }
+            }
+
+            return worstCase;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>The precomputed answers for the first two turns. That's when the candidate set is at its
+ * biggest and nearly all of the solver's time is spent, yet the answers never change: The first
+ * guess is always the same and the second guess only depends on the feedback the first one got.
+ * </p>
+ *
+ * <p>So the answers are worked out offline (see tools/OpeningBookGenerator) and stored in a tiny
+ * decision tree: one first guess plus one second guess per feedback class. The hint engine and
+ * the computer opponent ask the book first and only fall back to a live search when the book has
+ * no answer. (ie; From the third turn on, or when the user didn't open with the book's guess.)</p>
+ *
+ * <p>File layout: "CBOB" (magic), format version, then shorts: the first guess followed by the
+ * second guess for each of the 14 feedback classes (-1 = the feedback can't happen).</p>
+ *
+ * <p>If the book is missing (or broken) every lookup simply returns -1.</p>
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public final class OpeningBook
+{
+    // The name of the book file (in the app's assets):
+    public static final String ASSET_NAME = "opening_book.bin";
+
+    // File header: "CBOB" followed by the format version.
+    public static final int MAGIC = 0x43424F42;
+    public static final int VERSION = 1;
+
+    // Returned when the book doesn't know the answer:
+    public static final int NO_ANSWER = -1;
+
+    /**
+     * <p>Where the book comes from.</p>
+     */
+    public interface Source
+    {
+        /**
+         * @return The book file, or null if there isn't one.
+         * @throws IOException
+         */
+        InputStream open() throws IOException;
+    }
+
+    // Where to find the book. Null = no book.
+    private static volatile Source sSource;
+
+    // The one and only instance. Loaded on first use.
+    private static volatile OpeningBook sInstance;
+
+    // The first guess (or NO_ANSWER if there's no book):
+    private final int mFirstGuess;
+
+    // The second guess by feedback class of the first guess:
+    private final int[] mSecondGuesses;
+
+    /**
+     * @param firstGuess    0-9999 or NO_ANSWER
+     * @param secondGuesses One per feedback class (NO_ANSWER = impossible feedback)
+     */
+    public OpeningBook(int firstGuess, int[] secondGuesses)
+    {
+        mFirstGuess = firstGuess;
+        mSecondGuesses = secondGuesses;
+    }
+
+    /**
+     * <p>Tells the book where its file lives. Must be called before the first "getInstance" to
+     * have any effect.</p>
+     *
+     * @param source
+     */
+    public static void setSource(Source source)
+    {
+        sSource = source;
+    }
+
+    /**
+     * <p>Gets the book, loading it on the first call. Never returns null: Without a usable book
+     * file every lookup returns NO_ANSWER.</p>
+     *
+     * @return
+     */
+    public static OpeningBook getInstance()
+    {
+        OpeningBook instance = sInstance;
+
+        if (instance == null)
+        {
+            synchronized (OpeningBook.class)
+            {
+                instance = sInstance;
+
+                if (instance == null)
+                {
+                    instance = loadSource(sSource);
+                    sInstance = instance;
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * <p>Reads the book from its source. Any problem = an empty book.</p>
+     *
+     * @param source
+     * @return
+     */
+    private static OpeningBook loadSource(Source source)
+    {
+        OpeningBook emptyBook =
+                new OpeningBook(NO_ANSWER, new int[FeedbackTable.FEEDBACK_CLASS_COUNT]);
+
+        if (source == null)
+        {
+            return emptyBook;
+        }
+
+        try
+        {
+            InputStream inputStream = source.open();
+
+            if (inputStream == null)
+            {
+                return emptyBook;
+            }
+
+            try
+            {
+                OpeningBook book = read(inputStream);
+                return book != null ? book : emptyBook;
+            }
+            finally
+            {
+                inputStream.close();
+            }
+        }
+
+        // Can't read it? No book.
+        catch (IOException e)
+        {
+            return emptyBook;
+        }
+    }
+
+    /**
+     * @param inputStream
+     * @return The book or null if the header doesn't match.
+     * @throws IOException
+     */
+    public static OpeningBook read(InputStream inputStream) throws IOException
+    {
+        DataInputStream in = new DataInputStream(inputStream);
+
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        {
+            return null;
+        }
+
+        int firstGuess = in.readShort();
+        int[] secondGuesses = new int[FeedbackTable.FEEDBACK_CLASS_COUNT];
+
+        for (int iter = 0; iter < secondGuesses.length; iter++)
+        {
+            secondGuesses[iter] = in.readShort();
+        }
+
+        return new OpeningBook(firstGuess, secondGuesses);
+    }
+
+    /**
+     * @param outputStream
+     * @throws IOException
+     */
+    public void write(OutputStream outputStream) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(outputStream);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeShort(mFirstGuess);
+
+        for (int secondGuess : mSecondGuesses)
+        {
+            out.writeShort(secondGuess);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * <p>Looks up the answer for a position. O(1).</p>
+     *
+     * @param turnsPlayed   Number of guesses made so far
+     * @param firstGuess    The first guess (0-9999); ignored if no turns have been played
+     * @param firstFeedback The encoded feedback the first guess got (see GuessScorer)
+     * @return The guess (0-9999) or NO_ANSWER
+     */
+    public int lookup(int turnsPlayed, int firstGuess, int firstFeedback)
+    {
+        if (turnsPlayed == 0)
+        {
+            return mFirstGuess;
+        }
+
+        // The book only knows what follows its own first guess:
+        if (turnsPlayed == 1 && mFirstGuess != NO_ANSWER && firstGuess == mFirstGuess)
+        {
+            int feedbackClass = FeedbackTable.toFeedbackClass(firstFeedback);
+
+            if (feedbackClass >= 0)
+            {
+                return mSecondGuesses[feedbackClass];
+            }
+        }
+
+        return NO_ANSWER;
+    }
+}
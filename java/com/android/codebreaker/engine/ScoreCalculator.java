@@ -0,0 +1,71 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>The score formula on its own, without the clock. Utilities.calculateScore measures the
+ * duration and calls this; offline tools (the game simulator, the score verifier) call it
+ * directly with simulated or submitted durations so they get exactly the same numbers as the
+ * app.</p>
+ *
+ * <p>"calculateAdjusted" also weighs in how hard the Secret Number was (see DifficultyTable).</p>
+ */
+
+public final class ScoreCalculator
+{
+    // Turns beyond this don't lower the score any further:
+    public static final int MAX_TURNS = 100;
+
+    // Seconds beyond this don't lower the score any further:
+    public static final int MAX_DURATION_IN_SECONDS = 9999;
+
+    /**
+     * Static methods only. No instances needed.
+     */
+    private ScoreCalculator() { }
+
+    /**
+     * <p>A simple algorithm that penalizes "sand-bagging" duration and turns. (ie; The longer
+     * it takes and the more turns it takes equals a lower score.)</p>
+     *
+     * @param turns             Number of turns (at least 1)
+     * @param durationInSeconds How long the game took
+     * @return The score or 0 if "turns" or "durationInSeconds" make no sense.
+     */
+    public static int calculate(int turns, int durationInSeconds)
+    {
+        // Sanity check for passed variables
+        if (turns < 1 || durationInSeconds < 0)
+        {
+            return 0;
+        }
+
+        // Set a cap on the number of turns and the duration
+        turns = Math.min(turns, MAX_TURNS);
+        durationInSeconds = Math.min(durationInSeconds, MAX_DURATION_IN_SECONDS);
+
+        return ((10000 - durationInSeconds) / turns) * 100;
+    }
+
+    /**
+     * <p>The score, scaled by how hard the Secret Number was compared to an average one. (ie;
+     * A code that takes a good player 20% more turns than average is worth 20% more points.)
+     * O(1): Both numbers come straight out of DifficultyTable.</p>
+     *
+     * @param turns             Number of turns (at least 1)
+     * @param durationInSeconds How long the game took
+     * @param expectedTurns     DifficultyTable.getExpectedTurns for the Secret Number
+     * @param meanExpectedTurns DifficultyTable.getMeanExpectedTurns
+     * @return The adjusted score. The plain score if either difficulty is unknown (0).
+     */
+    public static int calculateAdjusted(int turns, int durationInSeconds, int expectedTurns,
+                                        int meanExpectedTurns)
+    {
+        int score = calculate(turns, durationInSeconds);
+
+        if (expectedTurns <= 0 || meanExpectedTurns <= 0)
+        {
+            return score;
+        }
+
+        return (int) ((long) score * expectedTurns / meanExpectedTurns);
+    }
+}
@@ -0,0 +1,377 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>A compact binary record of a whole game: the Secret Number followed by every guess and the
+ * feedback it got. The app sends it along with the score (see SubmitScoresDataRequest) so the
+ * server can replay the game and reject scores that couldn't have happened. (See
+ * tools/TranscriptVerifier.)</p>
+ *
+ * <p>Layout (a big-endian bit stream, zero padded to a whole byte):</p>
+ *
+ * <ul>
+ *     <li>8 bits: Format version;</li>
+ *     <li>14 bits: The Secret Number (0-9999);</li>
+ *     <li>16 bits: Number of turns;</li>
+ *     <li>19 bits per turn: The guess (14 bits, 0-9999) then its encoded feedback (5 bits, see
+ *         GuessScorer).</li>
+ * </ul>
+ *
+ * <p>A typical game (six or seven turns) is about 20 bytes. Transcripts travel as hex strings
+ * (see "toHex"/"fromHex") so they're easy to put in a query string and easy to handle on any
+ * backend.</p>
+ */
+
+public final class TranscriptCodec
+{
+    // The format version (first byte):
+    public static final int VERSION = 1;
+
+    // Field widths in bits:
+    private static final int VERSION_BITS = 8;
+    private static final int CODE_BITS = 14;
+    private static final int TURN_COUNT_BITS = 16;
+    private static final int FEEDBACK_BITS = 5;
+    private static final int HEADER_BITS = VERSION_BITS + CODE_BITS + TURN_COUNT_BITS;
+    private static final int TURN_BITS = CODE_BITS + FEEDBACK_BITS;
+
+    // The most turns a transcript can hold:
+    public static final int MAX_TURNS = (1 << TURN_COUNT_BITS) - 1;
+
+    // "verify" results:
+    public static final int RESULT_VALID = 0;              // A real, finished game
+    public static final int RESULT_MALFORMED = 1;          // Wrong version, length or values
+    public static final int RESULT_WRONG_FEEDBACK = 2;     // A turn's feedback doesn't add up
+    public static final int RESULT_PLAYED_AFTER_WIN = 3;   // Turns after the code was cracked
+    public static final int RESULT_NOT_WON = 4;            // The code was never cracked
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Static methods only (plus the Writer). No instances needed.
+     */
+    private TranscriptCodec() { }
+
+    /**
+     * <p>Records a game as it is played. Turns are kept as packed ints until "toByteArray".</p>
+     */
+    public static final class Writer
+    {
+        // The Secret Number (0-9999):
+        private int mSecret;
+
+        // One int per turn: guess << FEEDBACK_BITS | feedback.
+        private int[] mTurns = new int[16];
+        private int mTurnCount;
+
+        /**
+         * @param secret The Secret Number (0-9999)
+         */
+        public Writer(int secret)
+        {
+            mSecret = secret;
+        }
+
+        /**
+         * <p>For games where the Secret Number is only settled at the end (see
+         * AdversaryEngine).</p>
+         *
+         * @param secret The Secret Number (0-9999)
+         */
+        public void setSecret(int secret)
+        {
+            mSecret = secret;
+        }
+
+        /**
+         * <p>Adds a turn. Turns beyond MAX_TURNS are dropped. (No real game gets there.)</p>
+         *
+         * @param guess    0-9999
+         * @param feedback The encoded feedback (see GuessScorer)
+         */
+        public void append(int guess, int feedback)
+        {
+            if (mTurnCount == MAX_TURNS)
+            {
+                return;
+            }
+
+            if (mTurnCount == mTurns.length)
+            {
+                int[] turns = new int[mTurns.length * 2];
+                System.arraycopy(mTurns, 0, turns, 0, mTurnCount);
+                mTurns = turns;
+            }
+
+            mTurns[mTurnCount++] = guess << FEEDBACK_BITS | feedback;
+        }
+
+        /**
+         * @return Number of turns so far
+         */
+        public int getTurnCount()
+        {
+            return mTurnCount;
+        }
+
+        /**
+         * @return The transcript in its binary form
+         */
+        public byte[] toByteArray()
+        {
+            byte[] bytes = new byte[byteLength(mTurnCount)];
+            int bitOffset = 0;
+
+            bitOffset = writeBits(bytes, bitOffset, VERSION, VERSION_BITS);
+            bitOffset = writeBits(bytes, bitOffset, mSecret, CODE_BITS);
+            bitOffset = writeBits(bytes, bitOffset, mTurnCount, TURN_COUNT_BITS);
+
+            for (int iter = 0; iter < mTurnCount; iter++)
+            {
+                bitOffset = writeBits(bytes, bitOffset, mTurns[iter], TURN_BITS);
+            }
+
+            return bytes;
+        }
+
+        /**
+         * <p>Picks up a game where it was left off. (eg; The activity was recreated.)</p>
+         *
+         * @param bytes From "toByteArray"
+         * @return The writer or null if the bytes aren't a transcript.
+         */
+        public static Writer fromByteArray(byte[] bytes)
+        {
+            if (bytes == null || ! isWellFormed(bytes, bytes.length))
+            {
+                return null;
+            }
+
+            Writer writer = new Writer(getSecret(bytes));
+            int turnCount = TranscriptCodec.getTurnCount(bytes);
+
+            for (int turn = 0; turn < turnCount; turn++)
+            {
+                writer.append(getGuess(bytes, turn), getFeedback(bytes, turn));
+            }
+
+            return writer;
+        }
+    }
+
+    /**
+     * @param turnCount
+     * @return The size in bytes of a transcript with that many turns
+     */
+    public static int byteLength(int turnCount)
+    {
+        return (HEADER_BITS + turnCount * TURN_BITS + 7) >>> 3;
+    }
+
+    /**
+     * <p>Checks the version, the length and that every code/feedback is in range. Doesn't
+     * replay the game (see "verify").</p>
+     *
+     * @param bytes
+     * @param length Number of bytes used
+     * @return
+     */
+    public static boolean isWellFormed(byte[] bytes, int length)
+    {
+        if (length < byteLength(0) || readBits(bytes, 0, VERSION_BITS) != VERSION)
+        {
+            return false;
+        }
+
+        int turnCount = getTurnCount(bytes);
+
+        if (length != byteLength(turnCount) || getSecret(bytes) >= GuessScorer.CODE_COUNT)
+        {
+            return false;
+        }
+
+        // The padding has to be zero. (Catches most damage to the last byte.)
+        int usedBits = HEADER_BITS + turnCount * TURN_BITS;
+        int paddingBits = (length << 3) - usedBits;
+
+        if (paddingBits > 0 && readBits(bytes, usedBits, paddingBits) != 0)
+        {
+            return false;
+        }
+
+        for (int turn = 0; turn < turnCount; turn++)
+        {
+            if (getGuess(bytes, turn) >= GuessScorer.CODE_COUNT ||
+                    getFeedback(bytes, turn) >= GuessScorer.FEEDBACK_RANGE)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>Replays the game: Every feedback has to match the Secret Number, the last turn has to
+     * crack it and no turn before that may. Doesn't allocate anything so a verifier can chew
+     * through millions of these.</p>
+     *
+     * @param bytes
+     * @param length        Number of bytes used
+     * @param feedbackTable Scores the turns
+     * @return One of the RESULT_ constants
+     */
+    public static int verify(byte[] bytes, int length, FeedbackTable feedbackTable)
+    {
+        if ( ! isWellFormed(bytes, length))
+        {
+            return RESULT_MALFORMED;
+        }
+
+        int secret = getSecret(bytes);
+        int turnCount = getTurnCount(bytes);
+
+        for (int turn = 0; turn < turnCount; turn++)
+        {
+            int feedback = getFeedback(bytes, turn);
+
+            if (feedbackTable.score(secret, getGuess(bytes, turn)) != feedback)
+            {
+                return RESULT_WRONG_FEEDBACK;
+            }
+
+            if (GuessScorer.isWin(feedback) && turn != turnCount - 1)
+            {
+                return RESULT_PLAYED_AFTER_WIN;
+            }
+        }
+
+        if (turnCount == 0 || ! GuessScorer.isWin(getFeedback(bytes, turnCount - 1)))
+        {
+            return RESULT_NOT_WON;
+        }
+
+        return RESULT_VALID;
+    }
+
+    /**
+     * @param bytes A well-formed transcript
+     * @return The Secret Number (0-9999)
+     */
+    public static int getSecret(byte[] bytes)
+    {
+        return readBits(bytes, VERSION_BITS, CODE_BITS);
+    }
+
+    /**
+     * @param bytes A well-formed transcript
+     * @return Number of turns
+     */
+    public static int getTurnCount(byte[] bytes)
+    {
+        return readBits(bytes, VERSION_BITS + CODE_BITS, TURN_COUNT_BITS);
+    }
+
+    /**
+     * @param bytes A well-formed transcript
+     * @param turn  0 = the first turn
+     * @return The guess (0-9999)
+     */
+    public static int getGuess(byte[] bytes, int turn)
+    {
+        return readBits(bytes, HEADER_BITS + turn * TURN_BITS, CODE_BITS);
+    }
+
+    /**
+     * @param bytes A well-formed transcript
+     * @param turn  0 = the first turn
+     * @return The encoded feedback (see GuessScorer)
+     */
+    public static int getFeedback(byte[] bytes, int turn)
+    {
+        return readBits(bytes, HEADER_BITS + turn * TURN_BITS + CODE_BITS, FEEDBACK_BITS);
+    }
+
+    /**
+     * @param bytes
+     * @return Lower case hex, two characters per byte
+     */
+    public static String toHex(byte[] bytes)
+    {
+        char[] chars = new char[bytes.length * 2];
+
+        for (int iter = 0; iter < bytes.length; iter++)
+        {
+            chars[iter * 2] = HEX_DIGITS[(bytes[iter] >>> 4) & 0xF];
+            chars[iter * 2 + 1] = HEX_DIGITS[bytes[iter] & 0xF];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * @param hex From "toHex" (either case)
+     * @return The bytes or null if "hex" isn't valid hex.
+     */
+    public static byte[] fromHex(CharSequence hex)
+    {
+        if (hex.length() % 2 != 0)
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[hex.length() / 2];
+
+        for (int iter = 0; iter < bytes.length; iter++)
+        {
+            int high = Character.digit(hex.charAt(iter * 2), 16);
+            int low = Character.digit(hex.charAt(iter * 2 + 1), 16);
+
+            if (high < 0 || low < 0)
+            {
+                return null;
+            }
+
+            bytes[iter] = (byte) (high << 4 | low);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * <p>Writes the low "bitCount" bits of "value", most significant bit first.</p>
+     *
+     * @return The bit offset after the value
+     */
+    private static int writeBits(byte[] bytes, int bitOffset, int value, int bitCount)
+    {
+        for (int bit = bitCount - 1; bit >= 0; bit--, bitOffset++)
+        {
+            if ((value >>> bit & 1) != 0)
+            {
+                bytes[bitOffset >>> 3] |= 0x80 >>> (bitOffset & 7);
+            }
+        }
+
+        return bitOffset;
+    }
+
+    /**
+     * <p>Reads "bitCount" (at most 24) bits, most significant bit first.</p>
+     */
+    private static int readBits(byte[] bytes, int bitOffset, int bitCount)
+    {
+        int firstByte = bitOffset >>> 3;
+        int lastByte = (bitOffset + bitCount - 1) >>> 3;
+        long window = 0;
+
+        // Gather the (up to four) bytes the field touches, then shift it into place:
+        for (int iter = firstByte; iter <= lastByte; iter++)
+        {
+            window = window << 8 | (bytes[iter] & 0xFF);
+        }
+
+        int trailingBits = ((lastByte + 1) << 3) - (bitOffset + bitCount);
+
+        return (int) (window >>> trailingBits) & ((1 << bitCount) - 1);
+    }
+}
@@ -0,0 +1,348 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>The rules of a game variant: how long the code is (1-8 slots) and how many symbols each
+ * slot can hold (2-16). The classic game is 4 slots of 10 digits (see CLASSIC). Harder
+ * difficulty levels use longer codes and/or bigger alphabets.</p>
+ *
+ * <p>This is GuessScorer for any size. The same rules apply: No Android, no allocations, codes
+ * are packed 4 bits per slot with the first slot in the highest used nibble. (ie; The 6 slot
+ * code "1-2-3-4-11-15" is packed as 0x1234BF.) So a CLASSIC packed code is exactly a
+ * GuessScorer packed code, and the feedback encoding matches too: (exact * (length + 1)) +
+ * misplaced.</p>
+ *
+ * <p>Codes can also be numbered 0 to (symbols ^ length) - 1 ("ordinals", the code read as a
+ * base "symbols" number) which is handy for picking random codes and for walking every code.
+ * There can be up to 16^8 (4.3 billion) codes so never put them all in an array: see
+ * VariantCandidateSet.</p>
+ */
+
+import java.util.Random;
+
+public final class Variant
+{
+    // Limits:
+    public static final int MAX_CODE_LENGTH = 8;
+    public static final int MAX_SYMBOL_COUNT = 16;
+
+    // Number of bits used by one slot in a packed code:
+    public static final int BITS_PER_SYMBOL = 4;
+
+    // The original game: Four digits 0-9.
+    public static final Variant CLASSIC =
+            new Variant(GuessScorer.CODE_LENGTH, GuessScorer.DIGIT_COUNT);
+
+    // Mask for a single slot (nibble):
+    private static final int SYMBOL_MASK = 0xF;
+
+    // Byte lane helpers for the symbol counts (see "score"):
+    private static final long LANE_GUARDS = 0x8080808080808080L;
+    private static final long LANE_ONES = 0x0101010101010101L;
+
+    // Slots per code and symbols per slot:
+    private final int mCodeLength;
+    private final int mSymbolCount;
+
+    // symbols ^ length:
+    private final long mCodeCount;
+
+    // The lowest bit of every used nibble. (ie; 0x1111 for four slots.)
+    private final long mSlotLowBits;
+
+    /**
+     * @param codeLength  Slots per code (1-8)
+     * @param symbolCount Symbols per slot (2-16)
+     */
+    public Variant(int codeLength, int symbolCount)
+    {
+        if (codeLength < 1 || codeLength > MAX_CODE_LENGTH ||
+                symbolCount < 2 || symbolCount > MAX_SYMBOL_COUNT)
+        {
+            throw new IllegalArgumentException(
+                    "Unsupported variant: " + codeLength + " x " + symbolCount);
+        }
+
+        mCodeLength = codeLength;
+        mSymbolCount = symbolCount;
+
+        long codeCount = 1;
+
+        for (int iter = 0; iter < codeLength; iter++)
+        {
+            codeCount *= symbolCount;
+        }
+
+        mCodeCount = codeCount;
+        mSlotLowBits = 0x1111111111111111L >>> (64 - codeLength * BITS_PER_SYMBOL);
+    }
+
+    public int getCodeLength() { return mCodeLength; }
+    public int getSymbolCount() { return mSymbolCount; }
+    public long getCodeCount() { return mCodeCount; }
+
+    /**
+     * @return The number of distinct encoded feedback values. Use it to size histograms.
+     */
+    public int getFeedbackRange()
+    {
+        return (mCodeLength + 1) * (mCodeLength + 1);
+    }
+
+    /**
+     * @return The feedback when every slot is correct
+     */
+    public int getFeedbackWin()
+    {
+        return mCodeLength * (mCodeLength + 1);
+    }
+
+    /**
+     * <p>Scores a guess against a Secret Number. Both are packed codes.</p>
+     *
+     * <p>Exact: A slot is correct when its nibble of (secret XOR guess) is zero. Each nibble's
+     * bits are OR-ed down into its lowest bit and the survivors are the wrong slots.</p>
+     *
+     * <p>Misplaced: The symbols both codes have in common (ignoring position) minus the exact
+     * count. Each code's symbol counts are kept in byte "lanes": symbols 0-7 in one long and
+     * 8-15 in another. The per-symbol minimum of the two codes is then taken for all eight lanes
+     * at once (a subtraction with a guard bit per lane tells which side is smaller) and the
+     * lanes are added up with a single multiply.</p>
+     *
+     * @param secret Packed Secret Number
+     * @param guess  Packed guess
+     * @return The encoded feedback: (exact * (length + 1)) + misplaced
+     */
+    public int score(long secret, long guess)
+    {
+        long difference = secret ^ guess;
+        difference |= difference >>> 1;
+        difference |= difference >>> 2;
+
+        int exact = mCodeLength - Long.bitCount(difference & mSlotLowBits);
+
+        long secretLow = 0;
+        long secretHigh = 0;
+        long guessLow = 0;
+        long guessHigh = 0;
+
+        for (int shift = 0; shift < mCodeLength * BITS_PER_SYMBOL; shift += BITS_PER_SYMBOL)
+        {
+            int secretSymbol = (int) (secret >>> shift) & SYMBOL_MASK;
+            int guessSymbol = (int) (guess >>> shift) & SYMBOL_MASK;
+
+            long secretOne = 1L << ((secretSymbol & 7) << 3);
+            long guessOne = 1L << ((guessSymbol & 7) << 3);
+
+            if (secretSymbol < 8)
+            {
+                secretLow += secretOne;
+            }
+            else
+            {
+                secretHigh += secretOne;
+            }
+
+            if (guessSymbol < 8)
+            {
+                guessLow += guessOne;
+            }
+            else
+            {
+                guessHigh += guessOne;
+            }
+        }
+
+        int common = sumOfLanes(minOfLanes(secretLow, guessLow)) +
+                sumOfLanes(minOfLanes(secretHigh, guessHigh));
+
+        return encodeFeedback(exact, common - exact);
+    }
+
+    /**
+     * <p>Per byte minimum. Every lane must be 0-127 (counts are at most 8).</p>
+     */
+    private static long minOfLanes(long a, long b)
+    {
+        // A lane keeps its guard bit when a >= b. Turn that into a 0xFF lane mask:
+        long aIsBigger = (((a | LANE_GUARDS) - b) & LANE_GUARDS) >>> 7;
+        aIsBigger *= 0xFF;
+
+        return (b & aIsBigger) | (a & ~aIsBigger);
+    }
+
+    /**
+     * <p>Adds up all eight byte lanes. The total must fit in a byte.</p>
+     */
+    private static int sumOfLanes(long lanes)
+    {
+        return (int) ((lanes * LANE_ONES) >>> 56);
+    }
+
+    /**
+     * @param exact     Slots correct
+     * @param misplaced Symbols in the code but in the wrong slot
+     * @return The encoded feedback
+     */
+    public int encodeFeedback(int exact, int misplaced)
+    {
+        return exact * (mCodeLength + 1) + misplaced;
+    }
+
+    public int exact(int feedback) { return feedback / (mCodeLength + 1); }
+    public int misplaced(int feedback) { return feedback % (mCodeLength + 1); }
+
+    /**
+     * @param feedback
+     * @return True if every slot is correct
+     */
+    public boolean isWin(int feedback)
+    {
+        return feedback == getFeedbackWin();
+    }
+
+    /**
+     * @param symbols One symbol per slot, first slot first
+     * @return The packed code
+     */
+    public long pack(int[] symbols)
+    {
+        long code = 0;
+
+        for (int iter = 0; iter < mCodeLength; iter++)
+        {
+            code = (code << BITS_PER_SYMBOL) | symbols[iter];
+        }
+
+        return code;
+    }
+
+    /**
+     * @param code    Packed code
+     * @param symbols Filled with one symbol per slot, first slot first
+     */
+    public void unpack(long code, int[] symbols)
+    {
+        for (int iter = mCodeLength - 1; iter >= 0; iter--)
+        {
+            symbols[iter] = (int) code & SYMBOL_MASK;
+            code >>>= BITS_PER_SYMBOL;
+        }
+    }
+
+    /**
+     * @param code     Packed code
+     * @param position 0 = the first slot
+     * @return The symbol in that slot
+     */
+    public int symbolAt(long code, int position)
+    {
+        return (int) (code >>> ((mCodeLength - 1 - position) * BITS_PER_SYMBOL)) & SYMBOL_MASK;
+    }
+
+    /**
+     * @param code
+     * @return True if the code fits this variant (no unused bits set, every symbol in range)
+     */
+    public boolean isValid(long code)
+    {
+        if ((code >>> (mCodeLength * BITS_PER_SYMBOL)) != 0)
+        {
+            return false;
+        }
+
+        for (int iter = 0; iter < mCodeLength; iter++)
+        {
+            if (((code >>> (iter * BITS_PER_SYMBOL)) & SYMBOL_MASK) >= mSymbolCount)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param ordinal 0 to getCodeCount() - 1
+     * @return The packed code
+     */
+    public long fromOrdinal(long ordinal)
+    {
+        long code = 0;
+
+        for (int iter = 0; iter < mCodeLength; iter++)
+        {
+            code |= (ordinal % mSymbolCount) << (iter * BITS_PER_SYMBOL);
+            ordinal /= mSymbolCount;
+        }
+
+        return code;
+    }
+
+    /**
+     * @param code Packed code
+     * @return 0 to getCodeCount() - 1
+     */
+    public long toOrdinal(long code)
+    {
+        long ordinal = 0;
+
+        for (int iter = mCodeLength - 1; iter >= 0; iter--)
+        {
+            ordinal = ordinal * mSymbolCount + ((code >>> (iter * BITS_PER_SYMBOL)) & SYMBOL_MASK);
+        }
+
+        return ordinal;
+    }
+
+    /**
+     * @param random
+     * @return A random packed code. (eg; A new Secret Number.)
+     */
+    public long randomCode(Random random)
+    {
+        long code = 0;
+
+        for (int iter = 0; iter < mCodeLength; iter++)
+        {
+            code = (code << BITS_PER_SYMBOL) | random.nextInt(mSymbolCount);
+        }
+
+        return code;
+    }
+
+    /**
+     * @param code Packed code
+     * @return The code as text, one character (0-9, A-F) per slot
+     */
+    public String format(long code)
+    {
+        char[] chars = new char[mCodeLength];
+
+        for (int iter = 0; iter < mCodeLength; iter++)
+        {
+            chars[iter] = Character.toUpperCase(Character.forDigit(symbolAt(code, iter), 16));
+        }
+
+        return new String(chars);
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        return other instanceof Variant &&
+                ((Variant) other).mCodeLength == mCodeLength &&
+                ((Variant) other).mSymbolCount == mSymbolCount;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return mCodeLength * MAX_SYMBOL_COUNT + mSymbolCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return mCodeLength + "x" + mSymbolCount;
+    }
+}
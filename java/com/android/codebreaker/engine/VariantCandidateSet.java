@@ -0,0 +1,389 @@
+package com.android.codebreaker.engine;
+
+/**
+ * <p>CandidateSet for any Variant: Every Secret Number that is still possible given the guesses
+ * (and their feedback) so far.</p>
+ *
+ * <p>A bit per code works for 10,000 codes but not for 16^8 (half a gigabyte). So this set
+ * starts out "lazy": It only remembers the guesses and their feedback, and the candidates are
+ * generated on demand by a depth-first walk over the slots. The walk gives up on a whole prefix
+ * as soon as any guess rules it out. (eg; The prefix already has more correct slots, or more
+ * symbols in common, than that guess's feedback allows. Or too few slots are left to get
+ * there.) So it only visits a small part of the space.</p>
+ *
+ * <p>After each guess the set tries (on a budget) to list its candidates, and every complete
+ * "forEach" walk remembers what it found. Once there are no more than MATERIALIZE_LIMIT
+ * candidates they're kept in an array from then on (and pruned directly, like CandidateSet).
+ * Until then the set stays lazy.</p>
+ *
+ * <p>Note: This class is not thread safe.</p>
+ */
+
+import java.util.Arrays;
+
+public class VariantCandidateSet
+{
+    // The most candidates kept in memory (512 KB):
+    public static final int MATERIALIZE_LIMIT = 1 << 16;
+
+    // How many symbols a materialize attempt may try before it gives up. (A walk can spend a
+    // long time in dead ends before it finds enough candidates to know there are too many.)
+    private static final long MATERIALIZE_BUDGET = 64L * MATERIALIZE_LIMIT;
+
+    /**
+     * <p>Receives the candidates one at a time. (See "forEach".)</p>
+     */
+    public interface Visitor
+    {
+        /**
+         * @param code A packed candidate
+         * @return False to stop
+         */
+        boolean visit(long code);
+    }
+
+    // The rules:
+    private final Variant mVariant;
+
+    // The guesses so far and their feedback, split into "exact" and "common" (exact +
+    // misplaced) counts:
+    private long[] mGuesses = new long[8];
+    private int[] mExact = new int[8];
+    private int[] mCommon = new int[8];
+    private int mGuessCount;
+
+    // The candidates once there are few enough of them (null until then):
+    private long[] mCodes;
+    private int mCodeCount;
+
+    /**
+     * A new game: Every code is a candidate.
+     *
+     * @param variant
+     */
+    public VariantCandidateSet(Variant variant)
+    {
+        mVariant = variant;
+
+        // Small variants can be listed right away:
+        materialize();
+    }
+
+    public Variant getVariant() { return mVariant; }
+
+    /**
+     * @return True if the candidates are held in memory (ie; "size" is cheap)
+     */
+    public boolean isMaterialized()
+    {
+        return mCodes != null;
+    }
+
+    /**
+     * <p>Removes every candidate that is inconsistent with a guess and its feedback.</p>
+     *
+     * @param guess    Packed guess
+     * @param feedback The encoded feedback the guess received (see Variant)
+     */
+    public void prune(long guess, int feedback)
+    {
+        if (mCodes != null)
+        {
+            int kept = 0;
+
+            for (int iter = 0; iter < mCodeCount; iter++)
+            {
+                if (mVariant.score(mCodes[iter], guess) == feedback)
+                {
+                    mCodes[kept++] = mCodes[iter];
+                }
+            }
+
+            mCodeCount = kept;
+            return;
+        }
+
+        if (mGuessCount == mGuesses.length)
+        {
+            mGuesses = Arrays.copyOf(mGuesses, mGuessCount * 2);
+            mExact = Arrays.copyOf(mExact, mGuessCount * 2);
+            mCommon = Arrays.copyOf(mCommon, mGuessCount * 2);
+        }
+
+        mGuesses[mGuessCount] = guess;
+        mExact[mGuessCount] = mVariant.exact(feedback);
+        mCommon[mGuessCount] = mVariant.exact(feedback) + mVariant.misplaced(feedback);
+        mGuessCount++;
+
+        materialize();
+    }
+
+    /**
+     * <p>Counts the candidates, but stops counting at "limit". Cheap once the set is
+     * materialized; otherwise a walk.</p>
+     *
+     * @param limit
+     * @return min(number of candidates, limit)
+     */
+    public long countUpTo(final long limit)
+    {
+        if (mCodes != null)
+        {
+            return Math.min(mCodeCount, limit);
+        }
+
+        final long[] count = new long[1];
+
+        forEach(new Visitor()
+        {
+            @Override
+            public boolean visit(long code)
+            {
+                return ++count[0] < limit;
+            }
+        });
+
+        return count[0];
+    }
+
+    /**
+     * <p>Hands every candidate (in ascending order) to the visitor until it returns false. If a
+     * lazy set is walked all the way through and turns out to be small enough it's materialized
+     * on the way.</p>
+     *
+     * @param visitor
+     * @return False if the visitor stopped early
+     */
+    public boolean forEach(final Visitor visitor)
+    {
+        if (mCodes != null)
+        {
+            for (int iter = 0; iter < mCodeCount; iter++)
+            {
+                if ( ! visitor.visit(mCodes[iter]))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        // Keep what the walk finds (while there's little enough of it):
+        final long[][] found = { new long[1024] };
+        final int[] foundCount = new int[1];
+
+        boolean isComplete = new Walk(new Visitor()
+        {
+            @Override
+            public boolean visit(long code)
+            {
+                if (found[0] != null)
+                {
+                    if (foundCount[0] == found[0].length)
+                    {
+                        found[0] = found[0].length == MATERIALIZE_LIMIT ?
+                                null : Arrays.copyOf(found[0], found[0].length * 2);
+                    }
+
+                    if (found[0] != null)
+                    {
+                        found[0][foundCount[0]++] = code;
+                    }
+                }
+
+                return visitor.visit(code);
+            }
+        }, Long.MAX_VALUE).visit(0, 0L);
+
+        if (isComplete && found[0] != null)
+        {
+            mCodes = Arrays.copyOf(found[0], foundCount[0]);
+            mCodeCount = foundCount[0];
+        }
+
+        return isComplete;
+    }
+
+    /**
+     * <p>Copies the candidates into "codes". Only for a materialized set.</p>
+     *
+     * @param codes At least "countUpTo(Long.MAX_VALUE)" long
+     * @return The number of candidates copied
+     */
+    public int copyTo(long[] codes)
+    {
+        if (mCodes == null)
+        {
+            throw new IllegalStateException("Too many candidates to copy");
+        }
+
+        System.arraycopy(mCodes, 0, codes, 0, mCodeCount);
+        return mCodeCount;
+    }
+
+    /**
+     * <p>Lists the candidates into an array if there are no more than MATERIALIZE_LIMIT. The
+     * walk stops as soon as there are too many (or it runs out of budget) so this is cheap
+     * either way.</p>
+     */
+    private void materialize()
+    {
+        final long[] codes = new long[MATERIALIZE_LIMIT];
+        final int[] count = new int[1];
+
+        boolean isComplete = new Walk(new Visitor()
+        {
+            @Override
+            public boolean visit(long code)
+            {
+                if (count[0] == codes.length)
+                {
+                    return false;
+                }
+
+                codes[count[0]++] = code;
+                return true;
+            }
+        }, MATERIALIZE_BUDGET).visit(0, 0L);
+
+        if (isComplete)
+        {
+            mCodes = Arrays.copyOf(codes, count[0]);
+            mCodeCount = count[0];
+        }
+    }
+
+    /**
+     * <p>One depth-first walk over the slots, first slot first. For every guess it tracks how
+     * many slots of the prefix are correct and how many symbols the prefix has in common with
+     * the guess so it can tell when a prefix can no longer match the guess's feedback.</p>
+     */
+    private final class Walk
+    {
+        private final Visitor mVisitor;
+
+        // Symbols left to try before the walk gives up:
+        private long mBudget;
+
+        // Per guess: Each slot's symbol, how many of each symbol and what the prefix has.
+        private final int[][] mGuessSymbols;
+        private final int[][] mGuessSymbolCounts;
+        private final int[][] mPrefixSymbolCounts;
+        private final int[] mPrefixExact;
+        private final int[] mPrefixCommon;
+
+        Walk(Visitor visitor, long budget)
+        {
+            mVisitor = visitor;
+            mBudget = budget;
+
+            mGuessSymbols = new int[mGuessCount][mVariant.getCodeLength()];
+            mGuessSymbolCounts = new int[mGuessCount][Variant.MAX_SYMBOL_COUNT];
+            mPrefixSymbolCounts = new int[mGuessCount][Variant.MAX_SYMBOL_COUNT];
+            mPrefixExact = new int[mGuessCount];
+            mPrefixCommon = new int[mGuessCount];
+
+            for (int guess = 0; guess < mGuessCount; guess++)
+            {
+                mVariant.unpack(mGuesses[guess], mGuessSymbols[guess]);
+
+                for (int symbol : mGuessSymbols[guess])
+                {
+                    mGuessSymbolCounts[guess][symbol]++;
+                }
+            }
+        }
+
+        /**
+         * @param position The slot to fill
+         * @param prefix   The slots filled so far (packed, first slot highest)
+         * @return False if the visitor stopped the walk (or the budget ran out)
+         */
+        boolean visit(int position, long prefix)
+        {
+            int codeLength = mVariant.getCodeLength();
+
+            if (position == codeLength)
+            {
+                return mVisitor.visit(prefix);
+            }
+
+            // Slots left after this one:
+            int remaining = codeLength - position - 1;
+
+            for (int symbol = 0; symbol < mVariant.getSymbolCount(); symbol++)
+            {
+                if (--mBudget < 0)
+                {
+                    return false;
+                }
+
+                if ( ! isPossible(position, symbol, remaining))
+                {
+                    continue;
+                }
+
+                // Add the symbol to every guess's counts, go deeper, then take it back out:
+                for (int guess = 0; guess < mGuessCount; guess++)
+                {
+                    if (mGuessSymbols[guess][position] == symbol)
+                    {
+                        mPrefixExact[guess]++;
+                    }
+
+                    if (mPrefixSymbolCounts[guess][symbol]++ < mGuessSymbolCounts[guess][symbol])
+                    {
+                        mPrefixCommon[guess]++;
+                    }
+                }
+
+                boolean isFinished = ! visit(position + 1,
+                        (prefix << Variant.BITS_PER_SYMBOL) | symbol);
+
+                for (int guess = 0; guess < mGuessCount; guess++)
+                {
+                    if (mGuessSymbols[guess][position] == symbol)
+                    {
+                        mPrefixExact[guess]--;
+                    }
+
+                    if (--mPrefixSymbolCounts[guess][symbol] < mGuessSymbolCounts[guess][symbol])
+                    {
+                        mPrefixCommon[guess]--;
+                    }
+                }
+
+                if (isFinished)
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * @return False if putting "symbol" in "position" rules the prefix out for any guess
+         */
+        private boolean isPossible(int position, int symbol, int remaining)
+        {
+            for (int guess = 0; guess < mGuessCount; guess++)
+            {
+                int exact = mPrefixExact[guess] +
+                        (mGuessSymbols[guess][position] == symbol ? 1 : 0);
+                int common = mPrefixCommon[guess] +
+                        (mPrefixSymbolCounts[guess][symbol] < mGuessSymbolCounts[guess][symbol] ?
+                                1 : 0);
+
+                if (exact > mExact[guess] || exact + remaining < mExact[guess] ||
+                        common > mCommon[guess] || common + remaining < mCommon[guess])
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
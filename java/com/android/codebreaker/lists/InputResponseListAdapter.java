@@ -4,9 +4,8 @@ package com.android.codebreaker.lists;
  * <p>The meld between the list components in each row and their data. (eg; The "glue" that binds
  * the components to the data).</p>
  *
- * <p>This approach (an array list adapter class that extends ArrayAdapter) is rather pedestrian.
- * Get the data (in our case from a server database), override the baseclass "getView()" method to
- * build out a row then populate that row with data.</p>
+ * <p>The rows come straight out of a TurnHistory (packed ints, newest on top). Nothing is
+ * formatted until "getView()" builds out a row and populates it with data.</p>
  */
 
 import android.app.Activity;
@@ -15,15 +14,14 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.android.codebreaker.R;
+import com.android.codebreaker.engine.GuessScorer;
 
-import java.util.List;
-
-public class InputResponseListAdapter extends ArrayAdapter<InputResponseListRowData>
+public class InputResponseListAdapter extends BaseAdapter
 {
     // Used in Logs
     private final String TAG = this.getClass().getSimpleName();
@@ -35,21 +33,41 @@ public class InputResponseListAdapter extends ArrayAdapter<InputResponseListRowD
     int mLayoutResourceId;
 
     // All of the data necessary to build the list (by row):
-    List<InputResponseListRowData> mData = null;
+    TurnHistory mData = null;
 
     public InputResponseListAdapter(
             Context context,
             int layoutResourceId,
-            List<InputResponseListRowData> data)
+            TurnHistory data)
     {
-        super(context, layoutResourceId, data);
-
         // Class variable assignments:
         mLayoutResourceId = layoutResourceId;
         mContext = context;
         mData = data;
     }
 
+    @Override
+    public int getCount()
+    {
+        return mData.size();
+    }
+
+    /**
+     * @param position 0 = the top row
+     * @return The packed row (see TurnHistory)
+     */
+    @Override
+    public Object getItem(int position)
+    {
+        return mData.getFromTop(position);
+    }
+
+    @Override
+    public long getItemId(int position)
+    {
+        return position;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -109,18 +127,89 @@ public class InputResponseListAdapter extends ArrayAdapter<InputResponseListRowD
         Log.i(TAG, "getView(): Populating the row with data.");
 
         // And finally, populate the various row "container" components with data:
-        InputResponseListRowData inputResponseListRowData = mData.get(position);
-        inputResponseListRowComponents.txtTurn.setText(inputResponseListRowData.turn);
-        inputResponseListRowComponents.txtResponse.setText(inputResponseListRowData.response);
-        inputResponseListRowComponents.imgIcon1.setImageResource(inputResponseListRowData.icon1);
-        inputResponseListRowComponents.imgIcon2.setImageResource(inputResponseListRowData.icon2);
-        inputResponseListRowComponents.imgIcon3.setImageResource(inputResponseListRowData.icon3);
-        inputResponseListRowComponents.imgIcon4.setImageResource(inputResponseListRowData.icon4);
+        int row = mData.getFromTop(position);
+        int feedback = TurnHistory.getFeedback(row);
+
+        inputResponseListRowComponents.txtTurn.setText(
+                formatTurn(TurnHistory.getTurn(row), TurnHistory.getSecret(row)));
+        inputResponseListRowComponents.txtResponse.setText(
+                formatGuess(TurnHistory.getGuessIndex(row)));
+        inputResponseListRowComponents.imgIcon1.setImageResource(getColoredBall(feedback, 0));
+        inputResponseListRowComponents.imgIcon2.setImageResource(getColoredBall(feedback, 1));
+        inputResponseListRowComponents.imgIcon3.setImageResource(getColoredBall(feedback, 2));
+        inputResponseListRowComponents.imgIcon4.setImageResource(getColoredBall(feedback, 3));
 
         // The row is now ready so return it:
         return convertView;
     }
 
+    /**
+     * <p>The turn number. In multi-secret mode it's followed by the Secret Number's letter (ie;
+     * "3B" is turn three against the second Secret Number).</p>
+     *
+     * @param turn
+     * @param secret Which Secret Number or TurnHistory.SINGLE_SECRET
+     * @return
+     */
+    static String formatTurn(int turn, int secret)
+    {
+        if (secret == TurnHistory.SINGLE_SECRET)
+        {
+            return Integer.toString(turn);
+        }
+
+        return Integer.toString(turn) + (char) ('A' + secret);
+    }
+
+    /**
+     * <p>Formats a code the way the list shows it. (ie; "[1, 2, 3, 4]")</p>
+     *
+     * @param codeIndex 0-9999
+     * @return
+     */
+    static String formatGuess(int codeIndex)
+    {
+        int code = GuessScorer.fromIndex(codeIndex);
+        StringBuilder stringBuilder = new StringBuilder("[");
+
+        for (int iter = 0; iter < GuessScorer.CODE_LENGTH; iter++)
+        {
+            if (iter > 0)
+            {
+                stringBuilder.append(", ");
+            }
+
+            stringBuilder.append(GuessScorer.digitAt(code, iter));
+        }
+
+        return stringBuilder.append("]").toString();
+    }
+
+    /**
+     * <p>The ball for one of the four slots of a row: Green balls first, then Gray balls, then
+     * Black (no hit) balls.</p>
+     *
+     * @param feedback The encoded feedback (see GuessScorer)
+     * @param slot     0-3
+     * @return The drawable resource id
+     */
+    static int getColoredBall(int feedback, int slot)
+    {
+        int greenBalls = GuessScorer.exact(feedback);
+
+        if (slot < greenBalls)
+        {
+            return R.drawable.green;
+        }
+
+        if (slot < greenBalls + GuessScorer.misplaced(feedback))
+        {
+            return R.drawable.grey;
+        }
+
+        return R.drawable.black;
+    }
+
     /**
      * <p>A row "container" of the ListView's "row" UI components: Two textfields and four
      * images.</p>
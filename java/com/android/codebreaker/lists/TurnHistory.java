@@ -0,0 +1,133 @@
+package com.android.codebreaker.lists;
+
+/**
+ * <p>Every row of the guess/response list, oldest first, packed into a single int array. A row
+ * is one int:</p>
+ *
+ * <ul>
+ *     <li>Bits 0-13: The guess (0-9999);</li>
+ *     <li>Bits 14-17: Its feedback class (see FeedbackTable);</li>
+ *     <li>Bits 18-21: Which Secret Number the feedback is for, plus one (0 = SINGLE_SECRET);</li>
+ *     <li>Bits 22-31: The turn.</li>
+ * </ul>
+ *
+ * <p>Rows are only ever appended, so a guess costs an array write (not shifting every older row
+ * down the list) and the whole history is saved and restored as one int array. The list shows
+ * the newest row on top: "getFromTop" reads the array backwards. The adapter only turns a row
+ * into text and colored balls when it is shown.</p>
+ *
+ * <p>Note: This class is not thread safe.</p>
+ */
+
+import com.android.codebreaker.engine.FeedbackTable;
+
+import java.util.Arrays;
+
+public class TurnHistory
+{
+    // "secret" for games with a single Secret Number:
+    public static final int SINGLE_SECRET = -1;
+
+    // Multi-secret mode: The most Secret Numbers a row can tell apart.
+    public static final int MAX_SECRET_COUNT = 15;
+
+    // Turns after this one are all listed as this one:
+    public static final int MAX_TURN = 1023;
+
+    // Bit layout of a row (see above):
+    private static final int GUESS_BITS = 14;
+    private static final int FEEDBACK_CLASS_SHIFT = 14;
+    private static final int SECRET_SHIFT = 18;
+    private static final int TURN_SHIFT = 22;
+    private static final int FIELD_MASK = 0xF;
+
+    // The rows, oldest first:
+    private int[] mRows;
+    private int mRowCount;
+
+    /**
+     * A new game: No rows yet.
+     */
+    public TurnHistory()
+    {
+        mRows = new int[16];
+    }
+
+    /**
+     * <p>Picks up where "toIntArray" left off.</p>
+     *
+     * @param rows What "toIntArray" returned. Null = no rows.
+     */
+    public TurnHistory(int[] rows)
+    {
+        mRows = rows != null && rows.length > 0 ? rows : new int[16];
+        mRowCount = rows != null ? rows.length : 0;
+    }
+
+    /**
+     * <p>Adds a row. It goes on top of the list.</p>
+     *
+     * @param turn
+     * @param guessIndex The guess (0-9999)
+     * @param feedback   The encoded feedback (see GuessScorer)
+     * @param secret     Which Secret Number (0 to MAX_SECRET_COUNT - 1) or SINGLE_SECRET
+     */
+    public void add(int turn, int guessIndex, int feedback, int secret)
+    {
+        if (mRowCount == mRows.length)
+        {
+            mRows = Arrays.copyOf(mRows, mRowCount * 2);
+        }
+
+        mRows[mRowCount++] = guessIndex |
+                FeedbackTable.toFeedbackClass(feedback) << FEEDBACK_CLASS_SHIFT |
+                (secret + 1) << SECRET_SHIFT |
+                Math.min(turn, MAX_TURN) << TURN_SHIFT;
+    }
+
+    /**
+     * @return The number of rows
+     */
+    public int size()
+    {
+        return mRowCount;
+    }
+
+    /**
+     * @param position 0 = the top of the list (the newest row)
+     * @return The packed row. Take it apart with the static getters below.
+     */
+    public int getFromTop(int position)
+    {
+        return mRows[mRowCount - 1 - position];
+    }
+
+    /**
+     * @return A copy of the rows, for onSaveInstanceState
+     */
+    public int[] toIntArray()
+    {
+        return Arrays.copyOf(mRows, mRowCount);
+    }
+
+    public static int getTurn(int row) { return row >>> TURN_SHIFT; }
+    public static int getGuessIndex(int row) { return row & ((1 << GUESS_BITS) - 1); }
+
+    /**
+     * @param row
+     * @return The encoded feedback (see GuessScorer)
+     */
+    public static int getFeedback(int row)
+    {
+        return FeedbackTable.fromFeedbackClass((row >>> FEEDBACK_CLASS_SHIFT) & FIELD_MASK);
+    }
+
+    /**
+     * @param row
+     * @return Which Secret Number or SINGLE_SECRET
+     */
+    public static int getSecret(int row)
+    {
+        return ((row >>> SECRET_SHIFT) & FIELD_MASK) - 1;
+    }
+}
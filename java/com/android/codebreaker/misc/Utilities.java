@@ -5,22 +5,34 @@ package com.android.codebreaker.misc;
  */
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.util.Log;
 import android.widget.Toast;
 
 import com.android.codebreaker.R;
+import com.android.codebreaker.engine.DifficultyTable;
+import com.android.codebreaker.engine.FeedbackTable;
+import com.android.codebreaker.engine.OpeningBook;
+import com.android.codebreaker.engine.ScoreCalculator;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 public class Utilities
 {
     /**
      * Calculates the final score that will be displayed in the UI and stored in the Database.
-     * This algorithm rewards speed and low number of turns.
+     * This algorithm rewards speed and low number of turns. The formula itself lives in
+     * engine/ScoreCalculator so offline tools can use it without a clock.
      *
-     * @param strTurns
-     * @param intStartTime
-     * @return String
+     * @param turns
+     * @param startTime
+     * @return int
      */
     public static int calculateScore(int turns, long startTime)
     {
@@ -33,21 +45,7 @@ public class Utilities
         // Get the duration of time since starting
         int duration = (int) (long) ((System.currentTimeMillis() - startTime) / 1000);
 
-        // Set a cap on the number of turns
-        if (turns > 100)
-        {
-            turns = 100;
-        }
-
-        // Set a cap on the duration
-        if (duration > 9999)
-        {
-            duration = 9999;
-        }
-
-        // A simple algorithm that penalizes "sand-bagging" duration and turns. (ie; The longer
-        // it takes and the more turns it takes equals a lower score.)
-        return ((10000 - duration) / turns) * 100;
+        return ScoreCalculator.calculate(turns, duration);
 
         // Converts/Returns the score in the desired format. (ie; 100000 will be returned
         // as "100,000".)
@@ -104,16 +102,8 @@ public class Utilities
      */
     public static boolean isUserConnectedToInternet(Context context)
     {
-        // The gateway to the device's wifi/network interface:
-        ConnectivityManager cm =
-                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-
-        // Get all information about an active network:
-        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-
         // Is there an active network?
-        boolean isConnectedToNetwork =
-                (activeNetwork != null && activeNetwork.isConnectedOrConnecting());
+        boolean isConnectedToNetwork = isNetworkAvailable(context);
 
         // No active network so send the disconnected state message to the user:
         if ( ! isConnectedToNetwork)
@@ -126,4 +116,105 @@ public class Utilities
 
         return isConnectedToNetwork;
     }
+
+    /**
+     * <p>Same as "isUserConnectedToInternet" but nothing is shown to the user. (eg; For work
+     * done in the background.)</p>
+     *
+     * @param context
+     * @return boolean - true if connected; otherwise false
+     */
+    public static boolean isNetworkAvailable(Context context)
+    {
+        // The gateway to the device's wifi/network interface:
+        ConnectivityManager cm =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        // Get all information about an active network:
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+
+        return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+    }
+
+    /**
+     * <p>Points the feedback table (see engine/FeedbackTable) at the "feedback_table.bin" asset.
+     * Nothing is opened here; the asset is memory-mapped the first time the table is used. If
+     * the asset isn't in the APK the table simply computes feedback instead.</p>
+     *
+     * <p>Note: The asset must be stored uncompressed or "openFd" will fail.</p>
+     *
+     * @param context
+     */
+    public static void installFeedbackTable(Context context)
+    {
+        // Don't hold on to an Activity:
+        final Context applicationContext = context.getApplicationContext();
+
+        FeedbackTable.setSource(new FeedbackTable.Source()
+        {
+            @Override
+            public ByteBuffer map() throws IOException
+            {
+                AssetFileDescriptor assetFileDescriptor =
+                        applicationContext.getAssets().openFd(FeedbackTable.ASSET_NAME);
+
+                // The mapping stays valid after the descriptor is closed.
+                try
+                {
+                    FileInputStream inputStream = assetFileDescriptor.createInputStream();
+
+                    return inputStream.getChannel().map(
+                            FileChannel.MapMode.READ_ONLY,
+                            assetFileDescriptor.getStartOffset(),
+                            assetFileDescriptor.getLength());
+                }
+                finally
+                {
+                    assetFileDescriptor.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * <p>Points the opening book (see engine/OpeningBook) at the "opening_book.bin" asset. It's
+     * read the first time the book is used.</p>
+     *
+     * @param context
+     */
+    public static void installOpeningBook(Context context)
+    {
+        // Don't hold on to an Activity:
+        final Context applicationContext = context.getApplicationContext();
+
+        OpeningBook.setSource(new OpeningBook.Source()
+        {
+            @Override
+            public InputStream open() throws IOException
+            {
+                return applicationContext.getAssets().open(OpeningBook.ASSET_NAME);
+            }
+        });
+    }
+
+    /**
+     * <p>Points the difficulty table (see engine/DifficultyTable) at the "difficulty_table.bin"
+     * asset. It's read the first time a score is adjusted.</p>
+     *
+     * @param context
+     */
+    public static void installDifficultyTable(Context context)
+    {
+        // Don't hold on to an Activity:
+        final Context applicationContext = context.getApplicationContext();
+
+        DifficultyTable.setSource(new DifficultyTable.Source()
+        {
+            @Override
+            public InputStream open() throws IOException
+            {
+                return applicationContext.getAssets().open(DifficultyTable.ASSET_NAME);
+            }
+        });
+    }
 }
@@ -0,0 +1,264 @@
+package com.android.codebreaker.tools;
+
+/**
+ * <p>An offline (command line) tool that writes the difficulty table used by
+ * engine/DifficultyTable. It isn't used by the app at runtime.</p>
+ *
+ * <p>Every one of the 10,000 Secret Numbers is played by a simulated player (see GameSimulator)
+ * and the average number of turns is stored, in sixteenths of a turn. The result is 10 KB and
+ * goes in the app's "assets" folder as "difficulty_table.bin".</p>
+ *
+ * <p>The average is taken over every code with the same repeat pattern (see "patternOf"), so
+ * the table really holds 5 values. Swapping the digits or positions of a code around doesn't
+ * make it any easier or harder, so the codes of one pattern are the same code relabeled.
+ * Averaging over all of them is the same as averaging over every relabeling. For a
+ * deterministic player like "minimax" it stops one code from counting as the easiest there is
+ * just because it's the player's fixed opening guess, and for a random one it removes the
+ * per-code noise.</p>
+ *
+ * <p>Usage: java com.android.codebreaker.tools.DifficultyTableGenerator [strategy]
+ * [games per code] [output file] [seed] [feedback table file]</p>
+ *
+ * <ul>
+ *     <li>strategy: See GameSimulator. Default "minimax" (the app's own computer player, the
+ *         best play it knows);</li>
+ *     <li>games per code: Default 1 for "minimax" (it never guesses at random), 1,000
+ *         otherwise;</li>
+ *     <li>seed: Same seed = same table. Each code gets its own random number generator (seeded
+ *         from this and the code) so the number of cores doesn't change the result. Default
+ *         42.</li>
+ * </ul>
+ *
+ * <p>Like GameSimulator, "minimax" uses "assets/opening_book.bin" when it's there.</p>
+ *
+ * <p>The codes are split into one range per core. Each worker writes only its own part of the
+ * turn totals so there's nothing to lock; they're added up by pattern at the end.</p>
+ *
+ * <p>Note: The feedback table is optional but makes this a lot faster.</p>
+ */
+
+import com.android.codebreaker.engine.DifficultyTable;
+import com.android.codebreaker.engine.FeedbackTable;
+import com.android.codebreaker.engine.GuessScorer;
+import com.android.codebreaker.engine.MinimaxSolver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class DifficultyTableGenerator
+{
+    // Repeat patterns (see "patternOf"):
+    static final int PATTERN_COUNT = 5;
+
+    private static final String[] PATTERN_NAMES = {"ABCD", "AABC", "AABB", "AAAB", "AAAA"};
+
+    /**
+     * <p>Plays the codes in [from, to) and fills in their part of the turn totals.</p>
+     */
+    static final class Worker implements Callable<Void>
+    {
+        private final GameSimulator.Strategy mStrategy;
+        private final long mSeed;
+        private final int mGamesPerCode;
+        private final int mFrom;
+        private final int mTo;
+        private final long[] mTotalTurns;
+
+        Worker(GameSimulator.Strategy strategy, long seed, int gamesPerCode, int from, int to,
+               long[] totalTurns)
+        {
+            mStrategy = strategy;
+            mSeed = seed;
+            mGamesPerCode = gamesPerCode;
+            mFrom = from;
+            mTo = to;
+            mTotalTurns = totalTurns;
+        }
+
+        @Override
+        public Void call()
+        {
+            int[] candidates = new int[GuessScorer.CODE_COUNT];
+
+            for (int secret = mFrom; secret < mTo; secret++)
+            {
+                Random random = new Random(mSeed * GuessScorer.CODE_COUNT + secret);
+                long totalTurns = 0;
+
+                for (int game = 0; game < mGamesPerCode; game++)
+                {
+                    totalTurns += GameSimulator.playGame(mStrategy, secret, candidates, random);
+                }
+
+                mTotalTurns[secret] = totalTurns;
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * <p>How the digits of a code repeat: 0 = ABCD (no repeats), 1 = AABC (one pair), 2 = AABB
+     * (two pairs), 3 = AAAB (three of a kind), 4 = AAAA.</p>
+     *
+     * @param code 0-9999
+     * @return 0 to PATTERN_COUNT - 1
+     */
+    static int patternOf(int code)
+    {
+        int[] digitCounts = new int[10];
+        int pairs = 0;
+        int most = 0;
+
+        for (int position = 0; position < 4; position++)
+        {
+            int count = ++digitCounts[code % 10];
+
+            if (count == 2)
+            {
+                pairs++;
+            }
+
+            most = Math.max(most, count);
+            code /= 10;
+        }
+
+        return most >= 3 ? most : pairs;
+    }
+
+    /**
+     * @param args [strategy] [games per code] [output file] [seed] [feedback table file]
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String strategyName = args.length > 0 ? args[0] : "minimax";
+        int gamesPerCode = args.length > 1 ?
+                Integer.parseInt(args[1]) : (strategyName.equals("minimax") ? 1 : 1000);
+        String fileName = args.length > 2 ? args[2] : DifficultyTable.ASSET_NAME;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        if (args.length > 4)
+        {
+            FeedbackTable.setSource(FeedbackTable.fileSource(new File(args[4])));
+        }
+
+        GameSimulator.installOpeningBook(GameSimulator.OPENING_BOOK_FILE);
+
+        int workerCount = Runtime.getRuntime().availableProcessors();
+        MinimaxSolver solver = strategyName.equals("minimax") ? new MinimaxSolver() : null;
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+
+        long startTime = System.currentTimeMillis();
+        long[] totalTurns = new long[GuessScorer.CODE_COUNT];
+
+        try
+        {
+            Future<?>[] futures = new Future<?>[workerCount];
+
+            for (int iter = 0; iter < workerCount; iter++)
+            {
+                int from = (int) ((long) GuessScorer.CODE_COUNT * iter / workerCount);
+                int to = (int) ((long) GuessScorer.CODE_COUNT * (iter + 1) / workerCount);
+
+                futures[iter] = executor.submit(new Worker(
+                        GameSimulator.newStrategy(strategyName, solver), seed, gamesPerCode,
+                        from, to, totalTurns));
+            }
+
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+
+            if (solver != null)
+            {
+                solver.shutdown();
+            }
+        }
+
+        // Add the turns up by pattern:
+        long[] patternTurns = new long[PATTERN_COUNT];
+        long[] patternGames = new long[PATTERN_COUNT];
+
+        for (int secret = 0; secret < GuessScorer.CODE_COUNT; secret++)
+        {
+            int pattern = patternOf(secret);
+
+            patternTurns[pattern] += totalTurns[secret];
+            patternGames[pattern] += gamesPerCode;
+        }
+
+        // Average, rounded to the nearest TURN_SCALE step:
+        int[] patternExpectedTurns = new int[PATTERN_COUNT];
+
+        System.out.println(String.format("Strategy: %s, games per code: %d, seed: %d",
+                strategyName, gamesPerCode, seed));
+
+        for (int pattern = 0; pattern < PATTERN_COUNT; pattern++)
+        {
+            long scaled = (patternTurns[pattern] * DifficultyTable.TURN_SCALE +
+                    patternGames[pattern] / 2) / patternGames[pattern];
+
+            patternExpectedTurns[pattern] =
+                    (int) Math.min(scaled, DifficultyTable.MAX_EXPECTED_TURNS);
+
+            System.out.println(String.format("  %s: %5d codes, %.3f turns (stored %.4f)",
+                    PATTERN_NAMES[pattern], patternGames[pattern] / gamesPerCode,
+                    (double) patternTurns[pattern] / patternGames[pattern],
+                    toTurns(patternExpectedTurns[pattern])));
+        }
+
+        byte[] expectedTurns = new byte[GuessScorer.CODE_COUNT];
+
+        for (int secret = 0; secret < GuessScorer.CODE_COUNT; secret++)
+        {
+            expectedTurns[secret] = (byte) patternExpectedTurns[patternOf(secret)];
+        }
+
+        DifficultyTable table = new DifficultyTable(expectedTurns);
+        writeTable(table, fileName);
+
+        System.out.println(String.format("Mean %.3f turns", toTurns(table.getMeanExpectedTurns())));
+        System.out.println("Wrote " + fileName + " in " +
+                (System.currentTimeMillis() - startTime) + " ms.");
+    }
+
+    /**
+     * @param table
+     * @param fileName
+     * @throws IOException
+     */
+    private static void writeTable(DifficultyTable table, String fileName) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(fileName);
+
+        try
+        {
+            table.write(out);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * @param scaled In DifficultyTable.TURN_SCALE units
+     * @return Turns
+     */
+    private static double toTurns(int scaled)
+    {
+        return (double) scaled / DifficultyTable.TURN_SCALE;
+    }
+}
@@ -0,0 +1,79 @@
+package com.android.codebreaker.tools;
+
+/**
+ * <p>An offline (command line) tool that writes the feedback table used by
+ * engine/FeedbackTable. It isn't used by the app at runtime.</p>
+ *
+ * <p>Usage: java com.android.codebreaker.tools.FeedbackTableGenerator [output file]</p>
+ *
+ * <p>The output (about 50 MB) goes in the app's "assets" folder as "feedback_table.bin". Note:
+ * The asset must be stored uncompressed in the APK or it can't be memory-mapped. (ie; Add "bin"
+ * to aaptOptions.noCompress in the build file.)</p>
+ */
+
+import com.android.codebreaker.engine.FeedbackTable;
+import com.android.codebreaker.engine.GuessScorer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class FeedbackTableGenerator
+{
+    /**
+     * @param args [output file] - defaults to "feedback_table.bin" in the working directory.
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : FeedbackTable.ASSET_NAME;
+
+        long startTime = System.currentTimeMillis();
+
+        // Index -> packed code so we don't convert in the inner loop:
+        int[] packedCodes = new int[GuessScorer.CODE_COUNT];
+
+        for (int index = 0; index < GuessScorer.CODE_COUNT; index++)
+        {
+            packedCodes[index] = GuessScorer.fromIndex(index);
+        }
+
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+
+        try
+        {
+            // The header:
+            out.writeInt(FeedbackTable.MAGIC);
+            out.writeInt(FeedbackTable.VERSION);
+
+            // One row (10,000 nibbles) per Secret Number:
+            byte[] row = new byte[GuessScorer.CODE_COUNT / 2];
+
+            for (int secretIndex = 0; secretIndex < GuessScorer.CODE_COUNT; secretIndex++)
+            {
+                int secret = packedCodes[secretIndex];
+
+                for (int guessIndex = 0; guessIndex < GuessScorer.CODE_COUNT; guessIndex += 2)
+                {
+                    int low = FeedbackTable.toFeedbackClass(
+                            GuessScorer.score(secret, packedCodes[guessIndex]));
+                    int high = FeedbackTable.toFeedbackClass(
+                            GuessScorer.score(secret, packedCodes[guessIndex + 1]));
+
+                    row[guessIndex >>> 1] = (byte) (low | (high << 4));
+                }
+
+                out.write(row);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        System.out.println("Wrote " + fileName + " in " +
+                (System.currentTimeMillis() - startTime) + " ms.");
+    }
+}
@@ -0,0 +1,473 @@
+package com.android.codebreaker.tools;
+
+/**
+ * <p>An offline (command line) tool that plays lots of complete games with a computer player
+ * and reports how the turns and scores are distributed. The point is to calibrate the score
+ * formula (see engine/ScoreCalculator, used by Utilities.calculateScore) and the turn cap: Do
+ * they spread players out sensibly?</p>
+ *
+ * <p>Usage: java com.android.codebreaker.tools.GameSimulator [strategy] [games]
+ * [seconds per turn] [seed] [feedback table file]</p>
+ *
+ * <ul>
+ *     <li>strategy: "random" (a random code that is still possible), "greedy" (the possible
+ *         code that splits the rest into the most groups) or "minimax" (engine/MinimaxSolver).
+ *         Default "random";</li>
+ *     <li>games: Default 1,000,000;</li>
+ *     <li>seconds per turn: The average "thinking" time of the simulated player. Each turn's
+ *         time is random (exponential) around it. Default 8;</li>
+ *     <li>seed: Same seed = same report. Default 42.</li>
+ * </ul>
+ *
+ * <p>"minimax" reads the opening book from "assets/opening_book.bin" when it's run from the
+ * project folder. (It gets the same answers without it, just a lot slower.)</p>
+ *
+ * <p>The games are split across one worker thread per core. Each worker has its own random
+ * number generator (seeded from the master seed) and its own histograms so the workers never
+ * contend; the histograms are added up at the end.</p>
+ */
+
+import com.android.codebreaker.engine.FeedbackTable;
+import com.android.codebreaker.engine.GuessScorer;
+import com.android.codebreaker.engine.MinimaxSolver;
+import com.android.codebreaker.engine.OpeningBook;
+import com.android.codebreaker.engine.ScoreCalculator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class GameSimulator
+{
+    // Score histogram bucket width:
+    private static final int SCORE_BUCKET_WIDTH = 10000;
+
+    // The highest possible score (one turn, zero seconds):
+    private static final int MAX_SCORE = ScoreCalculator.calculate(1, 0);
+
+    // Where the opening book lives, relative to the project folder:
+    static final File OPENING_BOOK_FILE = new File("assets", OpeningBook.ASSET_NAME);
+
+    /**
+     * <p>A simulated player. One instance per worker thread so implementations can keep
+     * scratch buffers.</p>
+     */
+    public interface Strategy
+    {
+        /**
+         * @param candidates     Remaining candidates (code indices)
+         * @param candidateCount How many entries of "candidates" are used
+         * @param turnsPlayed    Guesses made so far
+         * @param firstGuess     The first guess (once there is one)
+         * @param firstFeedback  Its feedback
+         * @param usedDigits     Every digit guessed so far (see MinimaxSolver.digitMask)
+         * @param random         The worker's random number generator
+         * @return The next guess (0-9999)
+         */
+        int nextGuess(int[] candidates,
+                      int candidateCount,
+                      int turnsPlayed,
+                      int firstGuess,
+                      int firstFeedback,
+                      int usedDigits,
+                      Random random);
+    }
+
+    /**
+     * <p>Plays a random code that is still possible. The "lucky amateur".</p>
+     */
+    static final class RandomConsistentStrategy implements Strategy
+    {
+        @Override
+        public int nextGuess(int[] candidates, int candidateCount, int turnsPlayed,
+                             int firstGuess, int firstFeedback, int usedDigits, Random random)
+        {
+            return candidates[random.nextInt(candidateCount)];
+        }
+    }
+
+    /**
+     * <p>Samples a handful of possible codes and plays the one that splits the remaining
+     * candidates into the most feedback groups. The "good player".</p>
+     */
+    static final class GreedyStrategy implements Strategy
+    {
+        // How many possible codes are considered each turn:
+        private static final int SAMPLE_SIZE = 64;
+
+        private final boolean[] mSeenGroups = new boolean[FeedbackTable.FEEDBACK_CLASS_COUNT];
+
+        @Override
+        public int nextGuess(int[] candidates, int candidateCount, int turnsPlayed,
+                             int firstGuess, int firstFeedback, int usedDigits, Random random)
+        {
+            FeedbackTable feedbackTable = FeedbackTable.getInstance();
+
+            int bestGuess = candidates[0];
+            int bestGroups = 0;
+            int samples = Math.min(SAMPLE_SIZE, candidateCount);
+
+            for (int sample = 0; sample < samples; sample++)
+            {
+                int guess = candidateCount <= SAMPLE_SIZE ?
+                        candidates[sample] : candidates[random.nextInt(candidateCount)];
+
+                int groups = 0;
+
+                for (int iter = 0; iter < mSeenGroups.length; iter++)
+                {
+                    mSeenGroups[iter] = false;
+                }
+
+                for (int iter = 0; iter < candidateCount; iter++)
+                {
+                    int feedbackClass = feedbackTable.scoreClass(candidates[iter], guess);
+
+                    if ( ! mSeenGroups[feedbackClass])
+                    {
+                        mSeenGroups[feedbackClass] = true;
+                        groups++;
+                    }
+                }
+
+                if (groups > bestGroups)
+                {
+                    bestGroups = groups;
+                    bestGuess = guess;
+                }
+            }
+
+            return bestGuess;
+        }
+    }
+
+    /**
+     * <p>Plays like the app's computer opponent: opening book, then the minimax solver. The
+     * "perfect player".</p>
+     */
+    static final class MinimaxStrategy implements Strategy
+    {
+        // Shared by all workers (it has its own pool):
+        private final MinimaxSolver mSolver;
+
+        MinimaxStrategy(MinimaxSolver solver)
+        {
+            mSolver = solver;
+        }
+
+        @Override
+        public int nextGuess(int[] candidates, int candidateCount, int turnsPlayed,
+                             int firstGuess, int firstFeedback, int usedDigits, Random random)
+        {
+            int bookGuess =
+                    OpeningBook.getInstance().lookup(turnsPlayed, firstGuess, firstFeedback);
+
+            if (bookGuess != OpeningBook.NO_ANSWER)
+            {
+                return bookGuess;
+            }
+
+            return mSolver.nextGuess(candidates, candidateCount, usedDigits);
+        }
+    }
+
+    /**
+     * <p>One worker's share of the games and its results.</p>
+     */
+    static final class Worker implements java.util.concurrent.Callable<Worker>
+    {
+        private final Strategy mStrategy;
+        private final Random mRandom;
+        private final int mGames;
+        private final double mSecondsPerTurn;
+
+        // Results: games by number of turns and by score bucket.
+        final long[] turnsHistogram = new long[ScoreCalculator.MAX_TURNS + 1];
+        final long[] scoreHistogram = new long[MAX_SCORE / SCORE_BUCKET_WIDTH + 1];
+        long totalTurns;
+        long totalScore;
+
+        Worker(Strategy strategy, long seed, int games, double secondsPerTurn)
+        {
+            mStrategy = strategy;
+            mRandom = new Random(seed);
+            mGames = games;
+            mSecondsPerTurn = secondsPerTurn;
+        }
+
+        @Override
+        public Worker call()
+        {
+            int[] candidates = new int[GuessScorer.CODE_COUNT];
+
+            for (int game = 0; game < mGames; game++)
+            {
+                int secret = mRandom.nextInt(GuessScorer.CODE_COUNT);
+                int turns = playGame(mStrategy, secret, candidates, mRandom);
+                double seconds = 0;
+
+                for (int turn = 0; turn < turns; turn++)
+                {
+                    seconds += -Math.log(1 - mRandom.nextDouble()) * mSecondsPerTurn;
+                }
+
+                int score = ScoreCalculator.calculate(turns, (int) seconds);
+
+                turnsHistogram[turns]++;
+                scoreHistogram[score / SCORE_BUCKET_WIDTH]++;
+                totalTurns += turns;
+                totalScore += score;
+            }
+
+            return this;
+        }
+
+        /**
+         * Adds another worker's results to this one.
+         */
+        void add(Worker other)
+        {
+            for (int iter = 0; iter < turnsHistogram.length; iter++)
+            {
+                turnsHistogram[iter] += other.turnsHistogram[iter];
+            }
+
+            for (int iter = 0; iter < scoreHistogram.length; iter++)
+            {
+                scoreHistogram[iter] += other.scoreHistogram[iter];
+            }
+
+            totalTurns += other.totalTurns;
+            totalScore += other.totalScore;
+        }
+    }
+
+    /**
+     * @param args [strategy] [games] [seconds per turn] [seed] [feedback table file]
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String strategyName = args.length > 0 ? args[0] : "random";
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        double secondsPerTurn = args.length > 2 ? Double.parseDouble(args[2]) : 8;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        if (args.length > 4)
+        {
+            FeedbackTable.setSource(FeedbackTable.fileSource(new File(args[4])));
+        }
+
+        installOpeningBook(OPENING_BOOK_FILE);
+
+        int workerCount = Runtime.getRuntime().availableProcessors();
+        MinimaxSolver solver = strategyName.equals("minimax") ? new MinimaxSolver() : null;
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+
+        long startTime = System.currentTimeMillis();
+        Random seeds = new Random(seed);
+        Worker total = new Worker(null, 0, 0, 0);
+
+        try
+        {
+            Future<?>[] futures = new Future<?>[workerCount];
+
+            for (int iter = 0; iter < workerCount; iter++)
+            {
+                // Split the games as evenly as possible:
+                int share = games / workerCount + (iter < games % workerCount ? 1 : 0);
+
+                Strategy strategy = newStrategy(strategyName, solver);
+
+                futures[iter] = executor.submit(
+                        new Worker(strategy, seeds.nextLong(), share, secondsPerTurn));
+            }
+
+            for (Future<?> future : futures)
+            {
+                total.add((Worker) future.get());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+
+            if (solver != null)
+            {
+                solver.shutdown();
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        System.out.println("Strategy: " + strategyName + ", games: " + games +
+                ", seconds per turn: " + secondsPerTurn + ", workers: " + workerCount +
+                ", time: " + elapsed + " ms");
+
+        System.out.println();
+        System.out.println(String.format("Turns: mean %.3f, median %d, 90th %d, 99th %d, max %d",
+                (double) total.totalTurns / games,
+                percentile(total.turnsHistogram, games, 0.5),
+                percentile(total.turnsHistogram, games, 0.9),
+                percentile(total.turnsHistogram, games, 0.99),
+                percentile(total.turnsHistogram, games, 1.0)));
+
+        for (int turns = 1; turns < total.turnsHistogram.length; turns++)
+        {
+            if (total.turnsHistogram[turns] > 0)
+            {
+                System.out.println(String.format("  %3d turns: %10d (%6.2f%%)", turns,
+                        total.turnsHistogram[turns], 100.0 * total.turnsHistogram[turns] / games));
+            }
+        }
+
+        System.out.println();
+        System.out.println(String.format("Score: mean %.0f, 10th %d, median %d, 90th %d " +
+                        "(bucket lower bounds)",
+                (double) total.totalScore / games,
+                percentile(total.scoreHistogram, games, 0.1) * SCORE_BUCKET_WIDTH,
+                percentile(total.scoreHistogram, games, 0.5) * SCORE_BUCKET_WIDTH,
+                percentile(total.scoreHistogram, games, 0.9) * SCORE_BUCKET_WIDTH));
+
+        for (int bucket = 0; bucket < total.scoreHistogram.length; bucket++)
+        {
+            if (total.scoreHistogram[bucket] > 0)
+            {
+                System.out.println(String.format("  %7d - %7d: %10d (%6.2f%%)",
+                        bucket * SCORE_BUCKET_WIDTH, (bucket + 1) * SCORE_BUCKET_WIDTH - 1,
+                        total.scoreHistogram[bucket],
+                        100.0 * total.scoreHistogram[bucket] / games));
+            }
+        }
+    }
+
+    /**
+     * <p>Plays one game until the code is cracked (or the turn cap is hit).</p>
+     *
+     * @param strategy
+     * @param secret     The Secret Number (0-9999)
+     * @param candidates Scratch space, GuessScorer.CODE_COUNT long
+     * @param random
+     * @return The number of turns it took
+     */
+    static int playGame(Strategy strategy, int secret, int[] candidates, Random random)
+    {
+        FeedbackTable feedbackTable = FeedbackTable.getInstance();
+        int candidateCount = GuessScorer.CODE_COUNT;
+
+        for (int iter = 0; iter < candidateCount; iter++)
+        {
+            candidates[iter] = iter;
+        }
+
+        int turns = 0;
+        int firstGuess = -1;
+        int firstFeedback = -1;
+        int usedDigits = 0;
+
+        while (turns < ScoreCalculator.MAX_TURNS)
+        {
+            int guess = strategy.nextGuess(candidates, candidateCount, turns,
+                    firstGuess, firstFeedback, usedDigits, random);
+            int feedback = feedbackTable.score(secret, guess);
+
+            turns++;
+            usedDigits |= MinimaxSolver.digitMask(guess);
+
+            if (turns == 1)
+            {
+                firstGuess = guess;
+                firstFeedback = feedback;
+            }
+
+            if (GuessScorer.isWin(feedback))
+            {
+                break;
+            }
+
+            // Keep the candidates that would have given the same feedback. (Filtering the array
+            // in place is a lot cheaper than a new CandidateSet per game.)
+            int kept = 0;
+
+            for (int iter = 0; iter < candidateCount; iter++)
+            {
+                if (feedbackTable.score(candidates[iter], guess) == feedback)
+                {
+                    candidates[kept++] = candidates[iter];
+                }
+            }
+
+            candidateCount = kept;
+        }
+
+        return turns;
+    }
+
+    /**
+     * <p>Points the opening book at a file. A missing file = no book.</p>
+     *
+     * @param file
+     */
+    static void installOpeningBook(final File file)
+    {
+        OpeningBook.setSource(new OpeningBook.Source()
+        {
+            @Override
+            public InputStream open() throws IOException
+            {
+                return file.exists() ? new FileInputStream(file) : null;
+            }
+        });
+    }
+
+    /**
+     * @param name   "random", "greedy" or "minimax"
+     * @param solver Shared solver for "minimax"
+     * @return A new strategy instance (one per worker)
+     */
+    static Strategy newStrategy(String name, MinimaxSolver solver)
+    {
+        switch (name)
+        {
+            case "random":
+                return new RandomConsistentStrategy();
+
+            case "greedy":
+                return new GreedyStrategy();
+
+            case "minimax":
+                return new MinimaxStrategy(solver);
+        }
+
+        throw new IllegalArgumentException("Unknown strategy: " + name);
+    }
+
+    /**
+     * @param histogram Counts by bucket
+     * @param total     Sum of the histogram
+     * @param fraction  0-1
+     * @return The first bucket at which the running count reaches the fraction.
+     */
+    private static int percentile(long[] histogram, long total, double fraction)
+    {
+        long target = (long) Math.ceil(total * fraction);
+        long runningCount = 0;
+
+        for (int bucket = 0; bucket < histogram.length; bucket++)
+        {
+            runningCount += histogram[bucket];
+
+            if (runningCount >= target && runningCount > 0)
+            {
+                return bucket;
+            }
+        }
+
+        return histogram.length - 1;
+    }
+}
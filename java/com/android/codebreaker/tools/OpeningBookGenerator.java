@@ -0,0 +1,95 @@
+package com.android.codebreaker.tools;
+
+/**
+ * <p>An offline (command line) tool that writes the opening book used by engine/OpeningBook.
+ * It isn't used by the app at runtime.</p>
+ *
+ * <p>The minimax solver (on all cores) picks the first guess for an empty board, then the second
+ * guess for every feedback the first guess can get. The result is tiny (a few dozen bytes) and
+ * goes in the app's "assets" folder as "opening_book.bin".</p>
+ *
+ * <p>Usage: java com.android.codebreaker.tools.OpeningBookGenerator [output file]
+ * [feedback table file]</p>
+ *
+ * <p>Note: The feedback table is optional but makes this a lot faster.</p>
+ */
+
+import com.android.codebreaker.engine.CandidateSet;
+import com.android.codebreaker.engine.FeedbackTable;
+import com.android.codebreaker.engine.GuessScorer;
+import com.android.codebreaker.engine.MinimaxSolver;
+import com.android.codebreaker.engine.OpeningBook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class OpeningBookGenerator
+{
+    /**
+     * @param args [output file] [feedback table file]
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : OpeningBook.ASSET_NAME;
+
+        if (args.length > 1)
+        {
+            FeedbackTable.setSource(FeedbackTable.fileSource(new File(args[1])));
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        MinimaxSolver solver = new MinimaxSolver();
+        int[] candidates = new int[GuessScorer.CODE_COUNT];
+
+        try
+        {
+            // The first guess: Nothing known yet.
+            CandidateSet allCodes = new CandidateSet();
+            int candidateCount = allCodes.copyTo(candidates);
+            int firstGuess = solver.nextGuess(candidates, candidateCount, 0);
+
+            System.out.println("First guess: " + String.format("%04d", firstGuess));
+
+            // The second guess for each possible feedback:
+            int[] secondGuesses = new int[FeedbackTable.FEEDBACK_CLASS_COUNT];
+
+            for (int feedbackClass = 0; feedbackClass < secondGuesses.length; feedbackClass++)
+            {
+                int feedback = FeedbackTable.fromFeedbackClass(feedbackClass);
+
+                CandidateSet remaining = new CandidateSet();
+                remaining.prune(firstGuess, feedback);
+                candidateCount = remaining.copyTo(candidates);
+
+                secondGuesses[feedbackClass] = candidateCount == 0 ?
+                        OpeningBook.NO_ANSWER :
+                        solver.nextGuess(
+                                candidates, candidateCount, MinimaxSolver.digitMask(firstGuess));
+
+                System.out.println("  Feedback class " + feedbackClass + " (" + candidateCount +
+                        " candidates): " + String.format("%04d", secondGuesses[feedbackClass]));
+            }
+
+            FileOutputStream out = new FileOutputStream(fileName);
+
+            try
+            {
+                new OpeningBook(firstGuess, secondGuesses).write(out);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            solver.shutdown();
+        }
+
+        System.out.println("Wrote " + fileName + " in " +
+                (System.currentTimeMillis() - startTime) + " ms.");
+    }
+}
@@ -0,0 +1,227 @@
+package com.android.codebreaker.tools;
+
+/**
+ * <p>An offline (command line) micro benchmark for the "score one guess against every
+ * candidate" loop. It compares:</p>
+ *
+ * <ul>
+ *     <li>legacy: The scoring loops that used to live in MainActivity.okButtonClick (digit
+ *         arrays, a cloned Secret Number and two nested loops);</li>
+ *     <li>scalar: GuessScorer.score, one pair at a time;</li>
+ *     <li>table: FeedbackTable.scoreClass, one pair at a time (only with a table file);</li>
+ *     <li>batch: BatchScorer, the whole candidate array per guess.</li>
+ * </ul>
+ *
+ * <p>Usage: java com.android.codebreaker.tools.ScorerBenchmark [candidates] [rounds]
+ * [feedback table file]</p>
+ *
+ * <p>Each round scores every code (10,000 guesses) against a random set of candidates. The first
+ * rounds are warm-up and aren't reported. Every method has to produce exactly the same
+ * histograms (checked) so the JIT can't throw the work away.</p>
+ */
+
+import com.android.codebreaker.engine.BatchScorer;
+import com.android.codebreaker.engine.FeedbackTable;
+import com.android.codebreaker.engine.GuessScorer;
+
+import java.io.File;
+import java.util.Random;
+
+public class ScorerBenchmark
+{
+    // Rounds run before measuring:
+    private static final int WARM_UP_ROUNDS = 3;
+
+    private static final String[] METHODS = { "legacy", "scalar", "table", "batch" };
+
+    /**
+     * @param args [candidates] [rounds] [feedback table file]
+     */
+    public static void main(String[] args)
+    {
+        int candidateCount = args.length > 0 ? Integer.parseInt(args[0]) : GuessScorer.CODE_COUNT;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        boolean hasTable = args.length > 2;
+
+        if (hasTable)
+        {
+            FeedbackTable.setSource(FeedbackTable.fileSource(new File(args[2])));
+        }
+
+        // A random candidate set (code indices and packed codes):
+        Random random = new Random(42);
+        int[] candidateIndices = new int[candidateCount];
+        int[] candidates = new int[candidateCount];
+
+        for (int iter = 0; iter < candidateCount; iter++)
+        {
+            candidateIndices[iter] = random.nextInt(GuessScorer.CODE_COUNT);
+        }
+
+        BatchScorer.pack(candidateIndices, candidateCount, candidates);
+
+        System.out.println("Candidates: " + candidateCount + ", guesses per round: " +
+                GuessScorer.CODE_COUNT + ", rounds: " + rounds + " (+" + WARM_UP_ROUNDS +
+                " warm-up)");
+
+        long expectedChecksum = 0;
+
+        for (String method : METHODS)
+        {
+            if (method.equals("table") && ! hasTable)
+            {
+                continue;
+            }
+
+            double[] nanosPerPair = new double[rounds];
+            long checksum = 0;
+
+            for (int round = -WARM_UP_ROUNDS; round < rounds; round++)
+            {
+                long startTime = System.nanoTime();
+                checksum = runRound(method, candidateIndices, candidates, candidateCount);
+                long elapsed = System.nanoTime() - startTime;
+
+                if (round >= 0)
+                {
+                    nanosPerPair[round] =
+                            (double) elapsed / ((long) GuessScorer.CODE_COUNT * candidateCount);
+                }
+            }
+
+            if (expectedChecksum == 0)
+            {
+                expectedChecksum = checksum;
+            }
+            else if (checksum != expectedChecksum)
+            {
+                throw new IllegalStateException(method + " disagrees with " + METHODS[0]);
+            }
+
+            double mean = 0;
+
+            for (double value : nanosPerPair)
+            {
+                mean += value / rounds;
+            }
+
+            double variance = 0;
+
+            for (double value : nanosPerPair)
+            {
+                variance += (value - mean) * (value - mean) / rounds;
+            }
+
+            System.out.println(String.format("  %-7s %8.3f ns/pair (+/- %.3f)  %8.1f M pairs/s",
+                    method, mean, Math.sqrt(variance), 1000 / mean));
+        }
+    }
+
+    /**
+     * <p>Scores every guess against the candidates.</p>
+     *
+     * @return A checksum of all the histograms
+     */
+    private static long runRound(String method, int[] candidateIndices, int[] candidates,
+                                 int candidateCount)
+    {
+        FeedbackTable feedbackTable = method.equals("table") ? FeedbackTable.getInstance() : null;
+        int[] histogram = new int[FeedbackTable.FEEDBACK_CLASS_COUNT];
+        int[] secretDigits = new int[GuessScorer.CODE_LENGTH];
+        int[] guessDigits = new int[GuessScorer.CODE_LENGTH];
+        long checksum = 0;
+
+        for (int guessIndex = 0; guessIndex < GuessScorer.CODE_COUNT; guessIndex++)
+        {
+            int guess = GuessScorer.fromIndex(guessIndex);
+
+            for (int iter = 0; iter < histogram.length; iter++)
+            {
+                histogram[iter] = 0;
+            }
+
+            if (method.equals("batch"))
+            {
+                BatchScorer.scoreClasses(guess, candidates, 0, candidateCount, histogram);
+            }
+            else if (method.equals("table"))
+            {
+                for (int iter = 0; iter < candidateCount; iter++)
+                {
+                    histogram[feedbackTable.scoreClass(candidateIndices[iter], guessIndex)]++;
+                }
+            }
+            else if (method.equals("scalar"))
+            {
+                for (int iter = 0; iter < candidateCount; iter++)
+                {
+                    histogram[FeedbackTable.toFeedbackClass(
+                            GuessScorer.score(candidates[iter], guess))]++;
+                }
+            }
+            else
+            {
+                GuessScorer.unpack(guess, guessDigits);
+
+                for (int iter = 0; iter < candidateCount; iter++)
+                {
+                    GuessScorer.unpack(candidates[iter], secretDigits);
+                    histogram[FeedbackTable.toFeedbackClass(
+                            legacyScore(secretDigits, guessDigits))]++;
+                }
+            }
+
+            for (int iter = 0; iter < histogram.length; iter++)
+            {
+                checksum = checksum * 31 + histogram[iter];
+            }
+        }
+
+        return checksum;
+    }
+
+    /**
+     * <p>The scoring loops from the original MainActivity.okButtonClick, minus the UI. (The
+     * Green loop marks matched Secret Number digits with -1 so the Gray loop skips them.)</p>
+     *
+     * @param secretNumber
+     * @param guess
+     * @return The encoded feedback (see GuessScorer)
+     */
+    private static int legacyScore(int[] secretNumber, int[] guess)
+    {
+        int[] tempSecretNumber = secretNumber.clone();
+        int green = 0;
+        int gray = 0;
+
+        for (int iter = 0; iter < tempSecretNumber.length; iter++)
+        {
+            if (guess[iter] == secretNumber[iter])
+            {
+                tempSecretNumber[iter] = -1;
+                green++;
+            }
+        }
+
+        for (int position = 0; position < guess.length; position++)
+        {
+            // (The original loop didn't skip the Green digits here. See GuessScorer.)
+            if (guess[position] == secretNumber[position])
+            {
+                continue;
+            }
+
+            for (int iter = 0; iter < tempSecretNumber.length; iter++)
+            {
+                if (guess[position] == tempSecretNumber[iter])
+                {
+                    tempSecretNumber[iter] = -1;
+                    gray++;
+                    break;
+                }
+            }
+        }
+
+        return GuessScorer.encodeFeedback(green, gray);
+    }
+}
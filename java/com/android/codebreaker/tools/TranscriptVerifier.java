@@ -0,0 +1,272 @@
+package com.android.codebreaker.tools;
+
+/**
+ * <p>An offline (command line) batch job for the backend: Reads a day's score submissions,
+ * replays every game transcript (see engine/TranscriptCodec) and prints the submissions that
+ * couldn't have happened so they can be kept off the leaderboard.</p>
+ *
+ * <p>Usage: java com.android.codebreaker.tools.TranscriptVerifier [submissions file]
+ * [feedback table file]</p>
+ *
+ * <p>Input: One submission per line, tab separated, these fields of each score the app
+ * sends: account_id, secret_number, turns, time_in_seconds, score, transcript (hex). "-" (or no
+ * file) reads standard input.</p>
+ *
+ * <p>Output: Each rejected line, prefixed with the reason and a tab, on standard output. A
+ * summary on standard error.</p>
+ *
+ * <p>The file is streamed in one pass. Lines are handed to one worker per core in batches and
+ * the results are printed in input order; only a few batches are in memory at any time so the
+ * size of the file doesn't matter.</p>
+ */
+
+import com.android.codebreaker.engine.FeedbackTable;
+import com.android.codebreaker.engine.ScoreCalculator;
+import com.android.codebreaker.engine.TranscriptCodec;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TranscriptVerifier
+{
+    // Lines per batch:
+    private static final int BATCH_SIZE = 4096;
+
+    // The most turns a scored game can have (the app caps them too):
+    private static final int MAX_TURNS = ScoreCalculator.MAX_TURNS;
+
+    // Rejection reasons, indexed by the codes below (0 = accepted):
+    private static final String[] REASONS = {
+            "OK",
+            "BAD_LINE",
+            "BAD_TRANSCRIPT",
+            "WRONG_FEEDBACK",
+            "PLAYED_AFTER_WIN",
+            "NOT_WON",
+            "WRONG_SECRET",
+            "WRONG_TURNS",
+            "WRONG_SCORE" };
+
+    private static final int ACCEPTED = 0;
+    private static final int BAD_LINE = 1;
+    private static final int WRONG_SECRET = 6;
+    private static final int WRONG_TURNS = 7;
+    private static final int WRONG_SCORE = 8;
+
+    // Maps TranscriptCodec.RESULT_ constants to the codes above:
+    private static final int[] TRANSCRIPT_REASONS = { ACCEPTED, 2, 3, 4, 5 };
+
+    /**
+     * <p>Checks one batch of lines. The result is one reason code per line.</p>
+     */
+    static final class Batch implements Callable<int[]>
+    {
+        final String[] lines;
+        final int lineCount;
+
+        Batch(String[] lines, int lineCount)
+        {
+            this.lines = lines;
+            this.lineCount = lineCount;
+        }
+
+        @Override
+        public int[] call()
+        {
+            FeedbackTable feedbackTable = FeedbackTable.getInstance();
+            int[] reasons = new int[lineCount];
+
+            for (int iter = 0; iter < lineCount; iter++)
+            {
+                reasons[iter] = check(lines[iter], feedbackTable);
+            }
+
+            return reasons;
+        }
+    }
+
+    /**
+     * @param args [submissions file] [feedback table file]
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String fileName = args.length > 0 ? args[0] : "-";
+
+        if (args.length > 1)
+        {
+            FeedbackTable.setSource(FeedbackTable.fileSource(new File(args[1])));
+        }
+
+        InputStream inputStream = fileName.equals("-") ? System.in : new FileInputStream(fileName);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+
+        int workerCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+
+        // Batches in flight, oldest first. Bounded so memory stays flat.
+        ArrayDeque<Batch> batches = new ArrayDeque<Batch>();
+        ArrayDeque<Future<int[]>> futures = new ArrayDeque<Future<int[]>>();
+        long[] reasonCounts = new long[REASONS.length];
+
+        long startTime = System.currentTimeMillis();
+
+        try
+        {
+            boolean isEndOfInput = false;
+
+            while ( ! isEndOfInput || ! futures.isEmpty())
+            {
+                // Keep every worker busy (and one batch queued for each):
+                while ( ! isEndOfInput && futures.size() < workerCount * 2)
+                {
+                    String[] lines = new String[BATCH_SIZE];
+                    int lineCount = 0;
+                    String line;
+
+                    while (lineCount < BATCH_SIZE && (line = reader.readLine()) != null)
+                    {
+                        lines[lineCount++] = line;
+                    }
+
+                    isEndOfInput = lineCount < BATCH_SIZE;
+
+                    if (lineCount > 0)
+                    {
+                        Batch batch = new Batch(lines, lineCount);
+                        batches.add(batch);
+                        futures.add(executor.submit(batch));
+                    }
+                }
+
+                if (futures.isEmpty())
+                {
+                    break;
+                }
+
+                // Print the oldest batch's rejections:
+                Batch batch = batches.remove();
+                int[] reasons = futures.remove().get();
+
+                for (int iter = 0; iter < batch.lineCount; iter++)
+                {
+                    reasonCounts[reasons[iter]]++;
+
+                    if (reasons[iter] != ACCEPTED)
+                    {
+                        writer.write(REASONS[reasons[iter]]);
+                        writer.write('\t');
+                        writer.write(batch.lines[iter]);
+                        writer.write('\n');
+                    }
+                }
+            }
+
+            writer.flush();
+        }
+        finally
+        {
+            executor.shutdown();
+            reader.close();
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        long total = 0;
+
+        for (long count : reasonCounts)
+        {
+            total += count;
+        }
+
+        System.err.println("Checked " + total + " submissions in " + elapsed + " ms (" +
+                (elapsed > 0 ? total * 1000 / elapsed : total) + "/s, " + workerCount +
+                " workers).");
+
+        for (int iter = 0; iter < REASONS.length; iter++)
+        {
+            if (reasonCounts[iter] > 0)
+            {
+                System.err.println("  " + REASONS[iter] + ": " + reasonCounts[iter]);
+            }
+        }
+    }
+
+    /**
+     * <p>Checks a single submission line.</p>
+     *
+     * @param line          account_id, secret_number, turns, time_in_seconds, score, transcript
+     * @param feedbackTable
+     * @return A reason code (ACCEPTED = fine)
+     */
+    static int check(String line, FeedbackTable feedbackTable)
+    {
+        String[] fields = line.split("\t");
+
+        if (fields.length != 6)
+        {
+            return BAD_LINE;
+        }
+
+        int secret;
+        int turns;
+        int timeInSeconds;
+        int score;
+
+        try
+        {
+            secret = Integer.parseInt(fields[1]);
+            turns = Integer.parseInt(fields[2]);
+            timeInSeconds = Integer.parseInt(fields[3]);
+            score = Integer.parseInt(fields[4]);
+        }
+        catch (NumberFormatException e)
+        {
+            return BAD_LINE;
+        }
+
+        byte[] transcript = TranscriptCodec.fromHex(fields[5]);
+
+        if (transcript == null)
+        {
+            return TRANSCRIPT_REASONS[TranscriptCodec.RESULT_MALFORMED];
+        }
+
+        // Replay the game:
+        int result = TranscriptCodec.verify(transcript, transcript.length, feedbackTable);
+
+        if (result != TranscriptCodec.RESULT_VALID)
+        {
+            return TRANSCRIPT_REASONS[result];
+        }
+
+        // The game checks out. Does the submission match it?
+        if (TranscriptCodec.getSecret(transcript) != secret)
+        {
+            return WRONG_SECRET;
+        }
+
+        if (Math.min(TranscriptCodec.getTurnCount(transcript), MAX_TURNS) != turns)
+        {
+            return WRONG_TURNS;
+        }
+
+        if (ScoreCalculator.calculate(turns, timeInSeconds) != score)
+        {
+            return WRONG_SCORE;
+        }
+
+        return ACCEPTED;
+    }
+}
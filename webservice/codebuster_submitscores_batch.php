@@ -0,0 +1,178 @@
+<?php
+/**
+ * Reference handler for a batch of scores (see data/SubmitScoresDataRequest in the app).
+ *
+ * Request: POST, "Content-Type: application/json", optionally "Content-Encoding: gzip":
+ *
+ *     {"scores": [["idempotency_key", account_id, "secret_number", turns, time_in_seconds,
+ *                  score, adjusted_score, "transcript"], ...]}
+ *
+ * Response: One result per score, matched by its key (see data/ScoreResultsData):
+ *
+ *     {"results": [{"key": "idempotency_key", "result": n}, ...]}
+ *
+ *     n > 0 = The score's row id, stored now or by an earlier send of the same key;
+ *     -1    = Fields missing or invalid (or an unknown account). Sending it again won't help;
+ *     -3    = The INSERT failed. The app keeps the score and tries again later.
+ *
+ * Every valid score in the batch goes into the table in one multi-row INSERT, in one
+ * transaction. The unique key on "idempotency_key" makes a resent score a no-op ("INSERT
+ * IGNORE"); the ids are then looked up by key in one SELECT, so new and resent scores are
+ * answered the same way.
+ *
+ * Needs, on top of the existing "scores" table, every column the app has started sending:
+ *
+ *     ALTER TABLE scores
+ *         ADD COLUMN adjusted_score INT NOT NULL DEFAULT 0,  -- the difficulty-adjusted score
+ *                                                           -- (engine/DifficultyTable)
+ *         ADD COLUMN transcript TEXT NULL,                  -- the game's turns, hex
+ *                                                           -- (engine/TranscriptCodec)
+ *         ADD COLUMN idempotency_key CHAR(36) NULL,         -- see data/ScoreQueue
+ *         ADD UNIQUE KEY scores_idempotency_key (idempotency_key);
+ *
+ * Without them every INSERT fails with -3 and the app keeps resending its whole queue.
+ *
+ * "codebuster_db.php" is expected to set $pdo (a PDO connection with
+ * PDO::ERRMODE_EXCEPTION), as for the other scripts.
+ */
+
+require_once 'codebuster_db.php';
+
+// Same limit as the app's queue (data/ScoreQueue.MAX_ENTRIES):
+const MAX_SCORES = 64;
+
+const RESULT_FIELDS_MISSING = -1;
+const RESULT_INSERT_FAILED = -3;
+
+header('Content-Type: application/json');
+
+$body = file_get_contents('php://input');
+
+if ($body !== false && isset($_SERVER['HTTP_CONTENT_ENCODING']) &&
+        strcasecmp($_SERVER['HTTP_CONTENT_ENCODING'], 'gzip') == 0)
+{
+    $body = gzdecode($body);
+}
+
+$request = $body !== false ? json_decode($body, true) : null;
+
+// Nothing we can answer per score:
+if ( ! is_array($request) || ! isset($request['scores']) || ! is_array($request['scores']) ||
+        count($request['scores']) > MAX_SCORES)
+{
+    http_response_code(400);
+    echo json_encode(array('results' => array()));
+    exit;
+}
+
+$results = array();
+$rows = array();
+
+foreach ($request['scores'] as $score)
+{
+    $row = parse_score($score);
+
+    if ($row === null)
+    {
+        // Without a key the app can't tell which score this is for anyway:
+        if (is_array($score) && isset($score[0]) && is_string($score[0]))
+        {
+            $results[$score[0]] = RESULT_FIELDS_MISSING;
+        }
+
+        continue;
+    }
+
+    $rows[$row[0]] = $row;
+}
+
+if (count($rows) > 0)
+{
+    $keys = array_keys($rows);
+
+    try
+    {
+        $pdo->beginTransaction();
+
+        // The grouped write: One INSERT for the whole batch.
+        $insert = $pdo->prepare(
+            'INSERT IGNORE INTO scores (idempotency_key, account_id, secret_number, turns, ' .
+            'time_in_seconds, score, adjusted_score, transcript) VALUES ' .
+            implode(', ', array_fill(0, count($rows), '(?, ?, ?, ?, ?, ?, ?, ?)')));
+        $insert->execute(call_user_func_array('array_merge', array_values($rows)));
+
+        // New and earlier rows alike:
+        $select = $pdo->prepare(
+            'SELECT id, idempotency_key FROM scores WHERE idempotency_key IN (' .
+            implode(', ', array_fill(0, count($keys), '?')) . ')');
+        $select->execute($keys);
+
+        $pdo->commit();
+
+        $ids = array();
+
+        foreach ($select->fetchAll(PDO::FETCH_ASSOC) as $stored)
+        {
+            $ids[$stored['idempotency_key']] = (int) $stored['id'];
+        }
+
+        // A key that isn't there was refused by the table (eg; an unknown account):
+        foreach ($keys as $key)
+        {
+            $results[$key] = isset($ids[$key]) ? $ids[$key] : RESULT_FIELDS_MISSING;
+        }
+    }
+    catch (PDOException $e)
+    {
+        if ($pdo->inTransaction())
+        {
+            $pdo->rollBack();
+        }
+
+        error_log('codebuster_submitscores_batch: ' . $e->getMessage());
+
+        foreach ($keys as $key)
+        {
+            $results[$key] = RESULT_INSERT_FAILED;
+        }
+    }
+}
+
+$response = array();
+
+foreach ($results as $key => $result)
+{
+    $response[] = array('key' => (string) $key, 'result' => $result);
+}
+
+echo json_encode(array('results' => $response));
+
+/**
+ * @param mixed $score One score's array from the request
+ * @return array|null The row to insert (same order as the request) or null if it's invalid
+ */
+function parse_score($score)
+{
+    if ( ! is_array($score) || count($score) != 8)
+    {
+        return null;
+    }
+
+    list($key, $accountId, $secretNumber, $turns, $timeInSeconds, $points, $adjustedScore,
+            $transcript) = $score;
+
+    if ( ! is_string($key) || ! preg_match('/^[0-9a-fA-F-]{1,36}$/', $key) ||
+            ! is_int($accountId) || $accountId <= 0 ||
+            ! is_string($secretNumber) || ! preg_match('/^[0-9]{4}$/', $secretNumber) ||
+            ! is_int($turns) || $turns < 1 ||
+            ! is_int($timeInSeconds) || $timeInSeconds < 0 ||
+            ! is_int($points) || $points < 0 ||
+            ! is_int($adjustedScore) || $adjustedScore < 0 ||
+            ! is_string($transcript) || ! preg_match('/^[0-9a-fA-F]*$/', $transcript))
+    {
+        return null;
+    }
+
+    return array($key, $accountId, $secretNumber, $turns, $timeInSeconds, $points,
+            $adjustedScore, $transcript);
+}
@@ -0,0 +1,203 @@
+<?php
+/**
+ * Reference handler for "verify and submit" (see data/VerifyAndSubmitDataRequest in the app):
+ * The end of a game in one round trip. It verifies the user, stores their score and answers
+ * with the part of the leaderboard around it.
+ *
+ * Request: A form POST with username, password, idempotency_key, secret_number, turns,
+ * time_in_seconds, score, adjusted_score, transcript and neighbourhood (rows wanted above and
+ * below the user's score).
+ *
+ * Response (see data/VerifyAndSubmitData):
+ *
+ *     {"result": n, "score_result": n, "top_rank": n,
+ *      "scores": [{"username": "...", "score": "123"}, ...]}
+ *
+ *     result       = As verify_credentials.php: The user's id (a new account is made for an
+ *                    unknown username), -1 = fields missing, -2 = wrong password, -3 = the
+ *                    account INSERT failed. Nothing else is sent unless it's an id;
+ *     score_result = As codebuster_submitscores_batch.php: The score's row id (stored now or
+ *                    by an earlier send of the same key), -1 = invalid, -3 = INSERT failed;
+ *     scores       = The leaderboard around the user's score, lowest first (as
+ *                    codebuster_getscores.php sends it). The top of the leaderboard if the
+ *                    score wasn't stored;
+ *     top_rank     = The rank of the highest row in "scores".
+ *
+ * Assumes accounts (id, username, password) with password_hash() hashes and the "scores"
+ * table with the "adjusted_score", "transcript" and "idempotency_key" columns (see the ALTER
+ * TABLE in codebuster_submitscores_batch.php). Adjust the
+ * account check to match verify_credentials.php.
+ *
+ * "codebuster_db.php" is expected to set $pdo (a PDO connection with
+ * PDO::ERRMODE_EXCEPTION), as for the other scripts.
+ */
+
+require_once 'codebuster_db.php';
+
+const RESULT_FIELDS_MISSING = -1;
+const RESULT_WRONG_PASSWORD = -2;
+const RESULT_INSERT_FAILED = -3;
+
+// The most rows wanted on either side of the user's score:
+const MAX_NEIGHBOURHOOD = 50;
+
+header('Content-Type: application/json');
+
+$response = array('result' => verify_account($pdo));
+
+if ($response['result'] > 0)
+{
+    $scoreResult = store_score($pdo, $response['result']);
+    $response['score_result'] = $scoreResult;
+
+    $neighbourhood = isset($_POST['neighbourhood']) ?
+            max(0, min(MAX_NEIGHBOURHOOD, (int) $_POST['neighbourhood'])) : 10;
+
+    try
+    {
+        $topRank = $scoreResult > 0 ? max(1, rank_of($pdo, $scoreResult) - $neighbourhood) : 1;
+
+        $response['top_rank'] = $topRank;
+        $response['scores'] = leaderboard_rows($pdo, $topRank, 2 * $neighbourhood + 1);
+    }
+    catch (PDOException $e)
+    {
+        // The score is stored either way. The app asks for the leaderboard itself.
+        error_log('codebuster_verify_and_submit: ' . $e->getMessage());
+    }
+}
+
+echo json_encode($response);
+
+/**
+ * @param PDO $pdo
+ * @return int The user's id, made now if the username is new, or a negative RESULT_
+ */
+function verify_account($pdo)
+{
+    $username = isset($_POST['username']) ? trim($_POST['username']) : '';
+    $password = isset($_POST['password']) ? trim($_POST['password']) : '';
+
+    if ($username === '' || $password === '')
+    {
+        return RESULT_FIELDS_MISSING;
+    }
+
+    try
+    {
+        $select = $pdo->prepare('SELECT id, password FROM accounts WHERE username = ?');
+        $select->execute(array($username));
+        $account = $select->fetch(PDO::FETCH_ASSOC);
+
+        if ($account !== false)
+        {
+            return password_verify($password, $account['password']) ?
+                    (int) $account['id'] : RESULT_WRONG_PASSWORD;
+        }
+
+        $insert = $pdo->prepare('INSERT INTO accounts (username, password) VALUES (?, ?)');
+        $insert->execute(array($username, password_hash($password, PASSWORD_DEFAULT)));
+
+        return (int) $pdo->lastInsertId();
+    }
+    catch (PDOException $e)
+    {
+        error_log('codebuster_verify_and_submit: ' . $e->getMessage());
+        return RESULT_INSERT_FAILED;
+    }
+}
+
+/**
+ * Stores the score once per idempotency key: A resend gets the first send's row id.
+ *
+ * @param PDO $pdo
+ * @param int $accountId
+ * @return int The score's row id or a negative RESULT_
+ */
+function store_score($pdo, $accountId)
+{
+    $fields = array('idempotency_key', 'secret_number', 'turns', 'time_in_seconds', 'score',
+            'adjusted_score', 'transcript');
+
+    foreach ($fields as $field)
+    {
+        if ( ! isset($_POST[$field]))
+        {
+            return RESULT_FIELDS_MISSING;
+        }
+    }
+
+    $key = $_POST['idempotency_key'];
+
+    if ( ! preg_match('/^[0-9a-fA-F-]{1,36}$/', $key) ||
+            ! preg_match('/^[0-9]{4}$/', $_POST['secret_number']) ||
+            ! ctype_digit($_POST['turns']) || (int) $_POST['turns'] < 1 ||
+            ! ctype_digit($_POST['time_in_seconds']) ||
+            ! ctype_digit($_POST['score']) ||
+            ! ctype_digit($_POST['adjusted_score']) ||
+            ! preg_match('/^[0-9a-fA-F]*$/', $_POST['transcript']))
+    {
+        return RESULT_FIELDS_MISSING;
+    }
+
+    try
+    {
+        $insert = $pdo->prepare(
+            'INSERT IGNORE INTO scores (idempotency_key, account_id, secret_number, turns, ' .
+            'time_in_seconds, score, adjusted_score, transcript) ' .
+            'VALUES (?, ?, ?, ?, ?, ?, ?, ?)');
+        $insert->execute(array($key, $accountId, $_POST['secret_number'],
+                (int) $_POST['turns'], (int) $_POST['time_in_seconds'], (int) $_POST['score'],
+                (int) $_POST['adjusted_score'], $_POST['transcript']));
+
+        // New or stored by an earlier send:
+        $select = $pdo->prepare('SELECT id FROM scores WHERE idempotency_key = ?');
+        $select->execute(array($key));
+        $id = $select->fetchColumn();
+
+        return $id !== false ? (int) $id : RESULT_FIELDS_MISSING;
+    }
+    catch (PDOException $e)
+    {
+        error_log('codebuster_verify_and_submit: ' . $e->getMessage());
+        return RESULT_INSERT_FAILED;
+    }
+}
+
+/**
+ * @param PDO $pdo
+ * @param int $scoreId
+ * @return int The score's rank: 1 = the highest (ties go to the earlier score)
+ */
+function rank_of($pdo, $scoreId)
+{
+    $select = $pdo->prepare(
+        'SELECT COUNT(*) FROM scores s, scores mine WHERE mine.id = ? AND ' .
+        '(s.score > mine.score OR (s.score = mine.score AND s.id < mine.id))');
+    $select->execute(array($scoreId));
+
+    return (int) $select->fetchColumn() + 1;
+}
+
+/**
+ * @param PDO $pdo
+ * @param int $topRank  The rank of the first (highest) row
+ * @param int $rowCount
+ * @return array The rows, lowest first (as codebuster_getscores.php sends them)
+ */
+function leaderboard_rows($pdo, $topRank, $rowCount)
+{
+    $select = $pdo->query(
+        'SELECT a.username, s.score FROM scores s JOIN accounts a ON a.id = s.account_id ' .
+        'ORDER BY s.score DESC, s.id ASC ' .
+        'LIMIT ' . (int) $rowCount . ' OFFSET ' . ((int) $topRank - 1));
+
+    $rows = array();
+
+    foreach ($select->fetchAll(PDO::FETCH_ASSOC) as $row)
+    {
+        $rows[] = array('username' => $row['username'], 'score' => (string) $row['score']);
+    }
+
+    return array_reverse($rows);
+}